@@ -14,6 +14,7 @@ import org.kie.api.builder.KieFileSystem;
 import org.kie.api.io.ResourceType;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.drools.api.RuleProvider;
+import org.openmrs.module.drools.dtable.DecisionTableDrlCache;
 import org.openmrs.module.drools.session.ExternalEvaluator;
 import org.openmrs.module.drools.session.ExternalEvaluatorManager;
 import org.slf4j.Logger;
@@ -58,6 +59,7 @@ public class DroolsConfig {
 				.setResourceType(ResourceType.DRL));
 
 		KieContainerBuilder builder = new KieContainerBuilder(kieServices, kieFileSystem);
+		builder.setDecisionTableCache(new DecisionTableDrlCache());
 
 		// Load rules
 		for (RuleProvider provider : ruleProviders) {
@@ -3,4 +3,18 @@ package org.openmrs.module.drools;
 public class DroolsModuleConstants {
 
     public static final String GP_LOCAL_STORAGE_DIR = "drools.storage_dir";
+
+    public static final String GP_DECISION_TABLE_STREAMING_THRESHOLD = "drools.decision_table_streaming_threshold";
+
+    public static final String GP_STARTUP_POOL_SIZE = "drools.startup_pool_size";
+
+    public static final String GP_WARMUP_ITERATIONS = "drools.warmup_iterations";
+
+    public static final String GP_EVENT_QUEUE_CAPACITY = "drools.event_queue_capacity";
+
+    public static final String GP_EVENT_COALESCING_WINDOW = "drools.event_coalescing_window_ms";
+
+    public static final String GP_EVENT_JOURNAL_ENABLED = "drools.event_journal_enabled";
+
+    public static final String GP_MAX_BATCH_SIZE = "drools.max_batch_size";
 }
@@ -1,15 +1,27 @@
 package org.openmrs.module.drools;
 
+import org.apache.commons.lang3.StringUtils;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieFileSystem;
 import org.kie.api.runtime.KieContainer;
+import org.openmrs.module.drools.dtable.DecisionTableDrlCache;
+import org.openmrs.module.drools.utils.CommonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 public class KieContainerBuilder {
 
@@ -23,6 +35,18 @@ public class KieContainerBuilder {
 
     private KieContainer kieContainer;
 
+    private DecisionTableDrlCache decisionTableCache;
+
+    private final Map<String, String> eventDeclarations = new LinkedHashMap<>();
+
+    private String rulesetVersion;
+
+    private static final String EVENT_DECLARATIONS_PATH = "src/main/resources/org/openmrs/module/drools/generated/events.drl";
+
+    private static final Pattern TYPE_NAME = Pattern.compile("[\\w$]+(\\.[\\w$]+)*");
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+(d|h|ms|m|s))+");
+
     public KieContainerBuilder(KieServices kieServices, KieFileSystem kieFileSystem) {
         this.kieServices = kieServices;
         this.kieFileSystem = kieFileSystem;
@@ -39,8 +63,13 @@ public class KieContainerBuilder {
         if (kieContainer != null) {
             return kieContainer;
         }
+        List<RuleResource> resolved = new ArrayList<>();
         for (RuleResource resource : resources) {
             try {
+                if (decisionTableCache != null) {
+                    resource = decisionTableCache.resolve(resource);
+                    resolved.add(resource);
+                }
                 File file = new File(resource.getPath());
                 if (file.exists()) {
                     kieFileSystem.write(kieServices.getResources()
@@ -57,11 +86,62 @@ public class KieContainerBuilder {
                 log.error("Error while adding resource: " + resource.getPath(), e);
             }
         }
+        if (decisionTableCache != null) {
+            decisionTableCache.prune(resolved);
+        }
+        if (!eventDeclarations.isEmpty()) {
+            kieFileSystem.write(EVENT_DECLARATIONS_PATH, toEventDeclarationsDrl());
+        }
+        this.rulesetVersion = computeRulesetVersion();
         kieServices.newKieBuilder(kieFileSystem).buildAll();
         this.kieContainer = kieServices.newKieContainer(kieServices.getRepository().getDefaultReleaseId());
         return kieContainer;
     }
 
+    /**
+     * Computes a digest of the registered resources and event declarations, so results can be traced to the rules
+     * they were computed with.
+     */
+    private String computeRulesetVersion() {
+        List<String> digests = new ArrayList<>();
+        resources.stream().map(RuleResource::getPath).sorted().forEach(path -> {
+            try (InputStream in = openResource(path)) {
+                digests.add(path + "=" + (in == null ? "" : CommonUtils.sha256Hex(in)));
+            } catch (IOException e) {
+                log.warn("Can't read resource {} to compute the ruleset version", path, e);
+                digests.add(path + "=");
+            }
+        });
+        digests.add(toEventDeclarationsDrl());
+        try {
+            return CommonUtils.sha256Hex(new ByteArrayInputStream(String.join("\n", digests).getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private InputStream openResource(String path) throws IOException {
+        File file = new File(path);
+        if (file.exists()) {
+            return new FileInputStream(file);
+        }
+        return Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
+    }
+
+    /**
+     * @return a digest of the rules the current container was built from, or null if it hasn't been built
+     */
+    public String getRulesetVersion() {
+        return kieContainer == null ? null : rulesetVersion;
+    }
+
+    /**
+     * Discards the built container so that the next call to {@link #build()} builds a new one.
+     */
+    public void reset() {
+        this.kieContainer = null;
+    }
+
     public KieContainerBuilder addResource(RuleResource resource) {
         if (resource != null) {
             this.resources.add(resource);
@@ -75,4 +155,48 @@ public class KieContainerBuilder {
         }
         return this;
     }
+
+    /**
+     * Declares a fact type as an event, so stream mode sessions expire its facts after the given duration. The
+     * declaration is part of the next container built.
+     *
+     * @param typeName the fully qualified class name of the fact type
+     * @param expires  a Drools duration such as "30d" or "1h30m", or blank for events that don't expire
+     * @throws IllegalArgumentException if the type name or duration is invalid
+     */
+    public KieContainerBuilder addEventDeclaration(String typeName, String expires) {
+        if (typeName == null || !TYPE_NAME.matcher(typeName).matches()) {
+            throw new IllegalArgumentException("Invalid event type: " + typeName);
+        }
+        if (StringUtils.isNotBlank(expires) && !DURATION.matcher(expires).matches()) {
+            throw new IllegalArgumentException("Invalid expiration for event type " + typeName + ": " + expires);
+        }
+        String existing = eventDeclarations.get(typeName);
+        if (existing != null && !existing.equals(StringUtils.defaultString(expires))) {
+            log.warn("Event type {} is already declared to expire after '{}', ignoring '{}'", typeName, existing, expires);
+            return this;
+        }
+        eventDeclarations.put(typeName, StringUtils.defaultString(expires));
+        return this;
+    }
+
+    private String toEventDeclarationsDrl() {
+        StringBuilder drl = new StringBuilder("package org.openmrs.module.drools.generated;\n\n");
+        eventDeclarations.forEach((typeName, expires) -> {
+            drl.append("declare ").append(typeName).append("\n    @role(event)\n");
+            if (!expires.isEmpty()) {
+                drl.append("    @expires(").append(expires).append(")\n");
+            }
+            drl.append("end\n\n");
+        });
+        return drl.toString();
+    }
+
+    public DecisionTableDrlCache getDecisionTableCache() {
+        return decisionTableCache;
+    }
+
+    public void setDecisionTableCache(DecisionTableDrlCache decisionTableCache) {
+        this.decisionTableCache = decisionTableCache;
+    }
 }
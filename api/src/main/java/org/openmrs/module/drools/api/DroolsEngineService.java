@@ -1,15 +1,20 @@
 package org.openmrs.module.drools.api;
 
+import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
 import org.openmrs.OpenmrsObject;
 import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.drools.event.DroolsEventsManager;
+import org.openmrs.module.drools.result.DroolsResultStore;
 import org.openmrs.module.drools.session.DroolsExecutionResult;
 import org.openmrs.module.drools.session.DroolsSessionException;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public interface DroolsEngineService extends OpenmrsService {
 
@@ -42,6 +47,45 @@ public interface DroolsEngineService extends OpenmrsService {
 	 */
 	public DroolsExecutionResult evaluate(String sessionId, Collection<Object> facts, String resultClassName);
 
+	/**
+	 * Same as {@link #evaluate(String, Collection, String)}, but reads the facts from an iterator so they don't have
+	 * to be collected first. The facts are inserted and the rules fired as a single batch.
+	 *
+	 * @param sessionId       the identifier of a preconfigured Drools session to use
+	 * @param facts           the facts to evaluate, consumed once
+	 * @param resultClassName the fully qualified class name of objects to extract from the session.
+	 * @return a {@link DroolsExecutionResult} containing all matching objects of type {@code resultClazz}
+	 * @throws DroolsSessionException if the session could not be established,
+	 *                                or if the configuration is missing or invalid
+	 */
+	public DroolsExecutionResult evaluate(String sessionId, Iterator<?> facts, String resultClassName);
+
+	/**
+	 * Same as {@link #evaluate(String, Iterator, String)} for a stream of facts. The stream is closed once the
+	 * evaluation completes.
+	 */
+	public DroolsExecutionResult evaluate(String sessionId, Stream<?> facts, String resultClassName);
+
+	/**
+	 * Evaluates facts read from an iterator in windows, so that memory is bounded by the window size rather than the
+	 * number of facts. Each window is inserted, the rules are fired, the results are collected and the window's
+	 * facts are retracted and evicted from the Hibernate session before the next window is read.
+	 * <p>
+	 * Rules only see facts of the same window, plus whatever earlier windows left in the session, so this suits rules
+	 * that reason about one fact, such as one patient, at a time. Results referring to evicted OpenMRS objects should
+	 * only rely on properties that were loaded during evaluation. Use a
+	 * {@link org.openmrs.module.drools.utils.ScrollableResultsIterator} to read facts from a database cursor.
+	 *
+	 * @param sessionId       the identifier of a preconfigured Drools session to use
+	 * @param facts           the facts to evaluate, consumed once
+	 * @param resultClassName the fully qualified class name of objects to extract from the session.
+	 * @param windowSize      the number of facts inserted before the rules are fired
+	 * @return a {@link DroolsExecutionResult} containing the results of all windows
+	 * @throws DroolsSessionException if the session could not be established,
+	 *                                or if the configuration is missing or invalid
+	 */
+	public DroolsExecutionResult evaluateInWindows(String sessionId, Iterator<?> facts, String resultClassName, int windowSize);
+
 	/**
 	 * Retrieves a collection of facts of the specified type from a Drools session.
 	 * 
@@ -88,6 +132,26 @@ public interface DroolsEngineService extends OpenmrsService {
 	 */
 	public void registerRuleProvider(RuleProvider ruleProvider);
 
+	/**
+	 * Returns the {@link KieContainer} holding all registered rule resources, building it first if it hasn't been
+	 * built yet.
+	 * <p>
+	 * Resources registered after the container has been built are not part of it, so callers that want to build
+	 * eagerly should do so after all rule providers have been registered.
+	 *
+	 * @return the KieContainer
+	 */
+	public KieContainer getKieContainer();
+
+	/**
+	 * Discards the current {@link KieContainer} and builds a new one from the registered resources, including
+	 * those registered after the previous build. Anything derived from the previous container, such as resolved
+	 * result types, is invalidated. Sessions created from the previous container keep working until disposed,
+	 * except long-lived auto-start sessions, which are disposed and restarted against the new container with their
+	 * event listeners subscribed again.
+	 */
+	public void reloadKieContainer();
+
 	/**
 	 * Returns all registered session configurations configured for auto-start.
 	 */
@@ -95,4 +159,27 @@ public interface DroolsEngineService extends OpenmrsService {
 
 	public DroolsSessionConfig getSessionConfig(String sessionId);
 
+	/**
+	 * Returns all registered session configurations.
+	 */
+	public List<DroolsSessionConfig> getSessionConfigs();
+
+	/**
+	 * Returns the manager of system event subscriptions and of the actors of long-lived sessions.
+	 */
+	public DroolsEventsManager getEventsManager();
+
+	/**
+	 * Returns the store that holds the results of background re-evaluations.
+	 */
+	public DroolsResultStore getResultStore();
+
+	/**
+	 * Returns a digest of the rule resources the current container was built from. It changes whenever a resource
+	 * changes, so stored results can be matched with the rules they were computed with.
+	 *
+	 * @return the digest, or null if the container hasn't been built yet
+	 */
+	public String getRulesetVersion();
+
 }
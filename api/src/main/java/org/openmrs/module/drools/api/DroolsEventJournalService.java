@@ -0,0 +1,37 @@
+package org.openmrs.module.drools.api;
+
+import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.drools.event.DroolsEventJournalEntry;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Journal of the system events received by session event listeners. Events are appended before they are processed
+ * and acknowledged once they have been processed, so the ones that weren't can be replayed on startup.
+ * Acknowledged entries are deleted, the journal only holds the events still to be processed.
+ */
+public interface DroolsEventJournalService extends OpenmrsService {
+
+	@Transactional
+	public DroolsEventJournalEntry append(DroolsEventJournalEntry entry);
+
+	/**
+	 * Marks entries as processed by deleting them.
+	 *
+	 * @param entryIds the ids of the entries to acknowledge
+	 */
+	@Transactional
+	public void acknowledge(Collection<Integer> entryIds);
+
+	/**
+	 * Returns the entries of a listener that haven't been acknowledged, in the order they were received.
+	 *
+	 * @param sessionId       the id of the session the listener belongs to
+	 * @param listener        the class name of the listener
+	 * @param subscribedClass the class name of the events the listener subscribes to
+	 */
+	@Transactional(readOnly = true)
+	public List<DroolsEventJournalEntry> getUnacknowledged(String sessionId, String listener, String subscribedClass);
+}
@@ -0,0 +1,48 @@
+package org.openmrs.module.drools.api;
+
+import org.openmrs.annotation.Authorized;
+import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.drools.result.DroolsResult;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Materialized results of evaluating sessions for patients.
+ */
+public interface DroolsResultService extends OpenmrsService {
+
+	/**
+	 * Replaces the results of a session for a patient.
+	 *
+	 * @param sessionId the id of the evaluated session
+	 * @param patientId the id of the patient the session was evaluated for
+	 * @param results   the new results, possibly empty
+	 */
+	@Transactional
+	@Authorized(PrivilegeConstants.EDIT_PATIENTS)
+	public void replaceResults(String sessionId, Integer patientId, List<DroolsResult> results);
+
+	/**
+	 * Returns the results of a session for a set of patients, such as the members of a cohort.
+	 *
+	 * @param sessionId  the id of the session
+	 * @param patientIds the ids of the patients
+	 * @param resultType the class name of the results to return, or null for all of them
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	public List<DroolsResult> getResults(String sessionId, Collection<Integer> patientIds, String resultType);
+
+	/**
+	 * Returns the ids of the patients that have results for a session.
+	 *
+	 * @param sessionId  the id of the session
+	 * @param resultType the class name of the results, or null for any
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	public List<Integer> getPatientIdsWithResults(String sessionId, String resultType);
+}
@@ -0,0 +1,61 @@
+package org.openmrs.module.drools.api.db;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Database access for {@link org.openmrs.module.drools.calculation.DroolsCalculationService}.
+ */
+public interface DroolsCalculationDAO {
+
+    /**
+     * Returns the numeric observations of the patients for a concept as {@code [personId, obsDatetime, valueNumeric]}
+     * rows, ordered by patient and obs datetime.
+     */
+    List<Object[]> getNumericObsValues(Collection<Integer> patientIds, Integer conceptId, Date from, Date to);
+
+    /**
+     * @return whether the patient has a non voided encounter of the type within the dates, either of which may be
+     * null
+     */
+    boolean hasEncounter(Integer patientId, Integer encounterTypeId, Date from, Date to);
+
+    /**
+     * @return the ids of the patients among the given ones that have a non voided encounter of the type within the
+     * dates
+     */
+    BitSet getPatientsWithEncounter(Collection<Integer> patientIds, Integer encounterTypeId, Date from, Date to);
+
+    /**
+     * @return whether the patient has a non voided enrollment in the program that is active on the given date
+     */
+    boolean isInProgram(Integer patientId, Integer programId, Date onDate);
+
+    /**
+     * @return the ids of the patients among the given ones that are enrolled in the program on the given date
+     */
+    BitSet getPatientsInProgram(Collection<Integer> patientIds, Integer programId, Date onDate);
+
+    /**
+     * @return whether the patient has a non voided program state of the concept that is active on the given date
+     */
+    boolean isInProgramState(Integer patientId, Integer stateConceptId, Date onDate);
+
+    /**
+     * @return the ids of the patients among the given ones that are in a program state of the concept on the given
+     * date
+     */
+    BitSet getPatientsInProgramState(Collection<Integer> patientIds, Integer stateConceptId, Date onDate);
+
+    /**
+     * @return whether the patient has a non voided, active condition coded with the concept
+     */
+    boolean hasActiveConditionCoded(Integer patientId, Integer conditionConceptId);
+
+    /**
+     * @return the ids of the patients among the given ones that have an active condition coded with the concept
+     */
+    BitSet getPatientsWithActiveConditionCoded(Collection<Integer> patientIds, Integer conditionConceptId);
+}
@@ -0,0 +1,18 @@
+package org.openmrs.module.drools.api.db;
+
+import org.openmrs.module.drools.event.DroolsEventJournalEntry;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database access for {@link DroolsEventJournalEntry}.
+ */
+public interface DroolsEventJournalDAO {
+
+    DroolsEventJournalEntry saveEntry(DroolsEventJournalEntry entry);
+
+    void deleteEntries(Collection<Integer> entryIds);
+
+    List<DroolsEventJournalEntry> getEntries(String sessionId, String listener, String subscribedClass);
+}
@@ -0,0 +1,40 @@
+package org.openmrs.module.drools.api.db;
+
+import org.openmrs.module.drools.fact.PatientFact;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bulk loading of the entities facts are resolved from.
+ */
+public interface DroolsFactDAO {
+
+    /**
+     * Loads the entities of a type with the given uuids, with as few queries as the database allows.
+     *
+     * @param type        the mapped entity class
+     * @param uuids       the uuids to load, unknown ones are ignored
+     * @param fetchJoins  associations of the entity to fetch along, e.g. "encounterType"
+     * @return the loaded entities, in no particular order
+     */
+    <T> List<T> getByUuids(Class<T> type, Collection<String> uuids, String... fetchJoins);
+
+    /**
+     * Loads the entities of a type with the given ids, with as few queries as the database allows.
+     *
+     * @param type        the mapped entity class
+     * @param ids         the ids to load, unknown ones are ignored
+     * @param fetchJoins  associations of the entity to fetch along, e.g. "names"
+     * @return the loaded entities, in no particular order
+     */
+    <T> List<T> getByIds(Class<T> type, Collection<Integer> ids, String... fetchJoins);
+
+    /**
+     * Projects the patients with the given ids into facts straight from the query, without loading the entities.
+     *
+     * @param patientIds the ids of the patients, unknown ones are ignored
+     * @return the projected patients, in no particular order
+     */
+    List<PatientFact> getPatientFacts(Collection<Integer> patientIds);
+}
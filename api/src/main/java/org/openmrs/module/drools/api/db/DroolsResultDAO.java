@@ -0,0 +1,20 @@
+package org.openmrs.module.drools.api.db;
+
+import org.openmrs.module.drools.result.DroolsResult;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database access for {@link DroolsResult}.
+ */
+public interface DroolsResultDAO {
+
+    void deleteResults(String sessionId, Integer patientId);
+
+    DroolsResult saveResult(DroolsResult result);
+
+    List<DroolsResult> getResults(String sessionId, Collection<Integer> patientIds, String resultType);
+
+    List<Integer> getPatientIdsWithResults(String sessionId, String resultType);
+}
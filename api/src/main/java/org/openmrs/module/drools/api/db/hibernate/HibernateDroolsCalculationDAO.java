@@ -0,0 +1,184 @@
+package org.openmrs.module.drools.api.db.hibernate;
+
+import org.hibernate.query.Query;
+import org.openmrs.ConditionClinicalStatus;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.drools.api.db.DroolsCalculationDAO;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class HibernateDroolsCalculationDAO implements DroolsCalculationDAO {
+
+    /**
+     * Patient ids are queried in chunks so the in clause stays within the limits of the database.
+     */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    /**
+     * An enrollment is active on a date if it started on or before it and hasn't completed by then, as
+     * {@link org.openmrs.PatientProgram#getActive(Date)}.
+     */
+    private static final String PROGRAM_RESTRICTIONS = " and pp.program.programId = :programId and pp.voided = false"
+            + " and (pp.dateEnrolled is null or pp.dateEnrolled <= :onDate)"
+            + " and (pp.dateCompleted is null or pp.dateCompleted > :onDate)";
+
+    /**
+     * A state is active on a date as {@link org.openmrs.PatientState#getActive(Date)}, within a non voided enrollment.
+     */
+    private static final String PROGRAM_STATE_RESTRICTIONS = " and ps.state.concept.conceptId = :conceptId"
+            + " and ps.voided = false and ps.patientProgram.voided = false"
+            + " and (ps.startDate is null or ps.startDate <= :onDate)"
+            + " and (ps.endDate is null or ps.endDate > :onDate)";
+
+    private static final String CONDITION_RESTRICTIONS = " and c.condition.coded.conceptId = :conceptId"
+            + " and c.clinicalStatus = :clinicalStatus and c.voided = false";
+
+    private DbSessionFactory sessionFactory;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getNumericObsValues(Collection<Integer> patientIds, Integer conceptId, Date from, Date to) {
+        List<Integer> ids = new ArrayList<>(patientIds);
+        List<Object[]> rows = new ArrayList<>();
+        // only the columns the series needs, the Obs entities are never loaded
+        String hql = "select o.person.personId, o.obsDatetime, o.valueNumeric from Obs o"
+                + " where o.person.personId in (:patientIds) and o.concept.conceptId = :conceptId"
+                + " and o.valueNumeric is not null and o.voided = false"
+                + (from != null ? " and o.obsDatetime >= :from" : "")
+                + (to != null ? " and o.obsDatetime <= :to" : "")
+                + " order by o.person.personId, o.obsDatetime, o.obsId";
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_QUERY, ids.size()));
+            Query<Object[]> query = sessionFactory.getCurrentSession().createQuery(hql)
+                    .setParameterList("patientIds", chunk)
+                    .setParameter("conceptId", conceptId);
+            if (from != null) {
+                query.setParameter("from", from);
+            }
+            if (to != null) {
+                query.setParameter("to", to);
+            }
+            rows.addAll(query.list());
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean hasEncounter(Integer patientId, Integer encounterTypeId, Date from, Date to) {
+        // an index probe on the patient's encounters, no encounter is loaded
+        Query<?> query = sessionFactory.getCurrentSession().createQuery("select e.encounterId from Encounter e"
+                        + " where e.patient.patientId = :patientId" + encounterRestrictions(from, to))
+                .setParameter("patientId", patientId)
+                .setMaxResults(1);
+        setEncounterParameters(query, encounterTypeId, from, to);
+        return !query.list().isEmpty();
+    }
+
+    @Override
+    public BitSet getPatientsWithEncounter(Collection<Integer> patientIds, Integer encounterTypeId, Date from,
+                                           Date to) {
+        String hql = "select distinct e.patient.patientId from Encounter e"
+                + " where e.patient.patientId in (:patientIds)" + encounterRestrictions(from, to);
+        return getPatientIds(hql, patientIds, query -> setEncounterParameters(query, encounterTypeId, from, to));
+    }
+
+    @Override
+    public boolean isInProgram(Integer patientId, Integer programId, Date onDate) {
+        Query<?> query = sessionFactory.getCurrentSession().createQuery("select pp.patientProgramId"
+                        + " from PatientProgram pp where pp.patient.patientId = :patientId" + PROGRAM_RESTRICTIONS)
+                .setParameter("patientId", patientId)
+                .setParameter("programId", programId)
+                .setParameter("onDate", onDate)
+                .setMaxResults(1);
+        return !query.list().isEmpty();
+    }
+
+    @Override
+    public BitSet getPatientsInProgram(Collection<Integer> patientIds, Integer programId, Date onDate) {
+        String hql = "select distinct pp.patient.patientId from PatientProgram pp"
+                + " where pp.patient.patientId in (:patientIds)" + PROGRAM_RESTRICTIONS;
+        return getPatientIds(hql, patientIds, query -> query.setParameter("programId", programId)
+                .setParameter("onDate", onDate));
+    }
+
+    @Override
+    public boolean isInProgramState(Integer patientId, Integer stateConceptId, Date onDate) {
+        Query<?> query = sessionFactory.getCurrentSession().createQuery("select ps.patientStateId from PatientState ps"
+                        + " where ps.patientProgram.patient.patientId = :patientId" + PROGRAM_STATE_RESTRICTIONS)
+                .setParameter("patientId", patientId)
+                .setParameter("conceptId", stateConceptId)
+                .setParameter("onDate", onDate)
+                .setMaxResults(1);
+        return !query.list().isEmpty();
+    }
+
+    @Override
+    public BitSet getPatientsInProgramState(Collection<Integer> patientIds, Integer stateConceptId, Date onDate) {
+        String hql = "select distinct ps.patientProgram.patient.patientId from PatientState ps"
+                + " where ps.patientProgram.patient.patientId in (:patientIds)" + PROGRAM_STATE_RESTRICTIONS;
+        return getPatientIds(hql, patientIds, query -> query.setParameter("conceptId", stateConceptId)
+                .setParameter("onDate", onDate));
+    }
+
+    @Override
+    public boolean hasActiveConditionCoded(Integer patientId, Integer conditionConceptId) {
+        Query<?> query = sessionFactory.getCurrentSession().createQuery("select c.conditionId from Condition c"
+                        + " where c.patient.patientId = :patientId" + CONDITION_RESTRICTIONS)
+                .setParameter("patientId", patientId)
+                .setParameter("conceptId", conditionConceptId)
+                .setParameter("clinicalStatus", ConditionClinicalStatus.ACTIVE)
+                .setMaxResults(1);
+        return !query.list().isEmpty();
+    }
+
+    @Override
+    public BitSet getPatientsWithActiveConditionCoded(Collection<Integer> patientIds, Integer conditionConceptId) {
+        String hql = "select distinct c.patient.patientId from Condition c"
+                + " where c.patient.patientId in (:patientIds)" + CONDITION_RESTRICTIONS;
+        return getPatientIds(hql, patientIds, query -> query.setParameter("conceptId", conditionConceptId)
+                .setParameter("clinicalStatus", ConditionClinicalStatus.ACTIVE));
+    }
+
+    private static String encounterRestrictions(Date from, Date to) {
+        return " and e.encounterType.encounterTypeId = :encounterTypeId and e.voided = false"
+                + (from != null ? " and e.encounterDatetime >= :from" : "")
+                + (to != null ? " and e.encounterDatetime <= :to" : "");
+    }
+
+    private static void setEncounterParameters(Query<?> query, Integer encounterTypeId, Date from, Date to) {
+        query.setParameter("encounterTypeId", encounterTypeId);
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+    }
+
+    /**
+     * Runs a query selecting patient ids for each chunk of the given patient ids.
+     */
+    private BitSet getPatientIds(String hql, Collection<Integer> patientIds, Consumer<Query<?>> parameters) {
+        List<Integer> ids = new ArrayList<>(patientIds);
+        BitSet result = new BitSet();
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_QUERY, ids.size()));
+            Query<?> query = sessionFactory.getCurrentSession().createQuery(hql)
+                    .setParameterList("patientIds", chunk);
+            parameters.accept(query);
+            for (Object patientId : query.list()) {
+                result.set((Integer) patientId);
+            }
+        }
+        return result;
+    }
+
+    public void setSessionFactory(DbSessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+}
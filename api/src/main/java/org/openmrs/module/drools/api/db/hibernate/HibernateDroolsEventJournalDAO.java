@@ -0,0 +1,46 @@
+package org.openmrs.module.drools.api.db.hibernate;
+
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.drools.api.db.DroolsEventJournalDAO;
+import org.openmrs.module.drools.event.DroolsEventJournalEntry;
+
+import java.util.Collection;
+import java.util.List;
+
+public class HibernateDroolsEventJournalDAO implements DroolsEventJournalDAO {
+
+    private DbSessionFactory sessionFactory;
+
+    @Override
+    public DroolsEventJournalEntry saveEntry(DroolsEventJournalEntry entry) {
+        sessionFactory.getCurrentSession().saveOrUpdate(entry);
+        return entry;
+    }
+
+    @Override
+    public void deleteEntries(Collection<Integer> entryIds) {
+        if (entryIds.isEmpty()) {
+            return;
+        }
+        sessionFactory.getCurrentSession()
+                .createQuery("delete from DroolsEventJournalEntry where id in (:ids)")
+                .setParameterList("ids", entryIds)
+                .executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<DroolsEventJournalEntry> getEntries(String sessionId, String listener, String subscribedClass) {
+        return sessionFactory.getCurrentSession()
+                .createQuery("from DroolsEventJournalEntry where sessionId = :sessionId and listener = :listener "
+                        + "and subscribedClass = :subscribedClass order by id")
+                .setParameter("sessionId", sessionId)
+                .setParameter("listener", listener)
+                .setParameter("subscribedClass", subscribedClass)
+                .list();
+    }
+
+    public void setSessionFactory(DbSessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+}
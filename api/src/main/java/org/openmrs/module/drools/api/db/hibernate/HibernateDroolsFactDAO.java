@@ -0,0 +1,67 @@
+package org.openmrs.module.drools.api.db.hibernate;
+
+import org.hibernate.query.Query;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.drools.api.db.DroolsFactDAO;
+import org.openmrs.module.drools.fact.PatientFact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public class HibernateDroolsFactDAO implements DroolsFactDAO {
+
+    /**
+     * Uuids and ids are queried in chunks so the in clause stays within the limits of the database.
+     */
+    private static final int MAX_VALUES_PER_QUERY = 1000;
+
+    private DbSessionFactory sessionFactory;
+
+    @Override
+    public <T> List<T> getByUuids(Class<T> type, Collection<String> uuids, String... fetchJoins) {
+        return listInChunks(selectWhereIn(type, "uuid", fetchJoins), uuids);
+    }
+
+    @Override
+    public <T> List<T> getByIds(Class<T> type, Collection<Integer> ids, String... fetchJoins) {
+        // id refers to the identifier property of any entity in HQL
+        return listInChunks(selectWhereIn(type, "id", fetchJoins), ids);
+    }
+
+    @Override
+    public List<PatientFact> getPatientFacts(Collection<Integer> patientIds) {
+        return listInChunks("select new " + PatientFact.class.getName() + "(p.patientId, p.uuid, p.gender, "
+                + "p.birthdate, p.birthdateEstimated, p.dead, p.deathDate) from Patient p where p.patientId in (:values)",
+                patientIds);
+    }
+
+    private static String selectWhereIn(Class<?> type, String property, String... fetchJoins) {
+        StringBuilder hql = new StringBuilder("select distinct e from ").append(type.getName()).append(" e");
+        for (String fetchJoin : fetchJoins) {
+            hql.append(" left join fetch e.").append(fetchJoin);
+        }
+        return hql.append(" where e.").append(property).append(" in (:values)").toString();
+    }
+
+    /**
+     * Runs a query with a {@code values} parameter list once per chunk of the distinct values.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> listInChunks(String hql, Collection<?> values) {
+        List<Object> distinctValues = new ArrayList<>(new LinkedHashSet<>(values));
+        List<T> results = new ArrayList<>();
+        for (int start = 0; start < distinctValues.size(); start += MAX_VALUES_PER_QUERY) {
+            List<Object> chunk = distinctValues.subList(start,
+                    Math.min(start + MAX_VALUES_PER_QUERY, distinctValues.size()));
+            Query<T> query = sessionFactory.getCurrentSession().createQuery(hql).setParameterList("values", chunk);
+            results.addAll(query.list());
+        }
+        return results;
+    }
+
+    public void setSessionFactory(DbSessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+}
@@ -0,0 +1,71 @@
+package org.openmrs.module.drools.api.db.hibernate;
+
+import org.hibernate.query.Query;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.drools.api.db.DroolsResultDAO;
+import org.openmrs.module.drools.result.DroolsResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class HibernateDroolsResultDAO implements DroolsResultDAO {
+
+    /**
+     * Patient ids are queried in chunks so the in clause stays within the limits of the database.
+     */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private DbSessionFactory sessionFactory;
+
+    @Override
+    public void deleteResults(String sessionId, Integer patientId) {
+        sessionFactory.getCurrentSession()
+                .createQuery("delete from DroolsResult where sessionId = :sessionId and patientId = :patientId")
+                .setParameter("sessionId", sessionId)
+                .setParameter("patientId", patientId)
+                .executeUpdate();
+    }
+
+    @Override
+    public DroolsResult saveResult(DroolsResult result) {
+        sessionFactory.getCurrentSession().saveOrUpdate(result);
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<DroolsResult> getResults(String sessionId, Collection<Integer> patientIds, String resultType) {
+        List<Integer> ids = new ArrayList<>(patientIds);
+        List<DroolsResult> results = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+            String hql = "from DroolsResult where sessionId = :sessionId and patientId in (:patientIds)"
+                    + (resultType != null ? " and resultType = :resultType" : "") + " order by patientId, id";
+            Query<DroolsResult> query = sessionFactory.getCurrentSession().createQuery(hql)
+                    .setParameter("sessionId", sessionId)
+                    .setParameterList("patientIds", chunk);
+            if (resultType != null) {
+                query.setParameter("resultType", resultType);
+            }
+            results.addAll(query.list());
+        }
+        return results;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Integer> getPatientIdsWithResults(String sessionId, String resultType) {
+        String hql = "select distinct patientId from DroolsResult where sessionId = :sessionId"
+                + (resultType != null ? " and resultType = :resultType" : "");
+        Query<Integer> query = sessionFactory.getCurrentSession().createQuery(hql).setParameter("sessionId", sessionId);
+        if (resultType != null) {
+            query.setParameter("resultType", resultType);
+        }
+        return query.list();
+    }
+
+    public void setSessionFactory(DbSessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+}
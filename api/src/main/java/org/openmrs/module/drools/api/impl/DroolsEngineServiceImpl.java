@@ -1,19 +1,35 @@
 package org.openmrs.module.drools.api.impl;
 
 import org.apache.commons.lang3.StringUtils;
+import org.drools.commands.runtime.rule.FireAllRulesCommand;
 import org.kie.api.KieBase;
+import org.kie.api.KieBaseConfiguration;
+import org.kie.api.KieServices;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
+import org.kie.api.conf.EventProcessingOption;
 import org.kie.api.definition.type.FactType;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.ExecutionResults;
 import org.kie.api.runtime.ObjectFilter;
 import org.kie.api.runtime.rule.AgendaFilter;
+import org.kie.api.runtime.rule.FactHandle;
 import org.openmrs.OpenmrsObject;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.drools.DroolsConfig;
 import org.openmrs.module.drools.KieContainerBuilder;
 import org.openmrs.module.drools.api.DroolsEngineService;
 import org.openmrs.module.drools.api.RuleProvider;
+import org.openmrs.module.drools.calculation.CompiledOperator;
+import org.openmrs.module.drools.calculation.EvaluationScope;
 import org.openmrs.module.drools.event.DroolsEventsManager;
+import org.openmrs.module.drools.event.PatientReevaluationPipeline;
+import org.openmrs.module.drools.fact.FactProjector;
+import org.openmrs.module.drools.result.DroolsResultStore;
+import org.openmrs.module.drools.result.InMemoryDroolsResultStore;
 import org.openmrs.module.drools.session.*;
 import org.openmrs.module.drools.utils.CommonUtils;
 import org.slf4j.Logger;
@@ -21,13 +37,17 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DroolsEngineServiceImpl extends BaseOpenmrsService implements DroolsEngineService {
 
 	private static final Logger log = LoggerFactory.getLogger(DroolsEngineServiceImpl.class);
 
+	private static final String FIRED_RULES_OUT_ID = "firedRules";
+
 	private KieContainer kieContainer;
 
 	@Autowired
@@ -40,24 +60,48 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 
 	private DroolsEventsManager eventsManager = new DroolsEventsManager();
 
+	private DroolsResultStore resultStore = new InMemoryDroolsResultStore();
+
 	private final Map<String, Map <String, Object>> globalBindings = new HashMap<>();
 
+	/**
+	 * Result classes resolved against the current container, keyed by class name.
+	 */
+	private final Map<String, Class<?>> resultClasses = new ConcurrentHashMap<>();
+
+	/**
+	 * Resolution errors of session configs whose result type couldn't be resolved, keyed by session id.
+	 */
+	private final Map<String, String> unresolvedResultTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * Globals flattened against the current container, keyed by session id.
+	 */
+	private final Map<String, SessionGlobals> sessionGlobals = new ConcurrentHashMap<>();
+
+	/**
+	 * KieBase shared by stream mode sessions, built from the current container on first use.
+	 */
+	private KieBase streamKieBase;
+
 	@Override
 	public KieSession requestSession(String sessionId) {
 		log.info("Requesting Drools session: {}", sessionId);
 		KieSession session;
-		if (ruleConfigs == null) {
-			log.debug("Initializing session configurations");
-			ruleConfigs = initializeSessionConfigs();
-		}
-		if (kieContainer == null) {
-			log.debug("Building KieContainer");
-			kieContainer = kieContainerBuilder.build();
-		}
+		Map<String, DroolsSessionConfig> ruleConfigs = getRuleConfigs();
+		KieContainer kieContainer = getKieContainer();
 		if (ruleConfigs.get(sessionId) != null) {
 			log.debug("Creating KieSession for sessionId: {}", sessionId);
-			session = CommonUtils.createKieSession(kieContainer, ruleConfigs.get(sessionId), droolsConfig.getExternalEvaluatorManager(), globalBindings);
-			eventsManager.subscribeSessionEventListenersIfNecessary(sessionId, session, ruleConfigs);
+			DroolsSessionConfig config = ruleConfigs.get(sessionId);
+			if (config.isStreamMode()) {
+				KieSessionConfiguration sessionConfiguration = KieServices.Factory.get().newKieSessionConfiguration();
+				sessionConfiguration.setOption(config.getClockType());
+				session = CommonUtils.createKieSession(getStreamKieBase(kieContainer), sessionConfiguration, config,
+						getSessionGlobals(sessionId, kieContainer));
+			} else {
+				session = CommonUtils.createKieSession(kieContainer, config, getSessionGlobals(sessionId, kieContainer));
+			}
+			attachResultCollector(session, ruleConfigs.get(sessionId));
 			log.info("Successfully created session: {}", sessionId);
 			return session;
 		} else {
@@ -73,14 +117,10 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 
 		KieSession currentSession = requestSession(sessionId);
 		if (currentSession != null) {
-			log.debug("Inserting {} facts into session: {}", facts.size(), sessionId);
-			facts.forEach(fact -> {
-				log.trace("Inserting fact: {} ({})", fact.getClass().getSimpleName(), fact);
-				currentSession.insert(fact);
-			});
-
-			log.debug("Firing all rules for session: {}", sessionId);
-			int rulesFired = currentSession.fireAllRules(getSessionAgendaFilter(currentSession, ruleConfigs.get(sessionId)));
+			log.debug("Inserting {} facts and firing all rules for session: {}", facts.size(), sessionId);
+			DroolsSessionConfig config = getSessionConfig(sessionId);
+			int rulesFired = insertAndFire(currentSession, FactProjector.projectAll(config, facts),
+					getSessionAgendaFilter(currentSession, config));
 			long duration = System.currentTimeMillis() - startTime;
 
 			log.info("Session {} evaluation completed: {} rules fired in {}ms", sessionId, rulesFired, duration);
@@ -94,22 +134,113 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 	@Override
 	public DroolsExecutionResult evaluate(String sessionId, Collection<Object> facts, String resultClassName) {
 		log.info("Evaluating session: {} with {} facts, expecting results of type: {}", sessionId, facts.size(), resultClassName);
+		return evaluateFacts(sessionId, facts, resultClassName);
+	}
+
+	@Override
+	public DroolsExecutionResult evaluate(String sessionId, Iterator<?> facts, String resultClassName) {
+		log.info("Evaluating session: {} with streamed facts, expecting results of type: {}", sessionId, resultClassName);
+		return evaluateFacts(sessionId, iterable(facts), resultClassName);
+	}
+
+	/**
+	 * Wraps an iterator so it can be inserted as a batch. The iterable can only be iterated once.
+	 */
+	private static <T> Iterable<T> iterable(Iterator<T> iterator) {
+		return () -> iterator;
+	}
+
+	@Override
+	public DroolsExecutionResult evaluate(String sessionId, Stream<?> facts, String resultClassName) {
+		try {
+			return evaluate(sessionId, facts.iterator(), resultClassName);
+		} finally {
+			facts.close();
+		}
+	}
+
+	@Override
+	public DroolsExecutionResult evaluateInWindows(String sessionId, Iterator<?> facts, String resultClassName, int windowSize) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be at least 1, got " + windowSize);
+		}
+		log.info("Evaluating session: {} in windows of {} facts, expecting results of type: {}", sessionId, windowSize,
+				resultClassName);
+		long startTime = System.currentTimeMillis();
+
+		KieSession currentSession = requestSession(sessionId);
+		if (currentSession == null) {
+			log.error("Could not establish KIE session: {}", sessionId);
+			throw new DroolsSessionException("Could not establish a KIE session of ID: " + sessionId);
+		}
+		try {
+			DroolsSessionConfig config = getSessionConfig(sessionId);
+			Class<?> resultClass = getResultClass(sessionId, resultClassName, currentSession.getKieBase());
+			ResultCollector<?> collector = ResultCollector.find(currentSession, resultClass);
+			if (collector == null || collector.getType() != resultClass) {
+				collector = ResultCollector.attach(currentSession, resultClass);
+			}
+			List<Object> results = new ArrayList<>();
+			List<Object> window = new ArrayList<>(windowSize);
+			List<FactHandle> handles = new ArrayList<>(windowSize);
+			int fired = 0;
+			int windows = 0;
+			while (facts.hasNext()) {
+				window.add(facts.next());
+				if (window.size() == windowSize || !facts.hasNext()) {
+					// answers are memoized per window, so that they don't pile up over the whole run
+					try (EvaluationScope scope = EvaluationScope.open()) {
+						for (Object fact : window) {
+							handles.add(currentSession.insert(FactProjector.project(config, fact)));
+						}
+						fired += currentSession.fireAllRules(getSessionAgendaFilter(currentSession, config));
+					}
+					// take the results before retracting, logically inserted ones go away with their facts
+					results.addAll(collector.drain());
+					for (FactHandle handle : handles) {
+						if (currentSession.getObject(handle) != null) {
+							currentSession.delete(handle);
+						}
+					}
+					for (Object fact : window) {
+						if (fact instanceof OpenmrsObject) {
+							Context.evictFromSession(fact);
+						}
+					}
+					window.clear();
+					handles.clear();
+					windows++;
+				}
+			}
+
+			long duration = System.currentTimeMillis() - startTime;
+			log.info("Session {} evaluation completed: {} windows, {} rules fired, {} results returned in {}ms",
+					sessionId, windows, fired, results.size(), duration);
+			return new DroolsExecutionResult(sessionId, fired, results);
+		} finally {
+			currentSession.dispose();
+			log.debug("Session {} disposed", sessionId);
+		}
+	}
+
+	private DroolsExecutionResult evaluateFacts(String sessionId, Iterable<?> facts, String resultClassName) {
 		long startTime = System.currentTimeMillis();
 
 		KieSession currentSession = requestSession(sessionId);
 		DroolsExecutionResult result;
 		if (currentSession != null) {
-			log.debug("Inserting {} facts into session: {}", facts.size(), sessionId);
-			facts.forEach(fact -> {
-				log.trace("Inserting fact: {} ({})", fact.getClass().getSimpleName(), fact);
-				currentSession.insert(fact);
-			});
+			Class<?> resultClass = getResultClass(sessionId, resultClassName, currentSession.getKieBase());
+			if (ResultCollector.find(currentSession, resultClass) == null) {
+				ResultCollector.attach(currentSession, resultClass);
+			}
 
-			log.debug("Firing all rules for session: {}", sessionId);
-			int fired = currentSession.fireAllRules(getSessionAgendaFilter(currentSession, ruleConfigs.get(sessionId)));
+			log.debug("Inserting facts and firing all rules for session: {}", sessionId);
+			DroolsSessionConfig config = getSessionConfig(sessionId);
+			int fired = insertAndFire(currentSession, FactProjector.projectLazily(config, facts),
+					getSessionAgendaFilter(currentSession, config));
 
 			log.debug("Retrieving session objects of type: {}", resultClassName);
-			List<?> results = getSessionObjects(currentSession, resolveClass(resultClassName, currentSession.getKieBase()));
+			List<?> results = getSessionObjects(currentSession, resultClass);
 			result = new DroolsExecutionResult(sessionId, fired, (List<Object>) results);
 
 			long duration = System.currentTimeMillis() - startTime;
@@ -127,11 +258,32 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 		return result;
 	}
 
+	/**
+	 * Inserts the facts and fires all rules as a single batch command, so the facts are propagated in one pass.
+	 *
+	 * @return the number of rules fired
+	 */
+	private int insertAndFire(KieSession session, Iterable<?> facts, AgendaFilter agendaFilter) {
+		KieCommands kieCommands = KieServices.Factory.get().getCommands();
+		List<Command<?>> commands = new ArrayList<>(2);
+		commands.add(kieCommands.newInsertElements(facts));
+		// KieCommands has no fire command that takes an agenda filter
+		commands.add(new FireAllRulesCommand(FIRED_RULES_OUT_ID, -1, agendaFilter));
+		try (EvaluationScope scope = EvaluationScope.open()) {
+			ExecutionResults results = session.execute(kieCommands.newBatchExecution(commands));
+			return (Integer) results.getValue(FIRED_RULES_OUT_ID);
+		}
+	}
+
 	@Override
 	public <T> List<T> getSessionObjects(KieSession session, Class<T> tClass) {
 		if (session == null) {
 			throw new IllegalArgumentException("Session cannot be null");
 		}
+		ResultCollector<?> collector = ResultCollector.find(session, tClass);
+		if (collector != null) {
+			return collector.getResults(tClass, null);
+		}
 		Collection<?> rawObjects = session.getObjects(new ObjectFilter() {
 			@Override
 			public boolean accept(Object object) {
@@ -150,6 +302,10 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 		if (session == null) {
 			throw new IllegalArgumentException("Session cannot be null");
 		}
+		ResultCollector<?> collector = ResultCollector.find(session, tClass);
+		if (collector != null) {
+			return collector.getResults(tClass, tPredicate);
+		}
 		Collection<?> rawObjects = session.getObjects(new ObjectFilter() {
 			@Override
 			public boolean accept(Object object) {
@@ -167,28 +323,43 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 	}
 
 	@Override
-	public void registerRuleProvider(RuleProvider ruleProvider) {
-		if (ruleConfigs == null) {
-			ruleConfigs = initializeSessionConfigs();
-		}
+	public synchronized void registerRuleProvider(RuleProvider ruleProvider) {
+		Map<String, DroolsSessionConfig> ruleConfigs = getRuleConfigs();
 		if (!ruleProvider.isEnabled()) {
 			return;
 		}
+		List<DroolsSessionConfig> sessionConfigs = ruleProvider.getSessionConfigs() != null
+				? ruleProvider.getSessionConfigs() : Collections.emptyList();
+		// if the container is already built an unknown result type can be reported right away, so resolve the result
+		// types before registering anything of the provider, which is then left out entirely
+		Map<String, Class<?>> resolvedResultClasses = new HashMap<>();
+		if (kieContainer != null) {
+			for (DroolsSessionConfig ruleSessionConfig : sessionConfigs) {
+				String className = ruleSessionConfig.getReturnObjectsTypeClassName();
+				if (!ruleConfigs.containsKey(ruleSessionConfig.getSessionId()) && StringUtils.isNotBlank(className)
+						&& !resultClasses.containsKey(className)) {
+					resolvedResultClasses.put(className, resolveClass(className, kieContainer.getKieBase()));
+				}
+			}
+		}
 		// register resources
 		if (ruleProvider.getRuleResources() != null) {
 			ruleProvider.getRuleResources().forEach(kieContainerBuilder::addResource);
 		}
+		resultClasses.putAll(resolvedResultClasses);
 		// register session configs
-		if (ruleProvider.getSessionConfigs() != null) {
-			ruleProvider.getSessionConfigs().forEach(ruleSessionConfig -> {
-				if (!ruleConfigs.containsKey(ruleSessionConfig.getSessionId())) {
-					ruleConfigs.put(ruleSessionConfig.getSessionId(), ruleSessionConfig);
-				}
-				if (!globalBindings.containsKey(ruleSessionConfig.getSessionId())) {
-					globalBindings.put(ruleSessionConfig.getSessionId(), ruleSessionConfig.getGlobals());
-				}
-			});
-		}
+		sessionConfigs.forEach(ruleSessionConfig -> {
+			if (!ruleConfigs.containsKey(ruleSessionConfig.getSessionId())) {
+				ruleConfigs.put(ruleSessionConfig.getSessionId(), ruleSessionConfig);
+				// takes effect when the container is (re)built
+				addEventDeclarations(ruleSessionConfig);
+			}
+			if (!globalBindings.containsKey(ruleSessionConfig.getSessionId())) {
+				globalBindings.put(ruleSessionConfig.getSessionId(), ruleSessionConfig.getGlobals());
+			}
+		});
+		// new globals apply to every session, so flatten them again on the next request
+		sessionGlobals.clear();
 
 		// register external evaluators
 		droolsConfig.registerProviderExternalEvaluators(ruleProvider);
@@ -196,24 +367,201 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 
 	@Override
 	public List<DroolsSessionConfig> getSessionsForAutoStart() {
-		if (ruleConfigs == null) {
-			ruleConfigs = initializeSessionConfigs();
-		}
-		return ruleConfigs.values().stream().filter(DroolsSessionConfig::getAutoStart).collect(Collectors.toList());
+		return getRuleConfigs().values().stream().filter(DroolsSessionConfig::getAutoStart).collect(Collectors.toList());
 	}
 
 	@Override
 	public DroolsSessionConfig getSessionConfig(String sessionId) {
+		return getRuleConfigs().get(sessionId);
+	}
+
+	@Override
+	public List<DroolsSessionConfig> getSessionConfigs() {
+		return new ArrayList<>(getRuleConfigs().values());
+	}
+
+	@Override
+	public DroolsEventsManager getEventsManager() {
+		return eventsManager;
+	}
+
+	@Override
+	public DroolsResultStore getResultStore() {
+		return resultStore;
+	}
+
+	@Override
+	public String getRulesetVersion() {
+		return kieContainerBuilder.getRulesetVersion();
+	}
+
+	public void setResultStore(DroolsResultStore resultStore) {
+		this.resultStore = resultStore;
+	}
+
+	@Override
+	public synchronized KieContainer getKieContainer() {
+		if (kieContainer == null) {
+			log.debug("Building KieContainer");
+			getRuleConfigs().values().forEach(this::addEventDeclarations);
+			kieContainer = kieContainerBuilder.build();
+			resolveResultClasses(kieContainer.getKieBase());
+		}
+		return kieContainer;
+	}
+
+	@Override
+	public synchronized void reloadKieContainer() {
+		log.info("Reloading KieContainer");
+		// long-lived sessions and their event subscriptions belong to the old container
+		List<String> runningSessionIds = eventsManager.getSessionActors().stream().map(DroolsSessionActor::getSessionId)
+				.collect(Collectors.toList());
+		PatientReevaluationPipeline pipeline = eventsManager.getReevaluationPipeline();
+		boolean reevaluating = pipeline != null && !pipeline.isStopped();
+		// stops the pipeline and unsubscribes its listeners, the one started below takes over its pending patients
+		eventsManager.shutdown();
+		kieContainer = null;
+		kieContainerBuilder.reset();
+		resultClasses.clear();
+		unresolvedResultTypes.clear();
+		sessionGlobals.clear();
+		streamKieBase = null;
+		// operators compiled for the literals of the old rules won't be asked for again
+		CompiledOperator.clearCache();
+		getKieContainer();
+
+		runningSessionIds.forEach(sessionId -> {
+			try {
+				eventsManager.startSessionActor(getSessionConfig(sessionId), requestSession(sessionId)).fireAllRules();
+			} catch (Exception e) {
+				log.error("Error restarting session {} after reload", sessionId, e);
+			}
+		});
+		if (reevaluating) {
+			eventsManager.startReevaluationPipeline(this);
+		}
+	}
+
+	/**
+	 * Resolves the result types of all registered session configs so that evaluations don't have to.
+	 * Configs whose type can't be resolved are logged and rejected when they are evaluated.
+	 */
+	private void resolveResultClasses(KieBase kieBase) {
+		getRuleConfigs().values().forEach(config -> {
+			try {
+				resolveResultClass(config, kieBase);
+			} catch (DroolsSessionException e) {
+				unresolvedResultTypes.put(config.getSessionId(), e.getMessage());
+				log.error("Invalid result type for session {}: {}", config.getSessionId(), e.getMessage());
+			}
+		});
+	}
+
+	private void resolveResultClass(DroolsSessionConfig config, KieBase kieBase) {
+		String className = config.getReturnObjectsTypeClassName();
+		if (StringUtils.isNotBlank(className) && !resultClasses.containsKey(className)) {
+			resultClasses.put(className, resolveClass(className, kieBase));
+		}
+	}
+
+	/**
+	 * Attaches a {@link ResultCollector} for the session's declared result type, if it has one that resolves, so
+	 * {@link #getSessionObjects(KieSession, Class)} doesn't have to scan the working memory.
+	 */
+	private void attachResultCollector(KieSession session, DroolsSessionConfig config) {
+		String className = config.getReturnObjectsTypeClassName();
+		if (StringUtils.isBlank(className) || unresolvedResultTypes.containsKey(config.getSessionId())) {
+			return;
+		}
+		Class<?> resultClass = resultClasses.get(className);
+		if (resultClass != null) {
+			ResultCollector.attach(session, resultClass);
+		}
+	}
+
+	private Class<?> getResultClass(String sessionId, String className, KieBase kieBase) {
+		Class<?> resultClass = resultClasses.get(className);
+		if (resultClass != null) {
+			return resultClass;
+		}
+		DroolsSessionConfig config = getSessionConfig(sessionId);
+		if (config != null && className.equals(config.getReturnObjectsTypeClassName())
+				&& unresolvedResultTypes.containsKey(sessionId)) {
+			throw new DroolsSessionException(unresolvedResultTypes.get(sessionId));
+		}
+		// a type other than the configured one, resolve it once and keep it for the next calls
+		resultClass = resolveClass(className, kieBase);
+		resultClasses.put(className, resultClass);
+		return resultClass;
+	}
+
+	/**
+	 * Returns a KieBase in stream mode built from the same rules as the container's default KieBase, shared by all
+	 * stream mode sessions of that container.
+	 */
+	private synchronized KieBase getStreamKieBase(KieContainer kieContainer) {
+		if (kieContainer != this.kieContainer) {
+			// the container was replaced while the session was being requested, don't cache a stale KieBase
+			return kieContainer.newKieBase(newStreamKieBaseConfiguration());
+		}
+		if (streamKieBase == null) {
+			log.debug("Building stream mode KieBase");
+			streamKieBase = kieContainer.newKieBase(newStreamKieBaseConfiguration());
+		}
+		return streamKieBase;
+	}
+
+	private KieBaseConfiguration newStreamKieBaseConfiguration() {
+		KieBaseConfiguration configuration = KieServices.Factory.get().newKieBaseConfiguration();
+		configuration.setOption(EventProcessingOption.STREAM);
+		return configuration;
+	}
+
+	private void addEventDeclarations(DroolsSessionConfig config) {
+		if (config.getEventExpirations() == null) {
+			return;
+		}
+		config.getEventExpirations().forEach((typeName, expires) -> {
+			try {
+				kieContainerBuilder.addEventDeclaration(typeName, expires);
+			} catch (IllegalArgumentException e) {
+				log.error("Ignoring event declaration of session {}: {}", config.getSessionId(), e.getMessage());
+			}
+		});
+	}
+
+	private SessionGlobals getSessionGlobals(String sessionId, KieContainer kieContainer) {
+		SessionGlobals globals = sessionGlobals.get(sessionId);
+		if (globals == null) {
+			globals = flattenSessionGlobals(sessionId, kieContainer);
+		}
+		return globals;
+	}
+
+	private synchronized SessionGlobals flattenSessionGlobals(String sessionId, KieContainer kieContainer) {
+		SessionGlobals globals = SessionGlobals.flatten(sessionId, globalBindings, droolsConfig.getExternalEvaluatorManager(),
+				kieContainer.getKieBase());
+		// don't cache globals of a container that was replaced while this session was being requested
+		if (kieContainer == this.kieContainer) {
+			sessionGlobals.put(sessionId, globals);
+		}
+		return globals;
+	}
+
+	private synchronized Map<String, DroolsSessionConfig> getRuleConfigs() {
 		if (ruleConfigs == null) {
+			log.debug("Initializing session configurations");
 			ruleConfigs = initializeSessionConfigs();
 		}
-		return ruleConfigs.get(sessionId);
+		return ruleConfigs;
 	}
 
 	private Map<String, DroolsSessionConfig> initializeSessionConfigs() {
 		List<RuleProvider> ruleProviders = droolsConfig.getRuleProviders();
+		// sessions may be requested while providers are still being registered during startup
 		Map<String, DroolsSessionConfig> sessionConfigMap = ruleProviders.stream().map(RuleProvider::getSessionConfigs).flatMap(List::stream)
-				.collect(Collectors.toMap(DroolsSessionConfig::getSessionId, ruleSessionConfig -> ruleSessionConfig));
+				.collect(Collectors.toMap(DroolsSessionConfig::getSessionId, ruleSessionConfig -> ruleSessionConfig,
+						(first, second) -> first, ConcurrentHashMap::new));
 		sessionConfigMap.forEach((sessionId, config) -> {
 			globalBindings.put(sessionId, config.getGlobals());
 		});
@@ -273,10 +621,6 @@ public class DroolsEngineServiceImpl extends BaseOpenmrsService implements Drool
 	}
 
 
-	public KieContainer getKieContainer() {
-		return kieContainer;
-	}
-
 	public void setKieContainer(KieContainer kieContainer) {
 		this.kieContainer = kieContainer;
 	}
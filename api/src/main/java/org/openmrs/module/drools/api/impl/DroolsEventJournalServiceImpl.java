@@ -0,0 +1,33 @@
+package org.openmrs.module.drools.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.drools.api.DroolsEventJournalService;
+import org.openmrs.module.drools.api.db.DroolsEventJournalDAO;
+import org.openmrs.module.drools.event.DroolsEventJournalEntry;
+
+import java.util.Collection;
+import java.util.List;
+
+public class DroolsEventJournalServiceImpl extends BaseOpenmrsService implements DroolsEventJournalService {
+
+	private DroolsEventJournalDAO dao;
+
+	@Override
+	public DroolsEventJournalEntry append(DroolsEventJournalEntry entry) {
+		return dao.saveEntry(entry);
+	}
+
+	@Override
+	public void acknowledge(Collection<Integer> entryIds) {
+		dao.deleteEntries(entryIds);
+	}
+
+	@Override
+	public List<DroolsEventJournalEntry> getUnacknowledged(String sessionId, String listener, String subscribedClass) {
+		return dao.getEntries(sessionId, listener, subscribedClass);
+	}
+
+	public void setDao(DroolsEventJournalDAO dao) {
+		this.dao = dao;
+	}
+}
@@ -0,0 +1,38 @@
+package org.openmrs.module.drools.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.drools.api.DroolsResultService;
+import org.openmrs.module.drools.api.db.DroolsResultDAO;
+import org.openmrs.module.drools.result.DroolsResult;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class DroolsResultServiceImpl extends BaseOpenmrsService implements DroolsResultService {
+
+	private DroolsResultDAO dao;
+
+	@Override
+	public void replaceResults(String sessionId, Integer patientId, List<DroolsResult> results) {
+		dao.deleteResults(sessionId, patientId);
+		results.forEach(dao::saveResult);
+	}
+
+	@Override
+	public List<DroolsResult> getResults(String sessionId, Collection<Integer> patientIds, String resultType) {
+		if (patientIds == null || patientIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return dao.getResults(sessionId, patientIds, resultType);
+	}
+
+	@Override
+	public List<Integer> getPatientIdsWithResults(String sessionId, String resultType) {
+		return dao.getPatientIdsWithResults(sessionId, resultType);
+	}
+
+	public void setDao(DroolsResultDAO dao) {
+		this.dao = dao;
+	}
+}
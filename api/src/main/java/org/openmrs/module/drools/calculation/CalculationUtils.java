@@ -72,19 +72,19 @@ public class CalculationUtils {
         }
 
         switch (datatype.getDatatypeCode()) {
-            case ConceptDatatype.BOOLEAN:
+            case BOOLEAN:
                 return obs.getValueBoolean();
-            case ConceptDatatype.CODED:
+            case CODED:
                 return obs.getValueCoded();
-            case ConceptDatatype.TEXT:
+            case TEXT:
                 return obs.getValueText();
-            case ConceptDatatype.NUMERIC:
+            case NUMERIC:
                 return obs.getValueNumeric();
-            case ConceptDatatype.DATE:
+            case DATE:
                 return obs.getValueDate();
-            case ConceptDatatype.DATETIME:
+            case DATETIME:
                 return obs.getValueDatetime();
-            case ConceptDatatype.TIME:
+            case TIME:
                 return obs.getValueTime();
             default:
                 throw new IllegalArgumentException("Unsupported concept datatype: " + datatype.getDatatypeCode());
@@ -0,0 +1,434 @@
+package org.openmrs.module.drools.calculation;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.Concept;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * An {@link Operator} bound to a datatype and a right-hand operand, ready to be tested against many left-hand
+ * operands.
+ * <p>
+ * The right-hand operand is refined once when compiling, so date strings are parsed and concept references resolved
+ * only once. Numerics are then compared as doubles, dates and datetimes as epoch milliseconds and times as
+ * milliseconds of the day, without parsing or boxing anything per test. Concepts are compared by id, so compiled
+ * operators only hold primitives, ids and parsed values, never the entities they were compiled from, except for
+ * unsaved concepts, which have no id and are never cached.
+ *
+ * @see Operator#compile(Object, ConceptDatatypeWrapper)
+ */
+public abstract class CompiledOperator implements Predicate<Object> {
+
+    private static final int MAX_CACHED = 1000;
+
+    /**
+     * Operators compiled for literal operands, least recently used first.
+     */
+    private static final Map<List<Object>, CompiledOperator> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<List<Object>, CompiledOperator>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, CompiledOperator> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    private final Operator operator;
+
+    private final DatatypeCode datatypeCode;
+
+    private final String datatypeName;
+
+    private final boolean supported;
+
+    protected CompiledOperator(Operator operator, ConceptDatatypeWrapper datatype) {
+        this.operator = operator;
+        this.datatypeCode = datatype.getDatatypeCode();
+        this.datatypeName = datatype.getDatatype().getName();
+        this.supported = operator.getSupportedDatatypes().contains(datatypeCode);
+    }
+
+    /**
+     * Returns the compiled form of the operator, reusing the one compiled for an equal operand and datatype if any.
+     * Only literal operands, i.e. strings, numbers and booleans or collections and arrays of them, are cached as rules
+     * pass the same ones for every patient. Other operands, such as dates computed from now or concepts, are compiled
+     * on every call, and so are operators holding concepts without an id.
+     * <p>
+     * Concept references are resolved when compiling, so the cache is cleared when a concept changes, see
+     * {@link MetadataCache}.
+     */
+    public static CompiledOperator cached(Operator operator, Object right, ConceptDatatypeWrapper datatype) {
+        // arrays don't implement equals, key them by their elements
+        Object operand = right instanceof Object[] ? Arrays.asList((Object[]) right) : right;
+        if (!isLiteral(operand)) {
+            return operator.compile(right, datatype);
+        }
+        List<Object> key = Arrays.asList(operator, datatype.getDatatypeCode(), operand);
+        CompiledOperator compiled = CACHE.get(key);
+        if (compiled == null) {
+            compiled = operator.compile(right, datatype);
+            if (compiled.isCacheable()) {
+                CACHE.put(key, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Discards the operators compiled for literal operands.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static boolean isLiteral(Object operand) {
+        if (operand instanceof Collection) {
+            for (Object element : (Collection<?>) operand) {
+                if (!isLiteral(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return operand == null || operand instanceof String || operand instanceof Number || operand instanceof Boolean;
+    }
+
+    /**
+     * @return whether the operator can be shared across evaluations, false if it holds an entity rather than its id
+     */
+    protected boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * Tests the operator against the given left-hand operand, e.g. an obs value.
+     *
+     * @return true if the comparison holds; false otherwise
+     */
+    @Override
+    public abstract boolean test(Object left);
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public DatatypeCode getDatatypeCode() {
+        return datatypeCode;
+    }
+
+    /**
+     * @return the name of the concept datatype the operator was compiled for
+     */
+    public String getDatatypeName() {
+        return datatypeName;
+    }
+
+    /**
+     * @return whether the operator supports the datatype it was compiled for
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * @param accepts whether the result of comparing a left-hand operand to the right-hand one satisfies the operator
+     */
+    static CompiledOperator comparison(Operator operator, Object right, ConceptDatatypeWrapper datatype,
+            IntPredicate accepts) {
+        return new Comparison(operator, right, datatype, accepts);
+    }
+
+    static CompiledOperator exists(Operator operator, ConceptDatatypeWrapper datatype) {
+        return new Exists(operator, datatype);
+    }
+
+    static CompiledOperator range(Operator operator, Object right, ConceptDatatypeWrapper datatype) {
+        List<?> bounds = operands(right);
+        if (bounds.size() != 2) {
+            throw new IllegalArgumentException("Operator " + operator + " expects a lower and an upper bound, got: "
+                    + right);
+        }
+        return new Range(operator, bounds.get(0), bounds.get(1), datatype);
+    }
+
+    static CompiledOperator membership(Operator operator, Object right, ConceptDatatypeWrapper datatype) {
+        return new Membership(operator, operands(right), datatype);
+    }
+
+    /**
+     * Splits a right-hand operand holding several values, given as a collection, an array or a comma separated
+     * string.
+     */
+    private static List<?> operands(Object right) {
+        if (right instanceof Collection) {
+            return new ArrayList<>((Collection<?>) right);
+        }
+        if (right instanceof Object[]) {
+            return Arrays.asList((Object[]) right);
+        }
+        if (right instanceof String) {
+            return CalculationUtils.splitValues((String) right);
+        }
+        return Collections.singletonList(right);
+    }
+
+    private enum Kind {
+        NUMERIC, INSTANT, TIME, BOOLEAN, CODED, TEXT
+    }
+
+    private static Kind kindOf(ConceptDatatypeWrapper datatype) {
+        switch (datatype.getDatatypeCode()) {
+            case NUMERIC:
+                return Kind.NUMERIC;
+            case DATE:
+            case DATETIME:
+                return Kind.INSTANT;
+            case TIME:
+                return Kind.TIME;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case CODED:
+                return Kind.CODED;
+            default:
+                return Kind.TEXT;
+        }
+    }
+
+    private static final class Comparison extends CompiledOperator {
+
+        private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+        private final Kind kind;
+
+        private final Object right;
+
+        private final double numericRight;
+
+        private final long millisRight;
+
+        private final Integer conceptIdRight;
+
+        private final TimeZone timeZone;
+
+        private final IntPredicate accepts;
+
+        Comparison(Operator operator, Object right, ConceptDatatypeWrapper datatype, IntPredicate accepts) {
+            super(operator, datatype);
+            this.accepts = accepts;
+            this.kind = kindOf(datatype);
+            this.timeZone = TimeZone.getDefault();
+            Object refined = right == null ? null : CalculationUtils.refineRhsOperand(right, datatype.getDatatype());
+
+            double numeric = 0;
+            long millis = 0;
+            Integer conceptId = null;
+            if (refined != null) {
+                switch (kind) {
+                    case NUMERIC:
+                        numeric = refined instanceof Number ? ((Number) refined).doubleValue()
+                                : Double.parseDouble(refined.toString());
+                        break;
+                    case INSTANT:
+                        if (!(refined instanceof Date)) {
+                            throw new IllegalArgumentException("Can't compare dates with: " + right);
+                        }
+                        millis = ((Date) refined).getTime();
+                        break;
+                    case TIME:
+                        millis = millisOfDay(refined);
+                        break;
+                    case CODED:
+                        conceptId = ((Concept) refined).getConceptId();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            // only an unsaved concept, which can't be compared by id, is kept
+            this.right = kind == Kind.CODED && conceptId != null ? conceptId : refined;
+            this.numericRight = numeric;
+            this.millisRight = millis;
+            this.conceptIdRight = conceptId;
+        }
+
+        @Override
+        public boolean test(Object left) {
+            return accepts.test(compare(left));
+        }
+
+        @Override
+        protected boolean isCacheable() {
+            return !(kind == Kind.CODED && right != null && conceptIdRight == null);
+        }
+
+        private int compare(Object left) {
+            // nulls first
+            if (left == null) {
+                return right == null ? 0 : -1;
+            }
+            if (right == null) {
+                return 1;
+            }
+            switch (kind) {
+                case NUMERIC:
+                    return Double.compare(((Number) left).doubleValue(), numericRight);
+                case INSTANT:
+                    return Long.compare(((Date) left).getTime(), millisRight);
+                case TIME:
+                    return Long.compare(millisOfDay(left), millisRight);
+                case BOOLEAN:
+                    return Boolean.compare((Boolean) left, (Boolean) right);
+                case CODED:
+                    return isSameConcept((Concept) left) ? 0 : -1;
+                default:
+                    return left.toString().compareTo(right.toString());
+            }
+        }
+
+        private boolean isSameConcept(Concept left) {
+            Integer conceptId = left.getConceptId();
+            if (conceptId != null && conceptIdRight != null) {
+                return conceptId.equals(conceptIdRight);
+            }
+            return left.equals(right);
+        }
+
+        private long millisOfDay(Object time) {
+            if (time instanceof LocalTime) {
+                return ((LocalTime) time).toNanoOfDay() / 1_000_000;
+            }
+            long millis = ((Date) time).getTime();
+            return Math.floorMod(millis + timeZone.getOffset(millis), MILLIS_PER_DAY);
+        }
+    }
+
+    /**
+     * Inclusive range, both bounds are refined once.
+     */
+    private static final class Range extends CompiledOperator {
+
+        private final CompiledOperator lower;
+
+        private final CompiledOperator upper;
+
+        Range(Operator operator, Object lower, Object upper, ConceptDatatypeWrapper datatype) {
+            super(operator, datatype);
+            this.lower = Operator.GTE.compile(lower, datatype);
+            this.upper = Operator.LTE.compile(upper, datatype);
+        }
+
+        @Override
+        public boolean test(Object left) {
+            return left != null && lower.test(left) && upper.test(left);
+        }
+
+        @Override
+        protected boolean isCacheable() {
+            return lower.isCacheable() && upper.isCacheable();
+        }
+    }
+
+    /**
+     * Membership in a set of values. Numerics are looked up in a sorted array of doubles and concepts by id, other
+     * datatypes fall back to an equality test per value.
+     */
+    private static final class Membership extends CompiledOperator {
+
+        private final Kind kind;
+
+        private final double[] numerics;
+
+        private final Set<Integer> conceptIds = new HashSet<>();
+
+        private final Set<Concept> conceptsWithoutId = new HashSet<>();
+
+        private final CompiledOperator[] equalities;
+
+        Membership(Operator operator, List<?> values, ConceptDatatypeWrapper datatype) {
+            super(operator, datatype);
+            this.kind = kindOf(datatype);
+            if (kind == Kind.NUMERIC) {
+                this.numerics = values.stream().filter(v -> v != null)
+                        .mapToDouble(v -> v instanceof Number ? ((Number) v).doubleValue()
+                                : Double.parseDouble(v.toString()))
+                        .sorted().toArray();
+                this.equalities = null;
+            } else if (kind == Kind.CODED) {
+                for (Object value : values) {
+                    Concept concept = (Concept) CalculationUtils.refineRhsOperand(value, datatype.getDatatype());
+                    if (concept.getConceptId() != null) {
+                        conceptIds.add(concept.getConceptId());
+                    } else {
+                        conceptsWithoutId.add(concept);
+                    }
+                }
+                this.numerics = null;
+                this.equalities = null;
+            } else {
+                this.numerics = null;
+                this.equalities = values.stream().map(v -> Operator.EQUALS.compile(v, datatype))
+                        .toArray(CompiledOperator[]::new);
+            }
+        }
+
+        @Override
+        public boolean test(Object left) {
+            if (left == null) {
+                return false;
+            }
+            switch (kind) {
+                case NUMERIC:
+                    return Arrays.binarySearch(numerics, ((Number) left).doubleValue()) >= 0;
+                case CODED:
+                    Concept concept = (Concept) left;
+                    if (concept.getConceptId() != null && conceptIds.contains(concept.getConceptId())) {
+                        return true;
+                    }
+                    return !conceptsWithoutId.isEmpty() && conceptsWithoutId.contains(concept);
+                default:
+                    for (CompiledOperator equality : equalities) {
+                        if (equality.test(left)) {
+                            return true;
+                        }
+                    }
+                    return false;
+            }
+        }
+
+        @Override
+        protected boolean isCacheable() {
+            return conceptsWithoutId.isEmpty();
+        }
+    }
+
+    private static final class Exists extends CompiledOperator {
+
+        Exists(Operator operator, ConceptDatatypeWrapper datatype) {
+            super(operator, datatype);
+        }
+
+        @Override
+        public boolean test(Object left) {
+            if (left == null) {
+                return false;
+            }
+            if (left instanceof String) {
+                return StringUtils.isNotBlank((String) left);
+            }
+            return true;
+        }
+    }
+}
@@ -6,28 +6,17 @@ public class ConceptDatatypeWrapper {
 
     public ConceptDatatype datatype;
 
+    private DatatypeCode datatypeCode;
+
     public ConceptDatatypeWrapper(ConceptDatatype datatype) {
         this.datatype = datatype;
     }
 
-    public String getDatatypeCode() {
-        if (datatype.isDate()) {
-            return ConceptDatatype.DATE;
-        } else if (datatype.isDateTime()) {
-            return ConceptDatatype.DATETIME;
-        } else if (datatype.isTime()) {
-            return ConceptDatatype.TIME;
-        } else if (datatype.isCoded()) {
-            return ConceptDatatype.CODED;
-        } else if (datatype.isBoolean()) {
-            return ConceptDatatype.BOOLEAN;
-        } else if (datatype.isNumeric()) {
-            return ConceptDatatype.NUMERIC;
-        } else if (datatype.isText()) {
-            return ConceptDatatype.TEXT;
-        } else {
-            return "UNSUPPORTED";
+    public DatatypeCode getDatatypeCode() {
+        if (datatypeCode == null) {
+            datatypeCode = DatatypeCode.of(datatype);
         }
+        return datatypeCode;
     }
 
     public ConceptDatatype getDatatype() {
@@ -36,5 +25,6 @@ public class ConceptDatatypeWrapper {
 
     public void setDatatype(ConceptDatatype datatype) {
         this.datatype = datatype;
+        this.datatypeCode = null;
     }
 }
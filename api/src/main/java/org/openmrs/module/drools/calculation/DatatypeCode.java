@@ -0,0 +1,73 @@
+package org.openmrs.module.drools.calculation;
+
+import org.openmrs.ConceptDatatype;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The concept datatypes operators know how to compare, see {@link ConceptDatatypeWrapper#getDatatypeCode()}.
+ */
+public enum DatatypeCode {
+
+    DATE(ConceptDatatype.DATE),
+    DATETIME(ConceptDatatype.DATETIME),
+    TIME(ConceptDatatype.TIME),
+    CODED(ConceptDatatype.CODED),
+    BOOLEAN(ConceptDatatype.BOOLEAN),
+    NUMERIC(ConceptDatatype.NUMERIC),
+    TEXT(ConceptDatatype.TEXT),
+    UNSUPPORTED("UNSUPPORTED");
+
+    // datatypes are resolved by comparing uuids, only do it once per datatype
+    private static final Map<Integer, DatatypeCode> CODES_BY_DATATYPE_ID = new ConcurrentHashMap<>();
+
+    private final String code;
+
+    DatatypeCode(String code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the HL7 abbreviation of the datatype, e.g. {@link ConceptDatatype#NUMERIC}
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Returns the code of the given datatype, cached by datatype id.
+     */
+    public static DatatypeCode of(ConceptDatatype datatype) {
+        Integer datatypeId = datatype.getConceptDatatypeId();
+        if (datatypeId == null) {
+            return resolve(datatype);
+        }
+        DatatypeCode code = CODES_BY_DATATYPE_ID.get(datatypeId);
+        if (code == null) {
+            code = resolve(datatype);
+            CODES_BY_DATATYPE_ID.put(datatypeId, code);
+        }
+        return code;
+    }
+
+    private static DatatypeCode resolve(ConceptDatatype datatype) {
+        if (datatype.isDate()) {
+            return DATE;
+        } else if (datatype.isDateTime()) {
+            return DATETIME;
+        } else if (datatype.isTime()) {
+            return TIME;
+        } else if (datatype.isCoded()) {
+            return CODED;
+        } else if (datatype.isBoolean()) {
+            return BOOLEAN;
+        } else if (datatype.isNumeric()) {
+            return NUMERIC;
+        } else if (datatype.isText()) {
+            return TEXT;
+        } else {
+            return UNSUPPORTED;
+        }
+    }
+}
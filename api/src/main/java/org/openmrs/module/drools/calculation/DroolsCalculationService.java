@@ -3,8 +3,15 @@ package org.openmrs.module.drools.calculation;
 import org.openmrs.Obs;
 import org.openmrs.Patient;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 
+/**
+ * Helpers rules call to query patient data. Every helper taking a {@link Patient} has an overload taking the patient
+ * id, for sessions that insert projected facts such as {@code PatientFact} rather than entities.
+ */
 public interface DroolsCalculationService {
 
     /**
@@ -36,6 +43,11 @@ public interface DroolsCalculationService {
      */
     public Boolean checkMostRecentObs(Patient patient, String conceptRef, Operator operator, Object value);
 
+    /**
+     * @see #checkMostRecentObs(Patient, String, Operator, Object)
+     */
+    public Boolean checkMostRecentObs(Integer patientId, String conceptRef, Operator operator, Object value);
+
 
     /**
      * Retrieves the most recent observation for the given patient and concept that matches
@@ -51,7 +63,8 @@ public interface DroolsCalculationService {
      *   <li>{@code EQUALS} includes observations occurring on the same calendar day</li>
      * </ul>
      * The most recent matching observation within that range is returned as a {@link MatchableObsResult},
-     * allowing value-based assertions using methods like {@code matches(Operator.GT, 5.0)}.
+     * allowing value-based assertions using methods like {@code matches(Operator.GT, 5.0)}, or {@code matchesAll}
+     * and {@code matchesAny} to test several conditions against the same observation.
      *
      * @param patient      the patient whose observations are to be evaluated
      * @param conceptRef   the concept UUID or reference to match observations against
@@ -66,16 +79,143 @@ public interface DroolsCalculationService {
      */
     public MatchableObsResult checkObs(Patient patient, String conceptRef, Operator dateOperator, Date date);
 
+    /**
+     * @see #checkObs(Patient, String, Operator, Date)
+     */
+    public MatchableObsResult checkObs(Integer patientId, String conceptRef, Operator dateOperator, Date date);
+
     public Obs getLatestObs(Patient patient, String conceptUuid);
 
+    public Obs getLatestObs(Integer patientId, String conceptUuid);
+
+    /**
+     * Loads the numeric observations of a patient for a concept as a time series, with one query that doesn't load
+     * the obs entities.
+     *
+     * @param patient    the patient whose observations are loaded
+     * @param conceptRef the concept reference (UUID or mapping) of a numeric concept
+     * @param from       the earliest obs datetime to include, or null
+     * @param to         the latest obs datetime to include, or null
+     * @return the series, empty if the patient has no such observation
+     * @see ObsTimeSeries
+     */
+    public ObsTimeSeries getObsTimeSeries(Patient patient, String conceptRef, Date from, Date to);
+
+    /**
+     * @see #getObsTimeSeries(Patient, String, Date, Date)
+     */
+    public ObsTimeSeries getObsTimeSeries(Integer patientId, String conceptRef, Date from, Date to);
+
+    /**
+     * Loads the time series of several patients at once, e.g. before evaluating a cohort.
+     *
+     * @return the series by patient id, patients without observations get an empty series
+     * @see #getObsTimeSeries(Patient, String, Date, Date)
+     */
+    public Map<Integer, ObsTimeSeries> getObsTimeSeries(Collection<Integer> patientIds, String conceptRef, Date from,
+                                                        Date to);
+
+    /**
+     * Checks whether a patient is currently enrolled in a program, with a query that stops at the first active
+     * enrollment.
+     *
+     * @param programUuid the program UUID
+     * @throws IllegalArgumentException if there is no such program
+     */
     public Boolean isInProgram(Patient patient, String programUuid);
 
+    /**
+     * @see #isInProgram(Patient, String)
+     */
+    public Boolean isInProgram(Integer patientId, String programUuid);
+
+    /**
+     * Checks which patients of a cohort are currently enrolled in a program, with one query per thousand patients.
+     *
+     * @return the ids of the enrolled patients
+     * @see #isInProgram(Patient, String)
+     */
+    public BitSet getPatientsInProgram(Collection<Integer> patientIds, String programUuid);
+
+    /**
+     * Checks whether a patient is currently in a program state, e.g. "On ART", with a query that stops at the first
+     * active state. The answer is memoized within an {@link EvaluationScope}.
+     *
+     * @param stateConceptUuid the concept reference (UUID or mapping) of the state
+     * @throws IllegalArgumentException if the concept can't be resolved
+     */
     public Boolean isInProgramState(Patient patient, String stateConceptUuid);
 
+    /**
+     * @see #isInProgramState(Patient, String)
+     */
+    public Boolean isInProgramState(Integer patientId, String stateConceptUuid);
+
+    /**
+     * Checks which patients of a cohort are currently in a program state, with one query per thousand patients. The
+     * answers are memoized for each patient within an {@link EvaluationScope}.
+     *
+     * @return the ids of the patients in the state
+     * @see #isInProgramState(Patient, String)
+     */
+    public BitSet getPatientsInProgramState(Collection<Integer> patientIds, String stateConceptUuid);
+
+    /**
+     * Checks whether a patient has an active condition coded with a concept, with a query that stops at the first
+     * one. The answer is memoized within an {@link EvaluationScope}.
+     *
+     * @param conditionConceptUuid the concept reference (UUID or mapping) of the condition
+     * @throws IllegalArgumentException if the concept can't be resolved
+     */
     public Boolean hasActiveConditionCoded(Patient patient, String conditionConceptUuid);
 
+    /**
+     * @see #hasActiveConditionCoded(Patient, String)
+     */
+    public Boolean hasActiveConditionCoded(Integer patientId, String conditionConceptUuid);
+
+    /**
+     * Checks which patients of a cohort have an active condition coded with a concept, with one query per thousand
+     * patients. The answers are memoized for each patient within an {@link EvaluationScope}.
+     *
+     * @return the ids of the patients with the condition
+     * @see #hasActiveConditionCoded(Patient, String)
+     */
+    public BitSet getPatientsWithActiveConditionCoded(Collection<Integer> patientIds, String conditionConceptUuid);
+
+    /**
+     * Checks whether a patient has any encounter of a type, with a query that stops at the first one.
+     *
+     * @param encounterTypeUuid the encounter type UUID or name
+     * @throws IllegalArgumentException if there is no such encounter type
+     */
     public Boolean hasEncounterRecord(Patient patient, String encounterTypeUuid);
 
+    /**
+     * @see #hasEncounterRecord(Patient, String)
+     */
+    public Boolean hasEncounterRecord(Integer patientId, String encounterTypeUuid);
+
+    /**
+     * Checks whether a patient has an encounter of a type between two dates, either of which may be null.
+     *
+     * @see #hasEncounterRecord(Patient, String)
+     */
     public Boolean hasEncounter(Patient patient, String encounterTypeUuid, Date from, Date to);
 
+    /**
+     * @see #hasEncounter(Patient, String, Date, Date)
+     */
+    public Boolean hasEncounter(Integer patientId, String encounterTypeUuid, Date from, Date to);
+
+    /**
+     * Checks which patients of a cohort have an encounter of a type between two dates, with one query per thousand
+     * patients.
+     *
+     * @return the ids of the patients with such an encounter
+     * @see #hasEncounter(Patient, String, Date, Date)
+     */
+    public BitSet getPatientsWithEncounter(Collection<Integer> patientIds, String encounterTypeUuid, Date from,
+                                           Date to);
+
 }
@@ -1,46 +1,70 @@
 package org.openmrs.module.drools.calculation;
 
 import org.openmrs.*;
-import org.openmrs.api.EncounterService;
 import org.openmrs.api.ObsService;
-import org.openmrs.api.ProgramWorkflowService;
 import org.openmrs.api.context.Context;
-import org.openmrs.parameter.EncounterSearchCriteria;
+import org.openmrs.module.drools.api.db.DroolsCalculationDAO;
 import org.openmrs.util.OpenmrsUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DroolsCalculationServiceImp implements DroolsCalculationService {
 
+    private static final String IN_PROGRAM_STATE = "isInProgramState";
+
+    private static final String ACTIVE_CONDITION = "hasActiveConditionCoded";
+
     @Autowired
     ObsService obsService;
 
     @Autowired
-    ProgramWorkflowService programWorkflowService;
+    MetadataCache metadataCache;
+
+    private DroolsCalculationDAO dao;
+
+    public void setDao(DroolsCalculationDAO dao) {
+        this.dao = dao;
+    }
 
     @Override
     public Boolean checkMostRecentObs(Patient patient, String conceptRef, Operator operator, Object value) {
-        Obs obsValue = getLatestObs(patient, conceptRef);
+        return checkMostRecentObs(patient.getPatientId(), conceptRef, operator, value);
+    }
+
+    @Override
+    public Boolean checkMostRecentObs(Integer patientId, String conceptRef, Operator operator, Object value) {
+        Obs obsValue = getLatestObs(patientId, conceptRef);
 
         if (obsValue == null) {
             return false;
         }
         Concept concept = obsValue.getConcept();
         ConceptDatatypeWrapper datatype = new ConceptDatatypeWrapper(concept.getDatatype());
-        if (!operator.getSupportedDatatypes().contains(datatype.getDatatypeCode())) {
+        // rules pass the same literals for every patient, so the value is only refined once
+        CompiledOperator compiled = CompiledOperator.cached(operator, value, datatype);
+        if (!compiled.isSupported()) {
             throw new IllegalArgumentException(
                     "Operator " + operator + " not supported for datatype " + datatype.getDatatype().getName());
         }
         Object refinedValue = CalculationUtils.extractObsValue((Obs) obsValue, datatype);
-        return operator.apply(refinedValue, value, datatype);
+        return compiled.test(refinedValue);
     }
 
     @Override
     public MatchableObsResult checkObs(Patient patient, String conceptRef, Operator dateOperator, Date date) {
+        return checkObs(patient.getPatientId(), conceptRef, dateOperator, date);
+    }
+
+    @Override
+    public MatchableObsResult checkObs(Integer patientId, String conceptRef, Operator dateOperator, Date date) {
         Date fromDate = null;
         Date toDate = null;
         if (dateOperator == null) {
@@ -70,7 +94,7 @@ public class DroolsCalculationServiceImp implements DroolsCalculationService {
         }
 
         List<Obs> obsList = Context.getObsService().getObservations(
-                List.of(patient),
+                List.of(new Person(patientId)),
                 null,
                 List.of(concept),
                 null,
@@ -88,8 +112,14 @@ public class DroolsCalculationServiceImp implements DroolsCalculationService {
 
     @Override
     public Obs getLatestObs(Patient patient, String conceptRef) {
+        return getLatestObs(patient.getPatientId(), conceptRef);
+    }
+
+    @Override
+    public Obs getLatestObs(Integer patientId, String conceptRef) {
         Concept concept = CalculationUtils.getConcept(conceptRef);
-        List<Obs> obsList = obsService.getObservations(Arrays.asList(patient.getPerson()), null,
+        // observations are only queried by person id, the person doesn't need to be loaded
+        List<Obs> obsList = obsService.getObservations(Arrays.asList(new Person(patientId)), null,
                 Arrays.asList(concept), null, null, null, Arrays.asList("obsDatetime"), 1, null, null, null, false);
         if (obsList.isEmpty()) {
             return null;
@@ -98,60 +128,154 @@ public class DroolsCalculationServiceImp implements DroolsCalculationService {
     }
 
     @Override
-    public Boolean isInProgram(Patient patient, String programUuid) {
-        Program program = programWorkflowService.getProgramByUuid(programUuid);
-        if (program == null) {
-            throw new IllegalArgumentException("Program not found for uuid: " + programUuid);
+    public ObsTimeSeries getObsTimeSeries(Patient patient, String conceptRef, Date from, Date to) {
+        return getObsTimeSeries(patient.getPatientId(), conceptRef, from, to);
+    }
+
+    @Override
+    public ObsTimeSeries getObsTimeSeries(Integer patientId, String conceptRef, Date from, Date to) {
+        return getObsTimeSeries(Collections.singletonList(patientId), conceptRef, from, to).get(patientId);
+    }
+
+    @Override
+    public Map<Integer, ObsTimeSeries> getObsTimeSeries(Collection<Integer> patientIds, String conceptRef, Date from,
+                                                        Date to) {
+        Concept concept = CalculationUtils.getConcept(conceptRef);
+        if (concept == null) {
+            throw new IllegalArgumentException("Couldn't resolve concept with ref: " + conceptRef);
+        }
+        List<Object[]> rows = dao.getNumericObsValues(patientIds, concept.getConceptId(), from, to);
+
+        Map<Integer, ObsTimeSeries> series = new HashMap<>();
+        // rows are ordered by patient, so each patient's rows are contiguous
+        int start = 0;
+        while (start < rows.size()) {
+            Integer patientId = (Integer) rows.get(start)[0];
+            int end = start;
+            while (end < rows.size() && patientId.equals(rows.get(end)[0])) {
+                end++;
+            }
+            long[] times = new long[end - start];
+            double[] values = new double[end - start];
+            for (int i = start; i < end; i++) {
+                times[i - start] = ((Date) rows.get(i)[1]).getTime();
+                values[i - start] = ((Number) rows.get(i)[2]).doubleValue();
+            }
+            series.put(patientId, new ObsTimeSeries(patientId, concept.getConceptId(), times, values));
+            start = end;
+        }
+        for (Integer patientId : patientIds) {
+            series.computeIfAbsent(patientId,
+                    id -> new ObsTimeSeries(id, concept.getConceptId(), new long[0], new double[0]));
         }
-        return programWorkflowService.getPatientPrograms(patient, program, null,
-                null, null, null, false).stream().anyMatch(p -> p.getActive());
+        return series;
+    }
+
+    @Override
+    public Boolean isInProgram(Patient patient, String programUuid) {
+        return isInProgram(patient.getPatientId(), programUuid);
+    }
+
+    @Override
+    public Boolean isInProgram(Integer patientId, String programUuid) {
+        return dao.isInProgram(patientId, getProgram(programUuid).getProgramId(), new Date());
+    }
 
+    @Override
+    public BitSet getPatientsInProgram(Collection<Integer> patientIds, String programUuid) {
+        return dao.getPatientsInProgram(patientIds, getProgram(programUuid).getProgramId(), new Date());
     }
 
     @Override
     public Boolean isInProgramState(Patient patient, String stateConceptUuid) {
-        // TODO provide implementation
-        throw new UnsupportedOperationException("Unimplemented method 'isInProgramState'");
+        return isInProgramState(patient.getPatientId(), stateConceptUuid);
+    }
+
+    @Override
+    public Boolean isInProgramState(Integer patientId, String stateConceptUuid) {
+        return EvaluationScope.memoize(Arrays.asList(IN_PROGRAM_STATE, patientId, stateConceptUuid),
+                () -> dao.isInProgramState(patientId, getConceptId(stateConceptUuid), new Date()));
+    }
+
+    @Override
+    public BitSet getPatientsInProgramState(Collection<Integer> patientIds, String stateConceptUuid) {
+        BitSet patients = dao.getPatientsInProgramState(patientIds, getConceptId(stateConceptUuid), new Date());
+        for (Integer patientId : patientIds) {
+            EvaluationScope.remember(Arrays.asList(IN_PROGRAM_STATE, patientId, stateConceptUuid),
+                    patients.get(patientId));
+        }
+        return patients;
     }
 
     @Override
     public Boolean hasActiveConditionCoded(Patient patient, String conditionConceptUuid) {
-        // TODO provide implementation
-        throw new UnsupportedOperationException("Unimplemented method 'hasActiveConditionCoded'");
+        return hasActiveConditionCoded(patient.getPatientId(), conditionConceptUuid);
     }
 
     @Override
-    public Boolean hasEncounterRecord(Patient patient, String encounterTypeUuid) {
-        EncounterService encounterService = Context.getEncounterService();
-        EncounterType encounterType = getEncounterType(encounterTypeUuid);
+    public Boolean hasActiveConditionCoded(Integer patientId, String conditionConceptUuid) {
+        return EvaluationScope.memoize(Arrays.asList(ACTIVE_CONDITION, patientId, conditionConceptUuid),
+                () -> dao.hasActiveConditionCoded(patientId, getConceptId(conditionConceptUuid)));
+    }
 
-        if (encounterType == null) {
-            throw new IllegalArgumentException("Encounter type not found for uuid: " + encounterTypeUuid);
+    @Override
+    public BitSet getPatientsWithActiveConditionCoded(Collection<Integer> patientIds, String conditionConceptUuid) {
+        BitSet patients = dao.getPatientsWithActiveConditionCoded(patientIds, getConceptId(conditionConceptUuid));
+        for (Integer patientId : patientIds) {
+            EvaluationScope.remember(Arrays.asList(ACTIVE_CONDITION, patientId, conditionConceptUuid),
+                    patients.get(patientId));
         }
-        EncounterSearchCriteria criteria = new EncounterSearchCriteria(patient, null, null, null, null, null,
-                Collections.singletonList(encounterType), null, null, null, false);
-        return !encounterService.getEncounters(criteria).isEmpty();
+        return patients;
+    }
+
+    @Override
+    public Boolean hasEncounterRecord(Patient patient, String encounterTypeUuid) {
+        return hasEncounterRecord(patient.getPatientId(), encounterTypeUuid);
+    }
+
+    @Override
+    public Boolean hasEncounterRecord(Integer patientId, String encounterTypeUuid) {
+        return hasEncounter(patientId, encounterTypeUuid, null, null);
     }
 
     @Override
     public Boolean hasEncounter(Patient patient, String encounterTypeUuid, Date from, Date to) {
-        EncounterService encounterService = Context.getEncounterService();
-        EncounterType encounterType = getEncounterType(encounterTypeUuid);
+        return hasEncounter(patient.getPatientId(), encounterTypeUuid, from, to);
+    }
 
-        if (encounterType == null) {
-            throw new IllegalArgumentException("Encounter type not found for uuid: " + encounterTypeUuid);
-        }
-        EncounterSearchCriteria criteria = new EncounterSearchCriteria(patient, null, from, to, null, null,
-                Collections.singletonList(encounterType), null, null, null, false);
-        return !encounterService.getEncounters(criteria).isEmpty();
+    @Override
+    public Boolean hasEncounter(Integer patientId, String encounterTypeUuid, Date from, Date to) {
+        return dao.hasEncounter(patientId, getEncounterType(encounterTypeUuid).getEncounterTypeId(), from, to);
+    }
+
+    @Override
+    public BitSet getPatientsWithEncounter(Collection<Integer> patientIds, String encounterTypeUuid, Date from,
+                                           Date to) {
+        return dao.getPatientsWithEncounter(patientIds, getEncounterType(encounterTypeUuid).getEncounterTypeId(),
+                from, to);
     }
 
     private EncounterType getEncounterType(String encounterTypeRef) {
-        EncounterService encounterService = Context.getEncounterService();
-        EncounterType encounterType = encounterService.getEncounterTypeByUuid(encounterTypeRef);
+        EncounterType encounterType = metadataCache.getEncounterType(encounterTypeRef);
         if (encounterType == null) {
-            encounterType = encounterService.getEncounterType(encounterTypeRef);
+            throw new IllegalArgumentException("Encounter type not found for uuid: " + encounterTypeRef);
         }
         return encounterType;
     }
+
+    private Integer getConceptId(String conceptRef) {
+        Concept concept = CalculationUtils.getConcept(conceptRef);
+        if (concept == null) {
+            throw new IllegalArgumentException("Couldn't resolve concept with ref: " + conceptRef);
+        }
+        return concept.getConceptId();
+    }
+
+    private Program getProgram(String programUuid) {
+        Program program = metadataCache.getProgram(programUuid);
+        if (program == null) {
+            throw new IllegalArgumentException("Program not found for uuid: " + programUuid);
+        }
+        return program;
+    }
 }
@@ -0,0 +1,87 @@
+package org.openmrs.module.drools.calculation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the answers of calculation helpers for the duration of an evaluation, so that rules asking the same
+ * question about a patient, e.g. from several rule conditions, query the database once.
+ * <p>
+ * A scope is bound to the evaluating thread. Scopes opened while another one is open join it, and answers are
+ * computed directly when no scope is open.
+ * <pre>{@code
+ * try (EvaluationScope scope = EvaluationScope.open()) {
+ *     session.fireAllRules();
+ * }
+ * }</pre>
+ */
+public final class EvaluationScope implements AutoCloseable {
+
+    private static final ThreadLocal<EvaluationScope> CURRENT = new ThreadLocal<>();
+
+    private final Map<List<?>, Object> answers = new HashMap<>();
+
+    private final boolean owner;
+
+    private EvaluationScope(boolean owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Opens a scope on the current thread, or joins the one already open.
+     */
+    public static EvaluationScope open() {
+        EvaluationScope current = CURRENT.get();
+        if (current != null) {
+            return new EvaluationScope(false);
+        }
+        EvaluationScope scope = new EvaluationScope(true);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return whether a scope is open on the current thread
+     */
+    public static boolean isOpen() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Returns the answer memoized under the key in the open scope, computing it if missing.
+     *
+     * @param key the question, e.g. the helper name followed by its arguments
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T memoize(List<?> key, Supplier<T> answer) {
+        EvaluationScope scope = CURRENT.get();
+        if (scope == null) {
+            return answer.get();
+        }
+        if (scope.answers.containsKey(key)) {
+            return (T) scope.answers.get(key);
+        }
+        T value = answer.get();
+        scope.answers.put(key, value);
+        return value;
+    }
+
+    /**
+     * Memoizes an answer computed beforehand, e.g. by a cohort query, if a scope is open.
+     */
+    static void remember(List<?> key, Object answer) {
+        EvaluationScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.answers.put(key, answer);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (owner) {
+            CURRENT.remove();
+        }
+    }
+}
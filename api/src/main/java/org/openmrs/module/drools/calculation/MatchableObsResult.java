@@ -24,7 +24,64 @@ public class MatchableObsResult {
             throw new IllegalArgumentException("Operator " + operator + " not supported for datatype " + datatype.getDatatype().getName());
         }
 
-        return operator.apply(value, other, datatype);
+        return CompiledOperator.cached(operator, other, datatype).test(value);
+    }
+
+    /**
+     * Tests the obs value against an operator compiled for its datatype.
+     *
+     * @see Operator#compile(Object, ConceptDatatypeWrapper)
+     */
+    public boolean matches(CompiledOperator operator) {
+        if (obs == null || value == null || datatype == null) {
+            return false;
+        }
+        if (!operator.isSupported()) {
+            throw new IllegalArgumentException("Operator " + operator.getOperator() + " not supported for datatype "
+                    + operator.getDatatypeName());
+        }
+
+        return operator.test(value);
+    }
+
+    /**
+     * Tests the obs value against several conditions at once, e.g.
+     * {@code result.matchesAll(result.compile(Operator.GTE, 5.0), result.compile(Operator.LT, 10.0))}.
+     *
+     * @return true if every condition holds, false if there is no obs
+     */
+    public boolean matchesAll(CompiledOperator... operators) {
+        if (obs == null || value == null || datatype == null) {
+            return false;
+        }
+        for (CompiledOperator operator : operators) {
+            if (!matches(operator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests the obs value against several conditions at once.
+     *
+     * @return true if any of the conditions holds, false if there is no obs
+     */
+    public boolean matchesAny(CompiledOperator... operators) {
+        for (CompiledOperator operator : operators) {
+            if (matches(operator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compiles a condition for the datatype of this result, to be passed to {@link #matchesAll(CompiledOperator...)}
+     * or {@link #matchesAny(CompiledOperator...)}.
+     */
+    public CompiledOperator compile(Operator operator, Object other) {
+        return CompiledOperator.cached(operator, other, datatype);
     }
 
     public Obs getObs() {
@@ -0,0 +1,166 @@
+package org.openmrs.module.drools.calculation;
+
+import org.openmrs.Concept;
+import org.openmrs.Drug;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Program;
+import org.openmrs.api.context.Context;
+import org.openmrs.event.Event;
+import org.openmrs.event.EventListener;
+import org.openmrs.module.drools.param.DroolsParameterResolverRegistry;
+import org.openmrs.module.drools.param.DroolsParameterType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the metadata calculation helpers look up by reference on every call, encounter types by uuid or name and
+ * programs by uuid, so that evaluating rules per patient doesn't query them.
+ * <p>
+ * The caches are filled by {@link #preload()} on startup and on misses, and are cleared when an encounter type or a
+ * program changes once {@link #subscribe()} has been called. Cached entities are detached from the Hibernate session,
+ * they are meant to be used as query parameters.
+ * <p>
+ * Operators compiled for the literals of rules resolve concept references, so they are discarded when a concept
+ * changes as well, see {@link CompiledOperator#cached(Operator, Object, ConceptDatatypeWrapper)}. So are the encounter
+ * types, forms and drugs cached by the {@link DroolsParameterResolverRegistry} when they change.
+ */
+@Component
+public class MetadataCache implements EventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MetadataCache.class);
+
+    private static final List<Event.Action> INVALIDATING_ACTIONS = Arrays.asList(Event.Action.CREATED,
+            Event.Action.UPDATED, Event.Action.RETIRED, Event.Action.UNRETIRED, Event.Action.PURGED);
+
+    private final Map<String, EncounterType> encounterTypes = new ConcurrentHashMap<>();
+
+    private final Map<String, Program> programs = new ConcurrentHashMap<>();
+
+    @Autowired
+    private DroolsParameterResolverRegistry resolverRegistry;
+
+    private volatile boolean subscribed;
+
+    /**
+     * @param encounterTypeRef the uuid or the name of the encounter type
+     * @return the encounter type, or null if there is none
+     */
+    public EncounterType getEncounterType(String encounterTypeRef) {
+        EncounterType encounterType = encounterTypes.get(encounterTypeRef);
+        if (encounterType == null) {
+            encounterType = Context.getEncounterService().getEncounterTypeByUuid(encounterTypeRef);
+            if (encounterType == null) {
+                encounterType = Context.getEncounterService().getEncounterType(encounterTypeRef);
+            }
+            if (encounterType != null) {
+                encounterTypes.put(encounterTypeRef, encounterType);
+            }
+        }
+        return encounterType;
+    }
+
+    /**
+     * @return the program, or null if there is none
+     */
+    public Program getProgram(String programUuid) {
+        Program program = programs.get(programUuid);
+        if (program == null) {
+            program = Context.getProgramWorkflowService().getProgramByUuid(programUuid);
+            if (program != null) {
+                programs.put(programUuid, program);
+            }
+        }
+        return program;
+    }
+
+    /**
+     * Loads all encounter types, by uuid and by name, and all programs.
+     */
+    public void preload() {
+        for (EncounterType encounterType : Context.getEncounterService().getAllEncounterTypes(true)) {
+            encounterTypes.put(encounterType.getUuid(), encounterType);
+            encounterTypes.putIfAbsent(encounterType.getName(), encounterType);
+        }
+        for (Program program : Context.getProgramWorkflowService().getAllPrograms(true)) {
+            programs.put(program.getUuid(), program);
+        }
+        log.debug("Preloaded {} encounter type reference(s) and {} program(s)", encounterTypes.size(),
+                programs.size());
+    }
+
+    /**
+     * Subscribes to changes of encounter types, programs, concepts, forms and drugs, unless already subscribed.
+     */
+    public synchronized void subscribe() {
+        if (subscribed) {
+            return;
+        }
+        for (Event.Action action : INVALIDATING_ACTIONS) {
+            Event.subscribe(EncounterType.class, action.toString(), this);
+            Event.subscribe(Program.class, action.toString(), this);
+            Event.subscribe(Concept.class, action.toString(), this);
+            Event.subscribe(Form.class, action.toString(), this);
+            Event.subscribe(Drug.class, action.toString(), this);
+        }
+        subscribed = true;
+    }
+
+    public synchronized void unsubscribe() {
+        if (!subscribed) {
+            return;
+        }
+        for (Event.Action action : INVALIDATING_ACTIONS) {
+            Event.unsubscribe(EncounterType.class, action, this);
+            Event.unsubscribe(Program.class, action, this);
+            Event.unsubscribe(Concept.class, action, this);
+            Event.unsubscribe(Form.class, action, this);
+            Event.unsubscribe(Drug.class, action, this);
+        }
+        subscribed = false;
+    }
+
+    public void clear() {
+        encounterTypes.clear();
+        programs.clear();
+        CompiledOperator.clearCache();
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        String className = null;
+        if (message instanceof MapMessage) {
+            try {
+                className = ((MapMessage) message).getString("classname");
+            } catch (JMSException e) {
+                log.debug("Can't read the class name of message {}", message, e);
+            }
+        }
+        // a renamed encounter type is cached under its former name too, so clear all rather than evict one uuid
+        if (Program.class.getName().equals(className)) {
+            programs.clear();
+        } else if (Concept.class.getName().equals(className)) {
+            CompiledOperator.clearCache();
+        } else if (EncounterType.class.getName().equals(className)) {
+            encounterTypes.clear();
+            resolverRegistry.clearCache(DroolsParameterType.ENCOUNTER_TYPE_UUID.name());
+        } else if (Form.class.getName().equals(className)) {
+            resolverRegistry.clearCache(DroolsParameterType.FORM_UUID.name());
+        } else if (Drug.class.getName().equals(className)) {
+            resolverRegistry.clearCache(DroolsParameterType.DRUG_UUID.name());
+        } else {
+            clear();
+            resolverRegistry.clearCache(DroolsParameterType.ENCOUNTER_TYPE_UUID.name());
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.openmrs.module.drools.calculation;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * The numeric observations of a patient for one concept, ordered by obs datetime, as a fact for trend rules.
+ * <p>
+ * Datetimes and values are kept in primitive arrays, along with prefix sums and min/max segment trees built once, so
+ * that the count, average, min, max and slope of any time window are answered in O(log n) without touching the
+ * {@link org.openmrs.Obs} entities. Windows are inclusive and a {@code null} bound leaves that side open.
+ * Aggregates of an empty window are {@link Double#NaN}, which fails any comparison in a rule.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * ObsTimeSeries weights = calculationService.getObsTimeSeries(patient, "CIEL:5089", DroolsDateUtils.monthsAgo(6), null);
+ * weights.average(DroolsDateUtils.daysAgo(30), null) > 80 || weights.isRising(3)
+ * }</pre>
+ */
+public final class ObsTimeSeries {
+
+    private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000d;
+
+    private final Integer patientId;
+
+    private final Integer conceptId;
+
+    private final long[] times;
+
+    private final double[] values;
+
+    // prefix sums, index i holds the sum of the first i points; times are in days since the first point
+    private final double[] valueSums;
+
+    private final double[] daySums;
+
+    private final double[] daySquareSums;
+
+    private final double[] dayValueSums;
+
+    // iterative segment trees, the leaves start at index n
+    private final double[] minTree;
+
+    private final double[] maxTree;
+
+    /**
+     * @param times  obs datetimes in epoch milliseconds, in ascending order
+     * @param values the numeric values, aligned with the datetimes
+     */
+    public ObsTimeSeries(Integer patientId, Integer conceptId, long[] times, double[] values) {
+        if (times.length != values.length) {
+            throw new IllegalArgumentException("Expected as many values as datetimes, got " + values.length
+                    + " values for " + times.length + " datetimes");
+        }
+        this.patientId = patientId;
+        this.conceptId = conceptId;
+        this.times = times;
+        this.values = values;
+
+        int n = times.length;
+        valueSums = new double[n + 1];
+        daySums = new double[n + 1];
+        daySquareSums = new double[n + 1];
+        dayValueSums = new double[n + 1];
+        minTree = new double[2 * n];
+        maxTree = new double[2 * n];
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && times[i] < times[i - 1]) {
+                throw new IllegalArgumentException("Datetimes must be in ascending order");
+            }
+            double day = (times[i] - times[0]) / MILLIS_PER_DAY;
+            valueSums[i + 1] = valueSums[i] + values[i];
+            daySums[i + 1] = daySums[i] + day;
+            daySquareSums[i + 1] = daySquareSums[i] + day * day;
+            dayValueSums[i + 1] = dayValueSums[i] + day * values[i];
+            minTree[n + i] = values[i];
+            maxTree[n + i] = values[i];
+        }
+        for (int i = n - 1; i > 0; i--) {
+            minTree[i] = Math.min(minTree[2 * i], minTree[2 * i + 1]);
+            maxTree[i] = Math.max(maxTree[2 * i], maxTree[2 * i + 1]);
+        }
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public Integer getConceptId() {
+        return conceptId;
+    }
+
+    /**
+     * @return the number of observations in the series
+     */
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    public Date getDatetime(int index) {
+        return new Date(times[index]);
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the value of the most recent observation, or NaN if there is none
+     */
+    public double getLatestValue() {
+        return isEmpty() ? Double.NaN : values[values.length - 1];
+    }
+
+    /**
+     * @return the datetime of the most recent observation, or null if there is none
+     */
+    public Date getLatestDatetime() {
+        return isEmpty() ? null : new Date(times[times.length - 1]);
+    }
+
+    /**
+     * @return the number of observations within the window
+     */
+    public int count(Date from, Date to) {
+        return upperIndex(to) - lowerIndex(from);
+    }
+
+    /**
+     * @return the average value within the window
+     */
+    public double average(Date from, Date to) {
+        int start = lowerIndex(from);
+        int end = upperIndex(to);
+        if (end <= start) {
+            return Double.NaN;
+        }
+        return (valueSums[end] - valueSums[start]) / (end - start);
+    }
+
+    /**
+     * @return the lowest value within the window
+     */
+    public double min(Date from, Date to) {
+        return query(minTree, lowerIndex(from), upperIndex(to), true);
+    }
+
+    /**
+     * @return the highest value within the window
+     */
+    public double max(Date from, Date to) {
+        return query(maxTree, lowerIndex(from), upperIndex(to), false);
+    }
+
+    /**
+     * Returns the least squares slope of the values within the window, in value units per day, e.g. kg per day for
+     * weights. At least two observations at different datetimes are needed.
+     */
+    public double slope(Date from, Date to) {
+        int start = lowerIndex(from);
+        int end = upperIndex(to);
+        int n = end - start;
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double sumX = daySums[end] - daySums[start];
+        double sumY = valueSums[end] - valueSums[start];
+        double sumXX = daySquareSums[end] - daySquareSums[start];
+        double sumXY = dayValueSums[end] - dayValueSums[start];
+        double denominator = n * sumXX - sumX * sumX;
+        if (denominator == 0) {
+            return Double.NaN;
+        }
+        return (n * sumXY - sumX * sumY) / denominator;
+    }
+
+    /**
+     * @return whether each of the last {@code readings} values is greater than the one before it
+     */
+    public boolean isRising(int readings) {
+        if (readings < 2 || readings > values.length) {
+            return false;
+        }
+        for (int i = values.length - readings + 1; i < values.length; i++) {
+            if (values[i] <= values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether each of the last {@code readings} values is lower than the one before it
+     */
+    public boolean isFalling(int readings) {
+        if (readings < 2 || readings > values.length) {
+            return false;
+        }
+        for (int i = values.length - readings + 1; i < values.length; i++) {
+            if (values[i] >= values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first observation at or after the given date
+     */
+    private int lowerIndex(Date from) {
+        if (from == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(times, from.getTime());
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && times[index - 1] == times[index]) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * @return the index after the last observation at or before the given date
+     */
+    private int upperIndex(Date to) {
+        if (to == null) {
+            return times.length;
+        }
+        int index = Arrays.binarySearch(times, to.getTime());
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index < times.length - 1 && times[index + 1] == times[index]) {
+            index++;
+        }
+        return index + 1;
+    }
+
+    private double query(double[] tree, int start, int end, boolean min) {
+        if (end <= start) {
+            return Double.NaN;
+        }
+        double result = min ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        int n = times.length;
+        for (int left = start + n, right = end + n; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                result = min ? Math.min(result, tree[left++]) : Math.max(result, tree[left++]);
+            }
+            if ((right & 1) == 1) {
+                result = min ? Math.min(result, tree[--right]) : Math.max(result, tree[--right]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ObsTimeSeries{patientId=" + patientId + ", conceptId=" + conceptId + ", size=" + size() + "}";
+    }
+}
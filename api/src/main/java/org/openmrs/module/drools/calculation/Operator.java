@@ -1,156 +1,129 @@
 package org.openmrs.module.drools.calculation;
 
-import org.apache.commons.lang3.StringUtils;
-import org.openmrs.ConceptDatatype;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Set;
 
+import static org.openmrs.module.drools.calculation.DatatypeCode.BOOLEAN;
+import static org.openmrs.module.drools.calculation.DatatypeCode.CODED;
+import static org.openmrs.module.drools.calculation.DatatypeCode.DATE;
+import static org.openmrs.module.drools.calculation.DatatypeCode.DATETIME;
+import static org.openmrs.module.drools.calculation.DatatypeCode.NUMERIC;
+import static org.openmrs.module.drools.calculation.DatatypeCode.TIME;
+
 public enum Operator {
 
     /**
      * Equals
      */
-    EQUALS(Set.of(ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME, ConceptDatatype.BOOLEAN,
-            ConceptDatatype.CODED, ConceptDatatype.NUMERIC)) {
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            OperandsBuilder.Operands operands = new OperandsBuilder(left, right, datatype.getDatatype())
-                    .prepareOperands();
-            Comparator<Object> comparator = DatatypeComparatorRegistry.getComparator(datatype.getDatatypeCode());
-            if (comparator != null) {
-                return comparator.compare(operands.getLeft(), operands.getRight()) == 0;
-            } else {
-                throw new IllegalStateException("Failed to resolve Comparator");
-            }
+    EQUALS(EnumSet.of(DATE, DATETIME, TIME, BOOLEAN, CODED, NUMERIC)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.comparison(this, right, datatype, comparison -> comparison == 0);
         }
     },
     /**
      * Less than
      */
-    LT(Set.of(ConceptDatatype.NUMERIC, ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME)) {
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            OperandsBuilder.Operands operands = new OperandsBuilder(left, right, datatype.getDatatype())
-                    .prepareOperands();
-            Comparator<Object> comparator = DatatypeComparatorRegistry.getComparator(datatype.getDatatypeCode());
-            if (comparator != null) {
-                return comparator.compare(operands.getLeft(), operands.getRight()) < 0;
-            } else {
-                throw new IllegalStateException("Failed to resolve Comparator");
-            }
+    LT(EnumSet.of(NUMERIC, DATE, DATETIME, TIME)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.comparison(this, right, datatype, comparison -> comparison < 0);
         }
     },
     /**
      * Greater than
      */
-    GT(Set.of(ConceptDatatype.NUMERIC, ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME)) {
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            OperandsBuilder.Operands operands = new OperandsBuilder(left, right, datatype.getDatatype())
-                    .prepareOperands();
-            Comparator<Object> comparator = DatatypeComparatorRegistry.getComparator(datatype.getDatatypeCode());
-            if (comparator != null) {
-                return comparator.compare(operands.getLeft(), operands.getRight()) > 0;
-            } else {
-                throw new IllegalStateException("Failed to resolve Comparator");
-            }
+    GT(EnumSet.of(NUMERIC, DATE, DATETIME, TIME)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.comparison(this, right, datatype, comparison -> comparison > 0);
         }
     },
     /**
      * Less than or equal to
      */
-    LTE(Set.of(ConceptDatatype.NUMERIC, ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME)) {
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            OperandsBuilder.Operands operands = new OperandsBuilder(left, right, datatype.getDatatype())
-                    .prepareOperands();
-            Comparator<Object> comparator = DatatypeComparatorRegistry.getComparator(datatype.getDatatypeCode());
-            if (comparator != null) {
-                int result = comparator.compare(operands.getLeft(), operands.getRight());
-                return result < 0 || result == 0;
-            } else {
-                throw new IllegalStateException("Failed to resolve Comparator");
-            }
+    LTE(EnumSet.of(NUMERIC, DATE, DATETIME, TIME)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.comparison(this, right, datatype, comparison -> comparison <= 0);
         }
     },
     /**
      * Greater than or equal to
      */
-    GTE(Set.of(ConceptDatatype.NUMERIC, ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME)) {
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            OperandsBuilder.Operands operands = new OperandsBuilder(left, right, datatype.getDatatype())
-                    .prepareOperands();
-            Comparator<Object> comparator = DatatypeComparatorRegistry.getComparator(datatype.getDatatypeCode());
-            if (comparator != null) {
-                int result = comparator.compare(operands.getLeft(), operands.getRight());
-                return result > 0 || result == 0;
-            } else {
-                throw new IllegalStateException("Failed to resolve Comparator");
-            }
+    GTE(EnumSet.of(NUMERIC, DATE, DATETIME, TIME)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.comparison(this, right, datatype, comparison -> comparison >= 0);
         }
     },
 
     /**
      * Checks if a given obs value exists -- Applicable to all obs
      */
-    EXISTS(Set.of(ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME, ConceptDatatype.BOOLEAN,
-            ConceptDatatype.CODED, ConceptDatatype.NUMERIC)) {
-        @Autowired
-        public boolean apply(Object left, Object ignored, ConceptDatatypeWrapper datatype) {
-            if (left == null) {
-                return false;
-            }
-            if (left instanceof String) {
-                return StringUtils.isNotBlank((String) left);
-            }
-            return true;
+    EXISTS(EnumSet.of(DATE, DATETIME, TIME, BOOLEAN, CODED, NUMERIC)) {
+        @Override
+        public CompiledOperator compile(Object ignored, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.exists(this, datatype);
         }
     },
 
     /**
-     * Applicable to numerics and dates
+     * Applicable to numerics and dates, both bounds are inclusive. Example usage:
+     * {@code checkMostRecentObs(patient, "CIEL:5089", Operator.BETWEEN, List.of(50, 70))}
+     * or {@code checkMostRecentObs(patient, "CIEL:5096", Operator.BETWEEN, "2023-01-01,2023-12-31")}
      */
-    BETWEEN(Set.of(ConceptDatatype.NUMERIC, ConceptDatatype.DATE, ConceptDatatype.DATETIME, ConceptDatatype.TIME)) {
-        // TODO: Add implementation
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            throw new UnsupportedOperationException("Unimplemented operator \"BETWEEN\"");
+    BETWEEN(EnumSet.of(NUMERIC, DATE, DATETIME, TIME)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.range(this, right, datatype);
         }
     },
 
     /**
      * Applicable to numerics, coded. Example usage:
-     * {@code checkLatestObs(patient, "CIEL:123", Operator.IN,  value1, value2, value3)})
+     * {@code checkMostRecentObs(patient, "CIEL:123", Operator.IN, List.of(value1, value2, value3))}
+     * or {@code checkMostRecentObs(patient, "CIEL:123", Operator.IN, "CIEL:1065,CIEL:1066")}
      */
-    IN(Set.of(ConceptDatatype.NUMERIC, ConceptDatatype.CODED)) {
-        // TODO: Add implementation
-        @Autowired
-        public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
-            throw new UnsupportedOperationException("Unimplemented operator \"IN\"");
+    IN(EnumSet.of(NUMERIC, CODED)) {
+        @Override
+        public CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype) {
+            return CompiledOperator.membership(this, right, datatype);
         }
     };
 
-    private final Set<String> supportedDatatypes;
+    private final Set<DatatypeCode> supportedDatatypes;
 
-    Operator(Set<String> supportedDatatypes) {
+    Operator(Set<DatatypeCode> supportedDatatypes) {
         this.supportedDatatypes = supportedDatatypes;
     }
 
-    public Set<String> getSupportedDatatypes() {
+    public Set<DatatypeCode> getSupportedDatatypes() {
         return supportedDatatypes;
     }
 
     /**
      * Applies this operator to the given operands.
+     * <p>
+     * The right-hand operand is refined on each call, use {@link #compile(Object, ConceptDatatypeWrapper)} to test
+     * many values against the same one.
      *
      * @param left     the left-hand operand (e.g., obs value)
      * @param right    the right-hand operand (e.g., comparison value)
      * @param datatype the concept datatype
      * @return true if the comparison holds; false otherwise
      */
-    public abstract boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype);
+    public boolean apply(Object left, Object right, ConceptDatatypeWrapper datatype) {
+        return compile(right, datatype).test(left);
+    }
+
+    /**
+     * Compiles this operator against the given right-hand operand, which is refined once for the datatype.
+     *
+     * @param right    the right-hand operand (e.g., comparison value)
+     * @param datatype the concept datatype
+     * @return a predicate to test left-hand operands with
+     */
+    public abstract CompiledOperator compile(Object right, ConceptDatatypeWrapper datatype);
 
 }
@@ -0,0 +1,197 @@
+package org.openmrs.module.drools.dtable;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.drools.decisiontable.InputType;
+import org.drools.decisiontable.SpreadsheetCompiler;
+import org.kie.api.io.ResourceType;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.DroolsModuleConstants;
+import org.openmrs.module.drools.RuleResource;
+import org.openmrs.module.drools.utils.CommonUtils;
+import org.openmrs.util.OpenmrsUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the DRL generated from decision tables in the module's storage directory, keyed by the SHA-256 of the
+ * spreadsheet and the Drools version that generated it, so an upgrade converts the tables again. Unchanged tables are
+ * handed to the {@link org.openmrs.module.drools.KieContainerBuilder} as plain DRL, so Apache POI is only loaded when
+ * a spreadsheet is new or has been edited. Conversions no table resolves to anymore are deleted by
+ * {@link #prune(Collection)} when the container is rebuilt.
+ */
+public class DecisionTableDrlCache {
+
+    public static final String CACHE_DIR_NAME = ".dtable-cache";
+
+    private static final long DEFAULT_STREAMING_THRESHOLD = 5 * 1024 * 1024;
+
+    private static final String DROOLS_VERSION = getDroolsVersion();
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private Path cacheDir;
+
+    private Long streamingThreshold;
+
+    public DecisionTableDrlCache() {
+    }
+
+    public DecisionTableDrlCache(Path cacheDir, long streamingThreshold) {
+        this.cacheDir = cacheDir;
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * Returns a DRL resource pointing at the cached conversion of the given decision table, converting it first if
+     * the spreadsheet hasn't been seen before. Resources that aren't decision tables are returned as is.
+     * <p>
+     * Any failure falls back to the original resource so that Drools compiles the spreadsheet itself.
+     *
+     * @param resource the rule resource to resolve
+     * @return the resource to add to the KieFileSystem
+     */
+    public RuleResource resolve(RuleResource resource) {
+        if (resource == null || resource.getResourceType() != ResourceType.DTABLE) {
+            return resource;
+        }
+        try {
+            String hash;
+            try (InputStream in = openStream(resource.getPath())) {
+                hash = CommonUtils.sha256Hex(in);
+            }
+            Path drlPath = getCacheDir().resolve(hash + "-" + DROOLS_VERSION + ".drl");
+            if (Files.exists(drlPath)) {
+                log.debug("Using cached DRL {} for decision table {}", drlPath, resource.getPath());
+            } else {
+                log.info("Converting decision table {} to DRL", resource.getPath());
+                long startTime = System.currentTimeMillis();
+                write(drlPath, compile(resource.getPath()));
+                log.info("Decision table {} converted in {}ms", resource.getPath(),
+                        System.currentTimeMillis() - startTime);
+            }
+            return new RuleResource(resource.getName(), drlPath.toString(), ResourceType.DRL);
+        } catch (Exception e) {
+            log.warn("Failed to resolve cached DRL for decision table: " + resource.getPath()
+                    + ". Falling back to spreadsheet compilation", e);
+            return resource;
+        }
+    }
+
+    /**
+     * Deletes the cached DRL files that none of the given resources resolves to, i.e. the conversions of decision
+     * tables that have since been edited, renamed or removed.
+     *
+     * @param resolved the resources returned by {@link #resolve(RuleResource)} for the whole rule set
+     */
+    public void prune(Collection<RuleResource> resolved) {
+        Path dir = getCacheDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Set<Path> kept = resolved.stream()
+                .filter(resource -> resource != null && resource.getResourceType() == ResourceType.DRL)
+                .map(resource -> Paths.get(resource.getPath()).toAbsolutePath().normalize())
+                .collect(Collectors.toSet());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.drl")) {
+            for (Path file : files) {
+                if (!kept.contains(file.toAbsolutePath().normalize())) {
+                    log.debug("Deleting stale cached DRL {}", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to prune the cached DRL in {}", dir, e);
+        }
+    }
+
+    private String compile(String path) throws IOException {
+        File file = new File(path);
+        if (file.exists() && path.endsWith(".xlsx") && file.length() >= getStreamingThreshold()) {
+            log.debug("Decision table {} is {} bytes, using streaming reader", path, file.length());
+            return new StreamingDecisionTableCompiler().compile(file);
+        }
+        try (InputStream in = openStream(path)) {
+            return new SpreadsheetCompiler().compile(in, InputType.XLS);
+        }
+    }
+
+    private void write(Path drlPath, String drl) throws IOException {
+        Files.createDirectories(drlPath.getParent());
+        // write to a temporary file first, so that a concurrent or interrupted conversion never leaves a partial DRL
+        // behind
+        Path tmp = Files.createTempFile(drlPath.getParent(), drlPath.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, drl.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, drlPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the version of the decision table compiler, read from its Maven metadata, safe to use in a file name
+     */
+    static String getDroolsVersion() {
+        String version = null;
+        try (InputStream in = SpreadsheetCompiler.class.getResourceAsStream(
+                "/META-INF/maven/org.drools/drools-decisiontables/pom.properties")) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                version = properties.getProperty("version");
+            }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(DecisionTableDrlCache.class).debug("Can't read the Drools version", e);
+        }
+        if (version == null) {
+            version = SpreadsheetCompiler.class.getPackage().getImplementationVersion();
+        }
+        return version == null ? "unknown" : version.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private InputStream openStream(String path) throws IOException {
+        File file = new File(path);
+        if (file.exists()) {
+            return new FileInputStream(file);
+        }
+        // Fallback to classpath
+        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new IOException("Decision table not found in filesystem or classpath: " + path);
+        }
+        return in;
+    }
+
+    private Path getCacheDir() {
+        if (cacheDir == null) {
+            String storageDir = Context.getAdministrationService()
+                    .getGlobalProperty(DroolsModuleConstants.GP_LOCAL_STORAGE_DIR, "drools");
+            cacheDir = Paths.get(OpenmrsUtil.getApplicationDataDirectory()).resolve(storageDir).resolve(CACHE_DIR_NAME);
+        }
+        return cacheDir;
+    }
+
+    private long getStreamingThreshold() {
+        if (streamingThreshold == null) {
+            String value = Context.getAdministrationService()
+                    .getGlobalProperty(DroolsModuleConstants.GP_DECISION_TABLE_STREAMING_THRESHOLD);
+            streamingThreshold = NumberUtils.toLong(value, DEFAULT_STREAMING_THRESHOLD);
+        }
+        return streamingThreshold;
+    }
+}
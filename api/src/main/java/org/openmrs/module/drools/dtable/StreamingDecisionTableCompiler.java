@@ -0,0 +1,256 @@
+package org.openmrs.module.drools.dtable;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.drools.decisiontable.parser.DefaultRuleSheetListener;
+import org.drools.template.model.DRLOutput;
+import org.drools.template.parser.DataListener;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles an {@code .xlsx} decision table to DRL using POI's SAX based event model instead of loading the whole
+ * workbook, so memory use is bounded by the width of a row and the shared strings table rather than the size of the
+ * sheet.
+ * <p>
+ * Like the Drools {@code ExcelParser}, only the first sheet is read and cells covered by a merged region are reported
+ * with the value and start column of the region. Cell values are rendered as the {@code ExcelParser} renders them,
+ * so both produce the same DRL: booleans in lower case, fractional numbers and formula results with
+ * {@link String#valueOf(double)} and everything else as formatted by a {@link DataFormatter}.
+ */
+public class StreamingDecisionTableCompiler {
+
+    /**
+     * Compiles the first sheet of the given workbook.
+     *
+     * @param xlsxFile the decision table
+     * @return the generated DRL
+     * @throws IOException if the workbook can't be read
+     */
+    public String compile(File xlsxFile) throws IOException {
+        DefaultRuleSheetListener listener = new DefaultRuleSheetListener();
+        try (OPCPackage pkg = OPCPackage.open(xlsxFile, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("Decision table has no sheets: " + xlsxFile);
+            }
+            try (InputStream sheet = sheets.next()) {
+                List<CellRangeAddress> mergedRegions = readMergedRegions(sheets.getSheetPart());
+                RowForwarder forwarder = new RowForwarder(listener, mergedRegions);
+
+                listener.startSheet(sheets.getSheetName());
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new RawValueTrackingHandler(styles, strings, forwarder));
+                parser.parse(new InputSource(sheet));
+                listener.finishSheet();
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to read decision table: " + xlsxFile, e);
+        }
+
+        DRLOutput out = new DRLOutput();
+        listener.getRuleSet().renderDRL(out);
+        return out.getDRL();
+    }
+
+    /**
+     * Merged regions are stored after the sheet data, so they are collected in a cheap first pass that skips
+     * everything else.
+     */
+    private List<CellRangeAddress> readMergedRegions(PackagePart sheetPart)
+            throws IOException, SAXException, ParserConfigurationException {
+        List<CellRangeAddress> regions = new ArrayList<>();
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if ("mergeCell".equals(localName)) {
+                    regions.add(CellRangeAddress.valueOf(attributes.getValue("ref")));
+                }
+            }
+        });
+        try (InputStream in = sheetPart.getInputStream()) {
+            parser.parse(new InputSource(in));
+        }
+        return regions;
+    }
+
+    /**
+     * Tracks the type and raw value of the current cell for the {@link RowForwarder}, which the sheet handler only
+     * reports formatted.
+     */
+    private static class RawValueTrackingHandler extends XSSFSheetXMLHandler {
+
+        private final RowForwarder forwarder;
+
+        private boolean inValue;
+
+        RawValueTrackingHandler(StylesTable styles, ReadOnlySharedStringsTable strings, RowForwarder forwarder) {
+            super(styles, strings, forwarder, new DataFormatter(Locale.ENGLISH), false);
+            this.forwarder = forwarder;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            if ("c".equals(localName)) {
+                forwarder.startCell(attributes.getValue("t"));
+            } else if ("f".equals(localName)) {
+                forwarder.formula = true;
+            } else if ("v".equals(localName)) {
+                inValue = true;
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("v".equals(localName)) {
+                inValue = false;
+            }
+            super.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (inValue) {
+                forwarder.rawValue.append(ch, start, length);
+            }
+            super.characters(ch, start, length);
+        }
+    }
+
+    /**
+     * Buffers the cells of the current row and forwards them to the {@link DataListener} in column order once the row
+     * ends, filling in the cells covered by merged regions.
+     */
+    private static class RowForwarder implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final DataListener listener;
+
+        private final List<CellRangeAddress> mergedRegions;
+
+        private final Map<CellRangeAddress, String> mergedValues = new HashMap<>();
+
+        private final TreeMap<Integer, String> rowCells = new TreeMap<>();
+
+        private final Map<Integer, Integer> mergedColStarts = new HashMap<>();
+
+        private int nextRow = 0;
+
+        private String cellType;
+
+        private boolean formula;
+
+        private final StringBuilder rawValue = new StringBuilder();
+
+        RowForwarder(DataListener listener, List<CellRangeAddress> mergedRegions) {
+            this.listener = listener;
+            this.mergedRegions = mergedRegions;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            // rows without any cells are missing from the sheet XML but the listener expects to see them
+            while (nextRow < rowNum) {
+                listener.newRow(nextRow++, 0);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null) {
+                return;
+            }
+            rowCells.put((int) new CellReference(cellReference).getCol(), toParserValue(formattedValue));
+        }
+
+        void startCell(String type) {
+            cellType = type;
+            formula = false;
+            rawValue.setLength(0);
+        }
+
+        /**
+         * Renders the current cell as the {@code ExcelParser} does.
+         */
+        private String toParserValue(String formattedValue) {
+            if ("b".equals(cellType)) {
+                return "1".equals(rawValue.toString().trim()) ? "true" : "false";
+            }
+            if ((cellType == null || "n".equals(cellType)) && rawValue.length() > 0) {
+                double num;
+                try {
+                    num = Double.parseDouble(rawValue.toString().trim());
+                } catch (NumberFormatException e) {
+                    return formattedValue;
+                }
+                if (formula || num - Math.round(num) != 0) {
+                    return String.valueOf(num);
+                }
+            }
+            return formattedValue;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            for (CellRangeAddress region : mergedRegions) {
+                if (rowNum < region.getFirstRow() || rowNum > region.getLastRow()) {
+                    continue;
+                }
+                if (rowNum == region.getFirstRow()) {
+                    mergedValues.put(region, rowCells.get(region.getFirstColumn()));
+                }
+                String value = mergedValues.get(region);
+                if (value == null) {
+                    continue;
+                }
+                for (int col = region.getFirstColumn(); col <= region.getLastColumn(); col++) {
+                    rowCells.put(col, value);
+                    mergedColStarts.put(col, region.getFirstColumn());
+                }
+            }
+
+            listener.newRow(rowNum, rowCells.isEmpty() ? 0 : rowCells.lastKey() + 1);
+            rowCells.forEach((col, value) -> listener.newCell(rowNum, col, value,
+                    mergedColStarts.getOrDefault(col, DataListener.NON_MERGED)));
+
+            rowCells.clear();
+            mergedColStarts.clear();
+            nextRow = rowNum + 1;
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            // not relevant for decision tables
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.openmrs.module.drools.event;
+
+import org.openmrs.BaseOpenmrsObject;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Date;
+
+/**
+ * A system event received by a session event listener, journaled before it is processed so that it can be replayed
+ * if the module stops before the event was acknowledged. Entries are deleted once acknowledged.
+ * <p>
+ * Entries belong to the listener identified by the session id, the listener class and the class of the events it
+ * subscribes to, several listeners of the same class can be subscribed to a session.
+ */
+@Entity
+@Table(name = "drools_event_journal")
+public class DroolsEventJournalEntry extends BaseOpenmrsObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    /**
+     * The class name of the listener the event was received by.
+     */
+    @Column(name = "listener", nullable = false)
+    private String listener;
+
+    /**
+     * The class name of the events the listener subscribes to.
+     */
+    @Column(name = "subscribed_class", nullable = false)
+    private String subscribedClass;
+
+    /**
+     * The body of the event's map message, as JSON.
+     */
+    @Column(name = "message", nullable = false, columnDefinition = "text")
+    private String message;
+
+    @Column(name = "received_at", nullable = false)
+    private Date receivedAt;
+
+    public DroolsEventJournalEntry() {
+    }
+
+    public DroolsEventJournalEntry(String sessionId, String listener, String subscribedClass, String message,
+            Date receivedAt) {
+        this.sessionId = sessionId;
+        this.listener = listener;
+        this.subscribedClass = subscribedClass;
+        this.message = message;
+        this.receivedAt = receivedAt;
+    }
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getListener() {
+        return listener;
+    }
+
+    public void setListener(String listener) {
+        this.listener = listener;
+    }
+
+    public String getSubscribedClass() {
+        return subscribedClass;
+    }
+
+    public void setSubscribedClass(String subscribedClass) {
+        this.subscribedClass = subscribedClass;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Date getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(Date receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
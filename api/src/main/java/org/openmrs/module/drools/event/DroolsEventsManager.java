@@ -1,47 +1,246 @@
 package org.openmrs.module.drools.event;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.kie.api.runtime.KieSession;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
 import org.openmrs.event.Event;
 import org.openmrs.module.DaemonToken;
+import org.openmrs.module.drools.DroolsModuleConstants;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.session.DroolsSessionActor;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class DroolsEventsManager {
 
-    private Map<String, List<DroolsSystemEventListener>> activeSubscriptions = new HashMap<>();
+    private final Logger log = LoggerFactory.getLogger(DroolsEventsManager.class);
+
+    private final Map<String, List<DroolsSystemEventListener>> activeSubscriptions = new HashMap<>();
+
+    /**
+     * Listeners unsubscribed with messages still queued, keyed by session id, until listeners are subscribed again
+     * for the session and take them over.
+     */
+    private final Map<String, List<DroolsSystemEventListener>> stoppedListeners = new HashMap<>();
+
+    /**
+     * The key the listeners of the re-evaluation pipeline are subscribed under, in place of a session id.
+     */
+    public static final String REEVALUATION_SUBSCRIPTION_KEY = "patient-reevaluation";
+
+    private final Map<String, DroolsSessionActor> sessionActors = new ConcurrentHashMap<>();
+
+    private PatientReevaluationPipeline reevaluationPipeline;
 
     private static DaemonToken daemonToken;
 
     public DroolsEventsManager() {
     }
 
-    public void subscribeSessionEventListenersIfNecessary(String sessionId, KieSession session,
-            Map<String, DroolsSessionConfig> ruleConfigs) {
-        if (!activeSubscriptions.containsKey(sessionId)) {
-            DroolsSessionConfig sessionConfig = ruleConfigs.get(sessionId);
-            if (sessionConfig.getSystemEventListeners() != null) {
-                sessionConfig.getSystemEventListeners().forEach(systemEventListener -> {
-                    systemEventListener.setSession(session);
-                    systemEventListener.setDaemonToken(daemonToken);
-                    systemEventListener.getSubscribedActions().forEach(action -> {
-                        Event.subscribe(systemEventListener.getSubscribedClass(), action.toString(),
-                                systemEventListener);
-                    });
-                });
-            }
+    /**
+     * Subscribes the system event listeners of a long-lived session, unless they are already subscribed. Listeners
+     * stay subscribed until {@link #unsubscribeSessionEventListenersIfNecessary(String)} or
+     * {@link #unsubscribeAll()} is called, which happens on shutdown and when the container is reloaded.
+     */
+    public synchronized void subscribeSessionEventListenersIfNecessary(DroolsSessionConfig sessionConfig,
+            KieSession session) {
+        String sessionId = sessionConfig.getSessionId();
+        if (activeSubscriptions.containsKey(sessionId) || sessionConfig.getSystemEventListeners() == null
+                || sessionConfig.getSystemEventListeners().isEmpty()) {
+            return;
         }
+        List<DroolsSystemEventListener> listeners = new ArrayList<>(sessionConfig.getSystemEventListeners());
+        listeners.forEach(systemEventListener -> {
+            systemEventListener.setSessionId(sessionId);
+            systemEventListener.setSession(session);
+            systemEventListener.setDaemonToken(daemonToken);
+            configureQueue(systemEventListener);
+            systemEventListener.getSubscribedActions().forEach(action -> {
+                Event.subscribe(systemEventListener.getSubscribedClass(), action.toString(), systemEventListener);
+            });
+        });
+        takeOverPendingMessages(sessionId, listeners);
+        activeSubscriptions.put(sessionId, listeners);
+        log.debug("Subscribed {} system event listener(s) of session {}", listeners.size(), sessionId);
     }
 
-    public void unsubscribeSessionEventListenersIfNecessary(String sessionId) {
-        if (activeSubscriptions.containsKey(sessionId)) {
-            activeSubscriptions.get(sessionId).forEach(systemEventListener -> {
+    public synchronized void unsubscribeSessionEventListenersIfNecessary(String sessionId) {
+        List<DroolsSystemEventListener> listeners = activeSubscriptions.remove(sessionId);
+        if (listeners != null) {
+            listeners.forEach(systemEventListener -> {
                 systemEventListener.getSubscribedActions().forEach(action -> {
                     Event.unsubscribe(systemEventListener.getSubscribedClass(), action, systemEventListener);
                 });
+                systemEventListener.stop();
             });
+            stoppedListeners.put(sessionId, listeners);
+            log.debug("Unsubscribed {} system event listener(s) of session {}", listeners.size(), sessionId);
+        }
+    }
+
+    /**
+     * Has the listeners being subscribed process the messages their predecessors left queued when they were
+     * unsubscribed. A listener subscribed again resumes its own queue, a new one is handed off the queue of the
+     * stopped listener of the same class and subscribed class.
+     */
+    private void takeOverPendingMessages(String sessionId, List<DroolsSystemEventListener> listeners) {
+        List<DroolsSystemEventListener> stopped = stoppedListeners.remove(sessionId);
+        if (stopped == null) {
+            return;
+        }
+        for (DroolsSystemEventListener listener : listeners) {
+            for (DroolsSystemEventListener predecessor : stopped) {
+                if (predecessor.getClass() == listener.getClass()
+                        && predecessor.getSubscribedClass() == listener.getSubscribedClass()) {
+                    int handedOff = predecessor.handOffTo(listener);
+                    if (handedOff > 0) {
+                        log.debug("Handed off {} pending message(s) of session {} to {}", handedOff, sessionId,
+                                listener.getClass().getSimpleName());
+                    }
+                }
+            }
+            listener.resume();
+        }
+    }
+
+    /**
+     * Unsubscribes the system event listeners of all sessions.
+     */
+    public synchronized void unsubscribeAll() {
+        new ArrayList<>(activeSubscriptions.keySet()).forEach(this::unsubscribeSessionEventListenersIfNecessary);
+    }
+
+    /**
+     * @return the listeners currently subscribed, keyed by session id
+     */
+    public synchronized Map<String, List<DroolsSystemEventListener>> getActiveSubscriptions() {
+        return new HashMap<>(activeSubscriptions);
+    }
+
+    /**
+     * @return the number of event subscriptions, one per listener and action, keyed by session id
+     */
+    public synchronized Map<String, Integer> getSubscriptionCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        activeSubscriptions.forEach((sessionId, listeners) -> counts.put(sessionId,
+                listeners.stream().mapToInt(listener -> listener.getSubscribedActions().size()).sum()));
+        return counts;
+    }
+
+    /**
+     * Starts an actor that serializes access to a long-lived session, subscribes the session's system event
+     * listeners and hands them the actor. Any actor previously started for the session is stopped.
+     *
+     * @return the started actor
+     */
+    public DroolsSessionActor startSessionActor(DroolsSessionConfig sessionConfig, KieSession session) {
+        DroolsSessionActor actor = new DroolsSessionActor(sessionConfig.getSessionId(), session, daemonToken);
+        actor.start();
+        DroolsSessionActor previous = sessionActors.put(sessionConfig.getSessionId(), actor);
+        if (previous != null) {
+            previous.stop();
         }
+        if (sessionConfig.getSystemEventListeners() != null) {
+            sessionConfig.getSystemEventListeners().forEach(listener -> listener.setSessionActor(actor));
+        }
+        subscribeSessionEventListenersIfNecessary(sessionConfig, session);
+        return actor;
+    }
+
+    /**
+     * @return the actor of a long-lived session, or null if the session isn't running
+     */
+    public DroolsSessionActor getSessionActor(String sessionId) {
+        return sessionActors.get(sessionId);
+    }
+
+    public Collection<DroolsSessionActor> getSessionActors() {
+        return Collections.unmodifiableCollection(sessionActors.values());
+    }
+
+    /**
+     * Stops all session actors, disposing of their sessions once their queued tasks have run.
+     */
+    public void stopSessionActors() {
+        sessionActors.values().forEach(DroolsSessionActor::stop);
+        sessionActors.clear();
+    }
+
+    /**
+     * Subscribes listeners that schedule patients for re-evaluation when the types of data sessions are configured to
+     * be re-evaluated on change. Does nothing if no session is configured for re-evaluation. A pipeline previously
+     * started is stopped and its listeners unsubscribed first, the new pipeline takes over the patients it didn't get
+     * to.
+     *
+     * @return the pipeline the listeners feed
+     */
+    public synchronized PatientReevaluationPipeline startReevaluationPipeline(DroolsEngineService droolsEngineService) {
+        if (reevaluationPipeline != null && !reevaluationPipeline.isStopped()
+                && activeSubscriptions.containsKey(REEVALUATION_SUBSCRIPTION_KEY)) {
+            return reevaluationPipeline;
+        }
+        PatientReevaluationPipeline previous = stopReevaluationPipeline();
+        reevaluationPipeline = new PatientReevaluationPipeline(droolsEngineService, droolsEngineService.getResultStore(),
+                daemonToken);
+        if (previous != null) {
+            reevaluationPipeline.takeOver(previous);
+        }
+        List<PatientDataChangeListener> listeners = PatientDataChangeListener.forTriggeredTypes(reevaluationPipeline);
+        if (!listeners.isEmpty()) {
+            DroolsSessionConfig pipelineConfig = new DroolsSessionConfig();
+            pipelineConfig.setSessionId(REEVALUATION_SUBSCRIPTION_KEY);
+            pipelineConfig.setSystemEventListeners(new ArrayList<>(listeners));
+            subscribeSessionEventListenersIfNecessary(pipelineConfig, null);
+        }
+        return reevaluationPipeline;
+    }
+
+    /**
+     * Unsubscribes the listeners of the re-evaluation pipeline and stops it. The stopped pipeline is still returned by
+     * {@link #getReevaluationPipeline()} until another one is started.
+     *
+     * @return the stopped pipeline, or null if none was started
+     */
+    public synchronized PatientReevaluationPipeline stopReevaluationPipeline() {
+        unsubscribeSessionEventListenersIfNecessary(REEVALUATION_SUBSCRIPTION_KEY);
+        if (reevaluationPipeline != null) {
+            reevaluationPipeline.stop();
+        }
+        return reevaluationPipeline;
+    }
+
+    public PatientReevaluationPipeline getReevaluationPipeline() {
+        return reevaluationPipeline;
+    }
+
+    /**
+     * Stops the re-evaluation pipeline, unsubscribes all system event listeners and stops all session actors.
+     */
+    public void shutdown() {
+        stopReevaluationPipeline();
+        unsubscribeAll();
+        stopSessionActors();
+    }
+
+    private void configureQueue(DroolsSystemEventListener listener) {
+        AdministrationService administrationService = Context.getAdministrationService();
+        listener.setQueueCapacity(Math.max(1, NumberUtils.toInt(
+                administrationService.getGlobalProperty(DroolsModuleConstants.GP_EVENT_QUEUE_CAPACITY),
+                DroolsSystemEventListener.DEFAULT_QUEUE_CAPACITY)));
+        listener.setCoalescingWindowMillis(Math.max(0, NumberUtils.toLong(
+                administrationService.getGlobalProperty(DroolsModuleConstants.GP_EVENT_COALESCING_WINDOW),
+                DroolsSystemEventListener.DEFAULT_COALESCING_WINDOW_MILLIS)));
+        listener.setJournalEnabled(!"false".equalsIgnoreCase(
+                administrationService.getGlobalProperty(DroolsModuleConstants.GP_EVENT_JOURNAL_ENABLED)));
     }
 
     public static void setDaemonToken(DaemonToken token) {
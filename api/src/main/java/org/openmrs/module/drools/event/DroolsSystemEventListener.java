@@ -1,48 +1,377 @@
 package org.openmrs.module.drools.event;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
 import javax.jms.Message;
 
 import org.kie.api.runtime.KieSession;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
 import org.openmrs.event.Event;
 import org.openmrs.event.EventListener;
 import org.openmrs.module.DaemonToken;
+import org.openmrs.module.drools.api.DroolsEventJournalService;
+import org.openmrs.module.drools.session.DroolsSessionActor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Feeds system events into a long-lived session.
+ * <p>
+ * Messages are queued as they arrive and drained by a single thread per listener. The drainer waits for the
+ * coalescing window after the first pending message, keeps only the latest message per entity uuid, and processes
+ * the batch in one daemon context before firing the rules once.
+ * <p>
+ * Stopping a listener keeps the messages it hasn't processed. They are processed when it is subscribed again, or by
+ * the listener it is replaced with, see {@link #handOffTo(DroolsSystemEventListener)}.
+ * <p>
+ * When journaling is enabled, map messages are written to the event journal as they are received and acknowledged
+ * once the rules have fired for their batch, or once the work they were handed off to is done, see
+ * {@link #processMessages(KieSession, List, Map)}.
+ */
 public abstract class DroolsSystemEventListener implements EventListener {
 
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    public static final long DEFAULT_COALESCING_WINDOW_MILLIS = 500;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    /**
+     * How long a stopped drainer is waited for before another one is started.
+     */
+    private static final long DRAINER_JOIN_TIMEOUT_MILLIS = 5000;
+
     private Logger log = LoggerFactory.getLogger(this.getClass());
 
     private DaemonToken daemonToken;
 
     private KieSession session;
 
+    private volatile DroolsSessionActor sessionActor;
+
+    private String sessionId;
+
+    private boolean journalEnabled;
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private long coalescingWindowMillis = DEFAULT_COALESCING_WINDOW_MILLIS;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private BlockingDeque<QueuedMessage> queue;
+
+    private Thread drainer;
+
+    /**
+     * The last drainer stopped, until it has exited or another one is started.
+     */
+    private Thread stoppedDrainer;
+
+    /**
+     * Identifies the current drainer, null when the listener is stopped. A drainer exits once it isn't current
+     * anymore, even if its interrupt was swallowed while it processed a batch.
+     */
+    private volatile Object drainerGeneration;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private volatile long lastBatchLagMillis;
+
     abstract public List<Event.Action> getSubscribedActions();
 
     abstract public Class<?> getSubscribedClass();
 
     abstract public void processMessage(KieSession session, Message message);
 
+    /**
+     * Processes a batch of coalesced messages and fires the rules once. Runs in a daemon context.
+     * Override to handle a batch at once, e.g. to load all the entities with one query.
+     */
+    protected void processMessages(KieSession session, List<Message> messages) {
+        for (Message message : messages) {
+            try {
+                processMessage(session, message);
+            } catch (Exception e) {
+                log.error("Error processing message", e);
+            }
+        }
+        session.fireAllRules();
+    }
+
+    /**
+     * Processes a batch of coalesced messages, then acknowledges their journal entries. Runs in a daemon context.
+     * Override to acknowledge the entries only once the work the messages are handed off to is done, with
+     * {@link #acknowledge(Collection)}. Entries that are never acknowledged are replayed on the next start.
+     *
+     * @param journalEntryIds the ids of the journal entries of each message, including the ones of the messages it
+     *                        was coalesced with. Messages that weren't journaled have none
+     */
+    protected void processMessages(KieSession session, List<Message> messages,
+            Map<Message, List<Integer>> journalEntryIds) {
+        processMessages(session, messages);
+        List<Integer> entryIds = new ArrayList<>();
+        journalEntryIds.values().forEach(entryIds::addAll);
+        acknowledge(entryIds);
+    }
+
+    /**
+     * Returns the key messages are coalesced by, the uuid of the entity by default. Messages without a key are never
+     * coalesced.
+     */
+    protected String getCoalescingKey(Message message) {
+        if (message instanceof MapMessage) {
+            try {
+                return ((MapMessage) message).getString("uuid");
+            } catch (JMSException e) {
+                log.debug("Can't read the uuid of message {}", message, e);
+            }
+        }
+        return null;
+    }
+
     @Override
     public void onMessage(Message message) {
-        log.debug(String.format("Received message: \n%s", message));
+        log.debug("Received message: \n{}", message);
+        receivedCount.incrementAndGet();
+        Date receivedAt = new Date();
+        Integer journalEntryId = journalEnabled ? journal(message, receivedAt) : null;
+        if (!ensureStarted().offer(new QueuedMessage(message, receivedAt.getTime(), journalEntryId))) {
+            droppedCount.incrementAndGet();
+            log.warn("Event queue of {} is full, dropping message: {}", getClass().getSimpleName(), message);
+        }
+    }
 
+    /**
+     * Queues journaled messages that were never acknowledged, typically because the module stopped before they were
+     * processed. They aren't journaled again.
+     */
+    public void replay(List<DroolsEventJournalEntry> entries) {
+        BlockingDeque<QueuedMessage> current = ensureStarted();
+        for (DroolsEventJournalEntry entry : entries) {
+            try {
+                Message message = JournaledMessages.fromJson(entry.getMessage());
+                if (!current.offer(new QueuedMessage(message, entry.getReceivedAt().getTime(), entry.getId()))) {
+                    droppedCount.incrementAndGet();
+                    log.warn("Event queue of {} is full, journal entry {} will be replayed on the next start",
+                            getClass().getSimpleName(), entry.getId());
+                }
+            } catch (IOException e) {
+                log.error("Can't replay journal entry {}", entry.getId(), e);
+            }
+        }
+    }
+
+    private Integer journal(Message message, Date receivedAt) {
+        if (!(message instanceof MapMessage)) {
+            return null;
+        }
+        // messages are delivered on JMS threads, which have no OpenMRS session of their own
+        boolean openedSession = !Context.isSessionOpen();
+        if (openedSession) {
+            Context.openSession();
+        }
         try {
-            Daemon.runInDaemonThread(() -> {
+            DroolsEventJournalEntry entry = new DroolsEventJournalEntry(sessionId, getClass().getName(),
+                    getSubscribedClass().getName(), JournaledMessages.toJson((MapMessage) message), receivedAt);
+            return Context.getService(DroolsEventJournalService.class).append(entry).getId();
+        } catch (Exception e) {
+            log.error("Can't journal message, it won't be replayed if it isn't processed: {}", message, e);
+            return null;
+        } finally {
+            if (openedSession) {
+                Context.closeSession();
+            }
+        }
+    }
+
+    /**
+     * Deletes the journal entries of processed messages, so they aren't replayed.
+     */
+    protected void acknowledge(Collection<Integer> journalEntryIds) {
+        if (!journalEntryIds.isEmpty()) {
+            Context.getService(DroolsEventJournalService.class).acknowledge(journalEntryIds);
+        }
+    }
+
+    private synchronized BlockingDeque<QueuedMessage> ensureStarted() {
+        if (queue == null) {
+            queue = new LinkedBlockingDeque<>(queueCapacity);
+        }
+        if (drainer == null) {
+            awaitStoppedDrainer();
+            Object generation = new Object();
+            drainerGeneration = generation;
+            drainer = Daemon.runInDaemonThread(() -> drain(generation), daemonToken);
+        }
+        return queue;
+    }
+
+    /**
+     * Waits for the drainer last stopped to exit, so that two drainers never take messages off the queue at once.
+     */
+    private void awaitStoppedDrainer() {
+        if (stoppedDrainer == null || stoppedDrainer == Thread.currentThread()) {
+            return;
+        }
+        try {
+            stoppedDrainer.join(DRAINER_JOIN_TIMEOUT_MILLIS);
+            if (stoppedDrainer.isAlive()) {
+                // it exits once the batch it is stuck in is done, since it isn't the current generation anymore
+                log.warn("The stopped drainer of {} is still processing a batch", getClass().getSimpleName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stoppedDrainer = null;
+    }
+
+    /**
+     * Restarts the drainer if messages were left queued when the listener was stopped.
+     */
+    public synchronized void resume() {
+        if (getQueueDepth() > 0) {
+            ensureStarted();
+        }
+    }
+
+    /**
+     * Stops the drainer. Messages still queued are kept, see {@link #resume()} and
+     * {@link #handOffTo(DroolsSystemEventListener)}.
+     */
+    public synchronized void stop() {
+        drainerGeneration = null;
+        if (drainer != null) {
+            drainer.interrupt();
+            stoppedDrainer = drainer;
+            drainer = null;
+        }
+    }
+
+    /**
+     * Moves the messages this stopped listener didn't process to the listener replacing it, e.g. when the container
+     * is reloaded, and starts its drainer.
+     *
+     * @return the number of messages handed off
+     */
+    public synchronized int handOffTo(DroolsSystemEventListener successor) {
+        if (queue == null || queue.isEmpty() || successor == this) {
+            return 0;
+        }
+        List<QueuedMessage> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        BlockingDeque<QueuedMessage> successorQueue = successor.ensureStarted();
+        int handedOff = 0;
+        for (QueuedMessage queued : pending) {
+            if (successorQueue.offer(queued)) {
+                handedOff++;
+            } else {
+                successor.droppedCount.incrementAndGet();
+                log.warn("Event queue of {} is full, dropping handed off message: {}",
+                        successor.getClass().getSimpleName(), queued.message);
+            }
+        }
+        return handedOff;
+    }
+
+    private void drain(Object generation) {
+        while (drainerGeneration == generation && !Thread.currentThread().isInterrupted()) {
+            try {
+                QueuedMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
                 try {
-                    processMessage(session, message);
-                } catch (Exception e) {
-                    log.error("Error processing message", e);
+                    Thread.sleep(coalescingWindowMillis);
+                } catch (InterruptedException e) {
+                    // stopped before the batch was taken, keep the message for whoever processes the queue next
+                    if (!queue.offerFirst(first)) {
+                        droppedCount.incrementAndGet();
+                    }
+                    throw e;
                 }
-            }, daemonToken);
-        } catch (Exception e) {
-            log.error(String.format("Failed to start Daemon thread to process message!\n%s", message.toString()), e);
+
+                List<QueuedMessage> pending = new ArrayList<>();
+                pending.add(first);
+                queue.drainTo(pending, maxBatchSize - 1);
+                processBatch(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error processing event batch", e);
+            }
         }
     }
 
+    private void processBatch(List<QueuedMessage> pending) throws InterruptedException {
+        Map<Object, Message> coalesced = new LinkedHashMap<>();
+        Map<Object, List<Integer>> journalEntryIdsByKey = new HashMap<>();
+        for (QueuedMessage queued : pending) {
+            String coalescingKey = getCoalescingKey(queued.message);
+            Object key = coalescingKey != null ? coalescingKey : queued;
+            // the latest message for an entity wins but keeps the position of the first one
+            coalesced.put(key, queued.message);
+            if (queued.journalEntryId != null) {
+                journalEntryIdsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(queued.journalEntryId);
+            }
+        }
+        coalescedCount.addAndGet(pending.size() - coalesced.size());
+        lastBatchLagMillis = System.currentTimeMillis() - pending.get(0).receivedAt;
+
+        List<Message> batch = new ArrayList<>(coalesced.values());
+        Map<Message, List<Integer>> journalEntryIds = new IdentityHashMap<>();
+        journalEntryIdsByKey.forEach((key, entryIds) -> journalEntryIds.put(coalesced.get(key), entryIds));
+        DroolsSessionActor actor = sessionActor;
+        if (actor != null && actor.isRunning()) {
+            // the session is shared, so the batch has to run on its engine thread. Waiting for it is interruptible, and a
+            // stopped actor fails the tasks it didn't run
+            try {
+                actor.submit(kieSession -> {
+                    processMessages(kieSession, batch, journalEntryIds);
+                    return null;
+                }).get();
+            } catch (ExecutionException e) {
+                log.error("Error processing event batch", e.getCause());
+            }
+        } else {
+            // the drainer runs in a daemon context of its own
+            try {
+                processMessages(session, batch, journalEntryIds);
+            } catch (Exception e) {
+                log.error("Error processing event batch", e);
+            } finally {
+                Context.clearSession();
+            }
+        }
+        processedCount.addAndGet(batch.size());
+        batchCount.incrementAndGet();
+    }
+
     public void setSession(KieSession session) {
         this.session = session;
     }
@@ -51,6 +380,18 @@ public abstract class DroolsSystemEventListener implements EventListener {
         return session;
     }
 
+    /**
+     * Sets the actor that owns the session. When set, batches are processed on its engine thread instead of a daemon
+     * thread of their own.
+     */
+    public void setSessionActor(DroolsSessionActor sessionActor) {
+        this.sessionActor = sessionActor;
+    }
+
+    public DroolsSessionActor getSessionActor() {
+        return sessionActor;
+    }
+
     public void setDaemonToken(DaemonToken daemonToken) {
         this.daemonToken = daemonToken;
     }
@@ -58,4 +399,111 @@ public abstract class DroolsSystemEventListener implements EventListener {
     public DaemonToken getDaemonToken() {
         return daemonToken;
     }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /**
+     * Sets whether messages are journaled when received and acknowledged once processed, so that they can be
+     * replayed with {@link #replay(List)} if they weren't.
+     */
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the capacity of the queue, messages received while it is full are dropped. Only takes effect before the
+     * first message is received.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getCoalescingWindowMillis() {
+        return coalescingWindowMillis;
+    }
+
+    public void setCoalescingWindowMillis(long coalescingWindowMillis) {
+        this.coalescingWindowMillis = coalescingWindowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the number of messages waiting to be processed
+     */
+    public int getQueueDepth() {
+        BlockingDeque<QueuedMessage> current = queue;
+        return current == null ? 0 : current.size();
+    }
+
+    /**
+     * @return how long the oldest message waiting to be processed has been waiting, in milliseconds
+     */
+    public long getQueueLagMillis() {
+        BlockingDeque<QueuedMessage> current = queue;
+        QueuedMessage oldest = current == null ? null : current.peek();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.receivedAt;
+    }
+
+    /**
+     * @return how long the oldest message of the last batch waited before it was processed, in milliseconds
+     */
+    public long getLastBatchLagMillis() {
+        return lastBatchLagMillis;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    private static class QueuedMessage {
+
+        private final Message message;
+
+        private final long receivedAt;
+
+        private final Integer journalEntryId;
+
+        QueuedMessage(Message message, long receivedAt, Integer journalEntryId) {
+            this.message = message;
+            this.receivedAt = receivedAt;
+            this.journalEntryId = journalEntryId;
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package org.openmrs.module.drools.event;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts the map messages published by the event module to and from the JSON stored in the event journal.
+ */
+public class JournaledMessages {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JournaledMessages() {
+    }
+
+    public static String toJson(MapMessage message) throws JMSException, IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        Enumeration<?> names = message.getMapNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            body.put(name, message.getObject(name));
+        }
+        return objectMapper.writeValueAsString(body);
+    }
+
+    /**
+     * Rebuilds a read-only map message from its journaled JSON. Only the methods that read the body are supported.
+     */
+    public static MapMessage fromJson(String json) throws IOException {
+        Map<String, Object> body = objectMapper.readValue(json, new TypeReference<LinkedHashMap<String, Object>>() {});
+        return (MapMessage) Proxy.newProxyInstance(MapMessage.class.getClassLoader(), new Class<?>[] { MapMessage.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "getMapNames":
+                            return Collections.enumeration(body.keySet());
+                        case "itemExists":
+                            return body.containsKey((String) args[0]);
+                        case "getObject":
+                            return body.get((String) args[0]);
+                        case "getString": {
+                            Object value = body.get((String) args[0]);
+                            return value == null ? null : value.toString();
+                        }
+                        case "toString":
+                            return "JournaledMapMessage" + body;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(name + " is not supported on replayed messages");
+                    }
+                });
+    }
+}
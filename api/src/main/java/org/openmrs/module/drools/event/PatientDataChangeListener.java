@@ -0,0 +1,128 @@
+package org.openmrs.module.drools.event;
+
+import org.kie.api.runtime.KieSession;
+import org.openmrs.Condition;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.PatientProgram;
+import org.openmrs.api.context.Context;
+import org.openmrs.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Message;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Schedules the patient of a changed Obs, Encounter, Condition or PatientProgram for re-evaluation by a
+ * {@link PatientReevaluationPipeline}. It doesn't feed a session itself.
+ */
+public class PatientDataChangeListener extends DroolsSystemEventListener {
+
+    private static final Map<Class<?>, Function<String, Integer>> PATIENT_ID_RESOLVERS = new LinkedHashMap<>();
+
+    static {
+        PATIENT_ID_RESOLVERS.put(Obs.class, uuid -> {
+            Obs obs = Context.getObsService().getObsByUuid(uuid);
+            return obs == null ? null : obs.getPersonId();
+        });
+        PATIENT_ID_RESOLVERS.put(Encounter.class, uuid -> {
+            Encounter encounter = Context.getEncounterService().getEncounterByUuid(uuid);
+            return encounter == null || encounter.getPatient() == null ? null : encounter.getPatient().getPatientId();
+        });
+        PATIENT_ID_RESOLVERS.put(Condition.class, uuid -> {
+            Condition condition = Context.getConditionService().getConditionByUuid(uuid);
+            return condition == null || condition.getPatient() == null ? null : condition.getPatient().getPatientId();
+        });
+        PATIENT_ID_RESOLVERS.put(PatientProgram.class, uuid -> {
+            PatientProgram patientProgram = Context.getProgramWorkflowService().getPatientProgramByUuid(uuid);
+            return patientProgram == null || patientProgram.getPatient() == null ? null
+                    : patientProgram.getPatient().getPatientId();
+        });
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PatientDataChangeListener.class);
+
+    private final Class<?> subscribedClass;
+
+    private final PatientReevaluationPipeline pipeline;
+
+    public PatientDataChangeListener(Class<?> subscribedClass, PatientReevaluationPipeline pipeline) {
+        if (!PATIENT_ID_RESOLVERS.containsKey(subscribedClass)) {
+            throw new IllegalArgumentException("Unsupported patient data type: " + subscribedClass.getName());
+        }
+        this.subscribedClass = subscribedClass;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Creates a listener for each supported type of patient data that triggers the re-evaluation of a session.
+     */
+    public static List<PatientDataChangeListener> forTriggeredTypes(PatientReevaluationPipeline pipeline) {
+        List<PatientDataChangeListener> listeners = new ArrayList<>();
+        for (Class<?> type : PATIENT_ID_RESOLVERS.keySet()) {
+            if (pipeline.isTriggeredBy(type.getSimpleName())) {
+                listeners.add(new PatientDataChangeListener(type, pipeline));
+            }
+        }
+        return listeners;
+    }
+
+    @Override
+    public List<Event.Action> getSubscribedActions() {
+        // purged data can't be traced back to its patient
+        return Arrays.asList(Event.Action.CREATED, Event.Action.UPDATED, Event.Action.VOIDED, Event.Action.UNVOIDED);
+    }
+
+    @Override
+    public Class<?> getSubscribedClass() {
+        return subscribedClass;
+    }
+
+    @Override
+    public void processMessage(KieSession session, Message message) {
+        schedule(message, Collections.emptyList());
+    }
+
+    @Override
+    protected void processMessages(KieSession session, List<Message> messages) {
+        processMessages(session, messages, Collections.emptyMap());
+    }
+
+    /**
+     * Hands the journal entries of the messages to the pipeline, which acknowledges them once it has re-evaluated the
+     * patient. The entries of messages that don't lead to a re-evaluation are acknowledged right away.
+     */
+    @Override
+    protected void processMessages(KieSession session, List<Message> messages,
+            Map<Message, List<Integer>> journalEntryIds) {
+        List<Integer> unscheduled = new ArrayList<>();
+        for (Message message : messages) {
+            List<Integer> entryIds = journalEntryIds.getOrDefault(message, Collections.emptyList());
+            try {
+                if (!schedule(message, entryIds)) {
+                    unscheduled.addAll(entryIds);
+                }
+            } catch (Exception e) {
+                // left unacknowledged, so that the change is replayed on the next start
+                log.error("Error scheduling re-evaluation for message {}", message, e);
+            }
+        }
+        acknowledge(unscheduled);
+    }
+
+    private boolean schedule(Message message, List<Integer> journalEntryIds) {
+        String uuid = getCoalescingKey(message);
+        if (uuid == null) {
+            return false;
+        }
+        return pipeline.schedule(PATIENT_ID_RESOLVERS.get(subscribedClass).apply(uuid), subscribedClass.getSimpleName(),
+                journalEntryIds);
+    }
+}
@@ -0,0 +1,255 @@
+package org.openmrs.module.drools.event;
+
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.DroolsEventJournalService;
+import org.openmrs.module.drools.api.db.DroolsFactDAO;
+import org.openmrs.module.drools.result.DroolsResultStore;
+import org.openmrs.module.drools.session.DroolsExecutionResult;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Re-evaluates sessions for patients whose data changed and writes the results to a {@link DroolsResultStore}.
+ * <p>
+ * Sessions opt in by listing the types of data that should trigger a re-evaluation in
+ * {@link DroolsSessionConfig#getReevaluationTriggers()}. They are evaluated with the patient as their only fact, so
+ * only sessions whose rules start from a Patient fact should opt in. Changes are deduplicated per patient while they
+ * wait, so a burst of changes for one patient leads to one evaluation per session.
+ * <p>
+ * Journal entries of the changes a patient was scheduled for are acknowledged once the patient has been
+ * re-evaluated, so the changes are replayed on the next start if the module stops before. A stopped pipeline keeps
+ * the patients still waiting, so that the pipeline replacing it can take them over with
+ * {@link #takeOver(PatientReevaluationPipeline)}.
+ */
+public class PatientReevaluationPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientReevaluationPipeline.class);
+
+    /**
+     * The patients of a batch are loaded with one query and the Hibernate session is cleared after each batch.
+     */
+    private static final int MAX_PATIENTS_PER_BATCH = 100;
+
+    private final DroolsEngineService droolsEngineService;
+
+    private final DroolsResultStore resultStore;
+
+    private final DaemonToken daemonToken;
+
+    private final Map<Integer, Set<String>> pending = new LinkedHashMap<>();
+
+    /**
+     * The journal entries of the changes the waiting patients were scheduled for, keyed by patient id.
+     */
+    private final Map<Integer, List<Integer>> pendingJournalEntryIds = new HashMap<>();
+
+    private boolean draining;
+
+    private boolean stopped;
+
+    public PatientReevaluationPipeline(DroolsEngineService droolsEngineService, DroolsResultStore resultStore,
+            DaemonToken daemonToken) {
+        this.droolsEngineService = droolsEngineService;
+        this.resultStore = resultStore;
+        this.daemonToken = daemonToken;
+    }
+
+    /**
+     * @return whether any session is re-evaluated when data of the given type changes
+     */
+    public boolean isTriggeredBy(String triggerType) {
+        return droolsEngineService.getSessionConfigs().stream().anyMatch(config -> isTriggeredBy(config, triggerType));
+    }
+
+    /**
+     * Schedules the re-evaluation of the sessions triggered by the given type of data for a patient.
+     *
+     * @return whether any session was scheduled
+     */
+    public boolean schedule(Integer patientId, String triggerType) {
+        return schedule(patientId, triggerType, Collections.emptyList());
+    }
+
+    /**
+     * Schedules the re-evaluation of the sessions triggered by the given type of data for a patient, and acknowledges
+     * the journal entries of the change once the patient has been re-evaluated.
+     *
+     * @return whether any session was scheduled, if not the journal entries are left to the caller
+     */
+    public boolean schedule(Integer patientId, String triggerType, Collection<Integer> journalEntryIds) {
+        Set<String> sessionIds = new HashSet<>();
+        for (DroolsSessionConfig config : droolsEngineService.getSessionConfigs()) {
+            if (isTriggeredBy(config, triggerType)) {
+                sessionIds.add(config.getSessionId());
+            }
+        }
+        if (patientId == null || sessionIds.isEmpty()) {
+            return false;
+        }
+        synchronized (this) {
+            pending.computeIfAbsent(patientId, id -> new HashSet<>()).addAll(sessionIds);
+            if (!journalEntryIds.isEmpty()) {
+                pendingJournalEntryIds.computeIfAbsent(patientId, id -> new ArrayList<>()).addAll(journalEntryIds);
+            }
+            startDrainingIfNecessary();
+        }
+        return true;
+    }
+
+    /**
+     * Stops re-evaluating once the batch of patients being re-evaluated is done. Patients scheduled afterwards are kept
+     * waiting.
+     */
+    public synchronized void stop() {
+        stopped = true;
+    }
+
+    public synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Schedules the patients a stopped pipeline didn't get to.
+     */
+    public void takeOver(PatientReevaluationPipeline previous) {
+        Map<Integer, Set<String>> handedOff;
+        Map<Integer, List<Integer>> handedOffJournalEntryIds;
+        synchronized (previous) {
+            handedOff = new LinkedHashMap<>(previous.pending);
+            handedOffJournalEntryIds = new HashMap<>(previous.pendingJournalEntryIds);
+            previous.pending.clear();
+            previous.pendingJournalEntryIds.clear();
+        }
+        if (handedOff.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            handedOff.forEach((patientId, sessionIds) -> pending.computeIfAbsent(patientId, id -> new HashSet<>())
+                    .addAll(sessionIds));
+            handedOffJournalEntryIds.forEach((patientId, entryIds) -> pendingJournalEntryIds
+                    .computeIfAbsent(patientId, id -> new ArrayList<>()).addAll(entryIds));
+            startDrainingIfNecessary();
+        }
+        log.debug("Took over {} patient(s) waiting for re-evaluation", handedOff.size());
+    }
+
+    private void startDrainingIfNecessary() {
+        if (draining || stopped) {
+            return;
+        }
+        draining = true;
+        try {
+            Daemon.runInDaemonThread(this::drain, daemonToken);
+        } catch (RuntimeException e) {
+            // let the next change try again rather than leave the patients waiting forever
+            draining = false;
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of patients waiting to be re-evaluated
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void drain() {
+        while (true) {
+            Map<Integer, Set<String>> batch = new LinkedHashMap<>();
+            Map<Integer, List<Integer>> journalEntryIds = new HashMap<>();
+            synchronized (this) {
+                Iterator<Map.Entry<Integer, Set<String>>> iterator = pending.entrySet().iterator();
+                if (stopped || !iterator.hasNext()) {
+                    draining = false;
+                    return;
+                }
+                while (iterator.hasNext() && batch.size() < MAX_PATIENTS_PER_BATCH) {
+                    Map.Entry<Integer, Set<String>> next = iterator.next();
+                    iterator.remove();
+                    batch.put(next.getKey(), next.getValue());
+                    List<Integer> entryIds = pendingJournalEntryIds.remove(next.getKey());
+                    if (entryIds != null) {
+                        journalEntryIds.put(next.getKey(), entryIds);
+                    }
+                }
+            }
+            try {
+                reevaluate(batch, journalEntryIds);
+            } catch (Exception e) {
+                log.error("Error re-evaluating {} patient(s)", batch.size(), e);
+            } finally {
+                Context.clearSession();
+            }
+        }
+    }
+
+    private void reevaluate(Map<Integer, Set<String>> batch, Map<Integer, List<Integer>> journalEntryIds) {
+        Map<Integer, Patient> patients = new HashMap<>();
+        DroolsFactDAO factDAO = Context.getRegisteredComponent("droolsFactDAO", DroolsFactDAO.class);
+        for (Patient patient : factDAO.getByIds(Patient.class, batch.keySet())) {
+            patients.put(patient.getPatientId(), patient);
+        }
+        batch.forEach((patientId, sessionIds) -> {
+            try {
+                Patient patient = patients.get(patientId);
+                if (patient != null) {
+                    reevaluate(patient, sessionIds);
+                }
+                acknowledge(journalEntryIds.get(patientId));
+            } catch (Exception e) {
+                log.error("Error re-evaluating sessions {} for patient {}", sessionIds, patientId, e);
+            }
+        });
+    }
+
+    private void reevaluate(Patient patient, Set<String> sessionIds) {
+        Integer patientId = patient.getPatientId();
+        for (String sessionId : sessionIds) {
+            DroolsSessionConfig config = droolsEngineService.getSessionConfig(sessionId);
+            if (config == null) {
+                continue;
+            }
+            try {
+                DroolsExecutionResult result = droolsEngineService.evaluate(sessionId,
+                        Collections.<Object>singletonList(patient), config.getReturnObjectsTypeClassName());
+                resultStore.putResults(sessionId, patientId, result.getResults(), new Date());
+                log.debug("Re-evaluated session {} for patient {}: {} result(s)", sessionId, patientId,
+                        result.getResults().size());
+            } catch (Exception e) {
+                log.error("Error re-evaluating session {} for patient {}", sessionId, patientId, e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the journal entries of the changes a patient was re-evaluated for, so they aren't replayed.
+     */
+    protected void acknowledge(List<Integer> journalEntryIds) {
+        if (journalEntryIds != null && !journalEntryIds.isEmpty()) {
+            Context.getService(DroolsEventJournalService.class).acknowledge(journalEntryIds);
+        }
+    }
+
+    private boolean isTriggeredBy(DroolsSessionConfig config, String triggerType) {
+        return config.getReevaluationTriggers() != null && config.getReevaluationTriggers().contains(triggerType)
+                && config.getReturnObjectsTypeClassName() != null;
+    }
+}
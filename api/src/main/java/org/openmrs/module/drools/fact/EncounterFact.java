@@ -0,0 +1,76 @@
+package org.openmrs.module.drools.fact;
+
+import org.openmrs.Encounter;
+
+import java.util.Date;
+
+/**
+ * Immutable projection of an {@link Encounter}, its associations are referenced by id. Dates are copied from the
+ * entity and must not be modified.
+ */
+public final class EncounterFact {
+
+    private final Integer encounterId;
+
+    private final String uuid;
+
+    private final Integer patientId;
+
+    private final int encounterTypeId;
+
+    private final Date encounterDatetime;
+
+    private final Integer locationId;
+
+    private final Integer visitId;
+
+    private final Integer formId;
+
+    public EncounterFact(Encounter encounter) {
+        this.encounterId = encounter.getEncounterId();
+        this.uuid = encounter.getUuid();
+        this.patientId = encounter.getPatient().getPatientId();
+        this.encounterTypeId = encounter.getEncounterType().getEncounterTypeId();
+        this.encounterDatetime = FactProjector.copy(encounter.getEncounterDatetime());
+        this.locationId = encounter.getLocation() != null ? encounter.getLocation().getLocationId() : null;
+        this.visitId = encounter.getVisit() != null ? encounter.getVisit().getVisitId() : null;
+        this.formId = encounter.getForm() != null ? encounter.getForm().getFormId() : null;
+    }
+
+    public Integer getEncounterId() {
+        return encounterId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public int getEncounterTypeId() {
+        return encounterTypeId;
+    }
+
+    public Date getEncounterDatetime() {
+        return encounterDatetime;
+    }
+
+    public Integer getLocationId() {
+        return locationId;
+    }
+
+    public Integer getVisitId() {
+        return visitId;
+    }
+
+    public Integer getFormId() {
+        return formId;
+    }
+
+    @Override
+    public String toString() {
+        return "EncounterFact{encounterId=" + encounterId + ", patientId=" + patientId + "}";
+    }
+}
@@ -0,0 +1,18 @@
+package org.openmrs.module.drools.fact;
+
+/**
+ * How OpenMRS entities are inserted into the working memory of a session.
+ */
+public enum FactInsertionMode {
+
+    /**
+     * The Hibernate entities themselves are inserted.
+     */
+    ENTITY,
+
+    /**
+     * Patients, encounters, obs and visits are inserted as the lightweight facts of this package, see
+     * {@link FactProjector}. Other facts are inserted as they are.
+     */
+    PROJECTION
+}
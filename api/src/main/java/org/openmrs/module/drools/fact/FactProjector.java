@@ -0,0 +1,90 @@
+package org.openmrs.module.drools.fact;
+
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Maps OpenMRS entities to the lightweight facts of this package, for sessions configured with
+ * {@link FactInsertionMode#PROJECTION}.
+ * <p>
+ * Projected facts hold ids and primitives only, so matching them never triggers a lazy load and they don't keep the
+ * entity graph reachable from working memory. Rules reference associations by id, e.g.
+ * {@code ObsFact(conceptId == 5089, valueNumeric > 70)}.
+ */
+public class FactProjector {
+
+    /**
+     * Returns the projection of the entity, or the object itself if it has none.
+     */
+    public static Object project(Object fact) {
+        if (fact instanceof Patient) {
+            return new PatientFact((Patient) fact);
+        }
+        if (fact instanceof Obs) {
+            return new ObsFact((Obs) fact);
+        }
+        if (fact instanceof Encounter) {
+            return new EncounterFact((Encounter) fact);
+        }
+        if (fact instanceof Visit) {
+            return new VisitFact((Visit) fact);
+        }
+        return fact;
+    }
+
+    /**
+     * Returns the fact to insert into a session with the given config, projected if the session asks for it.
+     */
+    public static Object project(DroolsSessionConfig config, Object fact) {
+        return isProjecting(config) ? project(fact) : fact;
+    }
+
+    /**
+     * Returns the facts to insert into a session with the given config, projected if the session asks for it.
+     */
+    public static List<Object> projectAll(DroolsSessionConfig config, Collection<?> facts) {
+        return facts.stream().map(fact -> project(config, fact)).collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily projects the facts if the session asks for it, so that streamed facts stay streamed.
+     */
+    @SuppressWarnings("unchecked")
+    public static Iterable<Object> projectLazily(DroolsSessionConfig config, Iterable<?> facts) {
+        if (!isProjecting(config)) {
+            return (Iterable<Object>) facts;
+        }
+        return () -> {
+            Iterator<?> iterator = facts.iterator();
+            return new Iterator<Object>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return project(iterator.next());
+                }
+            };
+        };
+    }
+
+    public static boolean isProjecting(DroolsSessionConfig config) {
+        return config != null && config.getFactInsertionMode() == FactInsertionMode.PROJECTION;
+    }
+
+    static Date copy(Date date) {
+        return date != null ? new Date(date.getTime()) : null;
+    }
+}
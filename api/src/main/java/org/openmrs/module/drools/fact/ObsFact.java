@@ -0,0 +1,102 @@
+package org.openmrs.module.drools.fact;
+
+import org.openmrs.Obs;
+
+import java.util.Date;
+
+/**
+ * Immutable projection of an {@link Obs}. Concepts are referenced by id, and {@link #getValueNumeric()} is
+ * {@link Double#NaN} when the obs has no numeric value, which fails any comparison in a rule. Dates are copied from
+ * the entity and must not be modified.
+ */
+public final class ObsFact {
+
+    private final Integer obsId;
+
+    private final String uuid;
+
+    private final Integer personId;
+
+    private final Integer encounterId;
+
+    private final Integer obsGroupId;
+
+    private final int conceptId;
+
+    private final Date obsDatetime;
+
+    private final double valueNumeric;
+
+    private final Integer valueCodedId;
+
+    private final String valueText;
+
+    private final Date valueDatetime;
+
+    public ObsFact(Obs obs) {
+        this.obsId = obs.getObsId();
+        this.uuid = obs.getUuid();
+        this.personId = obs.getPerson().getPersonId();
+        this.encounterId = obs.getEncounter() != null ? obs.getEncounter().getEncounterId() : null;
+        this.obsGroupId = obs.getObsGroup() != null ? obs.getObsGroup().getObsId() : null;
+        this.conceptId = obs.getConcept().getConceptId();
+        this.obsDatetime = FactProjector.copy(obs.getObsDatetime());
+        this.valueNumeric = obs.getValueNumeric() != null ? obs.getValueNumeric() : Double.NaN;
+        this.valueCodedId = obs.getValueCoded() != null ? obs.getValueCoded().getConceptId() : null;
+        this.valueText = obs.getValueText();
+        this.valueDatetime = FactProjector.copy(obs.getValueDatetime());
+    }
+
+    public Integer getObsId() {
+        return obsId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public Integer getPersonId() {
+        return personId;
+    }
+
+    public Integer getEncounterId() {
+        return encounterId;
+    }
+
+    public Integer getObsGroupId() {
+        return obsGroupId;
+    }
+
+    public int getConceptId() {
+        return conceptId;
+    }
+
+    public Date getObsDatetime() {
+        return obsDatetime;
+    }
+
+    public double getValueNumeric() {
+        return valueNumeric;
+    }
+
+    public boolean hasValueNumeric() {
+        return !Double.isNaN(valueNumeric);
+    }
+
+    public Integer getValueCodedId() {
+        return valueCodedId;
+    }
+
+    public String getValueText() {
+        return valueText;
+    }
+
+    public Date getValueDatetime() {
+        return valueDatetime;
+    }
+
+    @Override
+    public String toString() {
+        return "ObsFact{obsId=" + obsId + ", conceptId=" + conceptId + "}";
+    }
+}
@@ -0,0 +1,80 @@
+package org.openmrs.module.drools.fact;
+
+import org.openmrs.Patient;
+
+import java.util.Date;
+
+/**
+ * Immutable projection of a {@link Patient}. Dates are copied from the entity and must not be modified. The id is
+ * null if the patient isn't saved yet.
+ */
+public final class PatientFact {
+
+    private final Integer patientId;
+
+    private final String uuid;
+
+    private final String gender;
+
+    private final Date birthdate;
+
+    private final boolean birthdateEstimated;
+
+    private final boolean dead;
+
+    private final Date deathDate;
+
+    public PatientFact(Patient patient) {
+        this(patient.getPatientId(), patient.getUuid(), patient.getGender(), FactProjector.copy(patient.getBirthdate()),
+                patient.getBirthdateEstimated(), patient.getDead(), FactProjector.copy(patient.getDeathDate()));
+    }
+
+    /**
+     * Creates the fact from the columns of a patient, as projected by a query without loading the entity. The dates
+     * are kept as given.
+     */
+    public PatientFact(Integer patientId, String uuid, String gender, Date birthdate, Boolean birthdateEstimated,
+            Boolean dead, Date deathDate) {
+        this.patientId = patientId;
+        this.uuid = uuid;
+        // a handful of distinct values shared by all facts
+        this.gender = gender != null ? gender.intern() : null;
+        this.birthdate = birthdate;
+        this.birthdateEstimated = Boolean.TRUE.equals(birthdateEstimated);
+        this.dead = Boolean.TRUE.equals(dead);
+        this.deathDate = deathDate;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public Date getBirthdate() {
+        return birthdate;
+    }
+
+    public boolean isBirthdateEstimated() {
+        return birthdateEstimated;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    public Date getDeathDate() {
+        return deathDate;
+    }
+
+    @Override
+    public String toString() {
+        return "PatientFact{patientId=" + patientId + "}";
+    }
+}
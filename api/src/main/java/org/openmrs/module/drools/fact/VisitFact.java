@@ -0,0 +1,76 @@
+package org.openmrs.module.drools.fact;
+
+import org.openmrs.Visit;
+
+import java.util.Date;
+
+/**
+ * Immutable projection of a {@link Visit}, its associations are referenced by id. Dates are copied from the entity
+ * and must not be modified.
+ */
+public final class VisitFact {
+
+    private final Integer visitId;
+
+    private final String uuid;
+
+    private final Integer patientId;
+
+    private final int visitTypeId;
+
+    private final Integer locationId;
+
+    private final Date startDatetime;
+
+    private final Date stopDatetime;
+
+    public VisitFact(Visit visit) {
+        this.visitId = visit.getVisitId();
+        this.uuid = visit.getUuid();
+        this.patientId = visit.getPatient().getPatientId();
+        this.visitTypeId = visit.getVisitType().getVisitTypeId();
+        this.locationId = visit.getLocation() != null ? visit.getLocation().getLocationId() : null;
+        this.startDatetime = FactProjector.copy(visit.getStartDatetime());
+        this.stopDatetime = FactProjector.copy(visit.getStopDatetime());
+    }
+
+    public Integer getVisitId() {
+        return visitId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public int getVisitTypeId() {
+        return visitTypeId;
+    }
+
+    public Integer getLocationId() {
+        return locationId;
+    }
+
+    public Date getStartDatetime() {
+        return startDatetime;
+    }
+
+    public Date getStopDatetime() {
+        return stopDatetime;
+    }
+
+    /**
+     * @return whether the visit hasn't been stopped
+     */
+    public boolean isActive() {
+        return stopDatetime == null;
+    }
+
+    @Override
+    public String toString() {
+        return "VisitFact{visitId=" + visitId + ", patientId=" + patientId + "}";
+    }
+}
@@ -6,6 +6,8 @@ public class DroolsParameterDefinition {
 
     private DroolsParameterType parameterType;
 
+    private String parameterTypeName;
+
     private Boolean required = Boolean.TRUE;
 
     public DroolsParameterDefinition() {
@@ -14,7 +16,16 @@ public class DroolsParameterDefinition {
 
     public DroolsParameterDefinition(String parameterName, DroolsParameterType parameterType, Boolean required) {
         this.parameterName = parameterName;
-        this.parameterType = parameterType;
+        setParameterType(parameterType);
+        this.required = required;
+    }
+
+    /**
+     * @param parameterTypeName a built-in type or one added by a module through a {@link DroolsParameterResolver}
+     */
+    public DroolsParameterDefinition(String parameterName, String parameterTypeName, Boolean required) {
+        this.parameterName = parameterName;
+        setParameterTypeName(parameterTypeName);
         this.required = required;
     }
 
@@ -26,12 +37,30 @@ public class DroolsParameterDefinition {
         this.parameterName = parameterName;
     }
 
+    /**
+     * @return the built-in type, or null if the parameter is of a type added by a module
+     */
     public DroolsParameterType getParameterType() {
         return parameterType;
     }
 
     public void setParameterType(DroolsParameterType parameterType) {
         this.parameterType = parameterType;
+        this.parameterTypeName = parameterType == null ? null : parameterType.name();
+    }
+
+    public String getParameterTypeName() {
+        return parameterTypeName;
+    }
+
+    public void setParameterTypeName(String parameterTypeName) {
+        this.parameterTypeName = parameterTypeName;
+        this.parameterType = null;
+        for (DroolsParameterType type : DroolsParameterType.values()) {
+            if (type.name().equals(parameterTypeName)) {
+                this.parameterType = type;
+            }
+        }
     }
 
     public Boolean getRequired() {
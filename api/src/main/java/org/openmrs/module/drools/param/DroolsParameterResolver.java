@@ -0,0 +1,65 @@
+package org.openmrs.module.drools.param;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Resolves the values of a parameter type into facts, e.g. uuids into entities.
+ * <p>
+ * Modules register resolvers for their own parameter types, or to replace a built-in one, by exposing them as Spring
+ * components. Values are always resolved in batches, so implementations should load them with as few queries as
+ * possible.
+ *
+ * @see DroolsParameterResolverRegistry
+ */
+public interface DroolsParameterResolver {
+
+    /**
+     * @return the parameter type this resolves, e.g. {@code "LOCATION_UUID"}, as referenced by session parameter
+     * definitions
+     */
+    String getParameterType();
+
+    /**
+     * Resolves several values at once.
+     *
+     * @return the resolved facts keyed by value, values that can't be resolved are left out
+     */
+    Map<String, Object> resolve(Collection<String> values);
+
+    /**
+     * Whether resolved facts can be kept and shared across evaluations. Meant for reference data that rarely
+     * changes, such as forms or encounter types. Cached entities are detached from the Hibernate session, so their
+     * associations should be fetched along.
+     */
+    default boolean isCacheable() {
+        return false;
+    }
+
+    /**
+     * Adapts a resolver of single values, for types without a bulk query.
+     */
+    static DroolsParameterResolver of(String parameterType, Function<String, ?> resolver) {
+        return new DroolsParameterResolver() {
+
+            @Override
+            public String getParameterType() {
+                return parameterType;
+            }
+
+            @Override
+            public Map<String, Object> resolve(Collection<String> values) {
+                Map<String, Object> resolved = new HashMap<>();
+                for (String value : values) {
+                    Object fact = resolver.apply(value);
+                    if (fact != null) {
+                        resolved.put(value, fact);
+                    }
+                }
+                return resolved;
+            }
+        };
+    }
+}
@@ -0,0 +1,192 @@
+package org.openmrs.module.drools.param;
+
+import org.openmrs.Drug;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.api.db.DroolsFactDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.openmrs.module.drools.param.DroolsParameterType.*;
+
+/**
+ * The resolvers of all parameter types, the built-in ones and those registered by modules as
+ * {@link DroolsParameterResolver} components.
+ * <p>
+ * The registry is built on first use and rebuilt on first use after the application context is refreshed, e.g. when
+ * a module is started, so that resolvers registered by modules started later are picked up. Facts of cacheable types
+ * are kept until {@link #clearCache()} is called, which {@link org.openmrs.module.drools.calculation.MetadataCache}
+ * does for the built-in types when their entities change.
+ */
+@Component
+public class DroolsParameterResolverRegistry implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(DroolsParameterResolverRegistry.class);
+
+    @Autowired
+    private DroolsFactDAO factDAO;
+
+    private volatile Resolvers resolvers;
+
+    private final Map<String, Map<String, Object>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @return the resolver of the built-in type
+     */
+    public DroolsParameterResolver getResolver(DroolsParameterType parameterType) {
+        return getResolvers().builtIn.get(parameterType);
+    }
+
+    /**
+     * @return the resolver of the type, or null if there is none
+     */
+    public DroolsParameterResolver getResolver(String parameterType) {
+        return getResolvers().byName.get(parameterType);
+    }
+
+    public boolean supports(String parameterType) {
+        return getResolver(parameterType) != null;
+    }
+
+    /**
+     * Resolves values of a type, serving cacheable types from the cache and resolving only the values it misses.
+     *
+     * @return the resolved facts keyed by value
+     * @throws IllegalArgumentException if there's no resolver for the type
+     */
+    public Map<String, Object> resolve(String parameterType, Collection<String> values) {
+        DroolsParameterResolver resolver = getResolver(parameterType);
+        if (resolver == null) {
+            throw new IllegalArgumentException("Unsupported parameter type: " + parameterType);
+        }
+        if (values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (!resolver.isCacheable()) {
+            return resolver.resolve(values);
+        }
+
+        Map<String, Object> cached = cache.computeIfAbsent(parameterType, type -> new ConcurrentHashMap<>());
+        Map<String, Object> resolved = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String value : values) {
+            Object fact = cached.get(value);
+            if (fact != null) {
+                resolved.put(value, fact);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Object> loaded = resolver.resolve(missing);
+            cached.putAll(loaded);
+            resolved.putAll(loaded);
+        }
+        return resolved;
+    }
+
+    /**
+     * Drops the cached facts of all types, or of one type.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    public void clearCache(String parameterType) {
+        cache.remove(parameterType);
+    }
+
+    /**
+     * Drops the resolvers and the cached facts, the resolvers are looked up again on next use.
+     */
+    public synchronized void refresh() {
+        resolvers = null;
+        cache.clear();
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        refresh();
+    }
+
+    private Resolvers getResolvers() {
+        Resolvers current = resolvers;
+        if (current == null) {
+            synchronized (this) {
+                current = resolvers;
+                if (current == null) {
+                    current = new Resolvers(createBuiltInResolvers(),
+                            Context.getRegisteredComponents(DroolsParameterResolver.class));
+                    resolvers = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Map<DroolsParameterType, DroolsParameterResolver> createBuiltInResolvers() {
+        Map<DroolsParameterType, DroolsParameterResolver> builtIn = new EnumMap<>(DroolsParameterType.class);
+        builtIn.put(PATIENT_UUID, new EntityParameterResolver(PATIENT_UUID.name(), Patient.class, false, factDAO,
+                "names"));
+        builtIn.put(ENCOUNTER_UUID, new EntityParameterResolver(ENCOUNTER_UUID.name(), Encounter.class, false, factDAO,
+                "encounterType", "location", "visit", "form"));
+        builtIn.put(OBS_UUID, new EntityParameterResolver(OBS_UUID.name(), Obs.class, false, factDAO,
+                "concept", "encounter", "valueCoded"));
+        builtIn.put(VISIT_UUID, new EntityParameterResolver(VISIT_UUID.name(), Visit.class, false, factDAO,
+                "visitType", "location"));
+        builtIn.put(FORM_UUID, new EntityParameterResolver(FORM_UUID.name(), Form.class, true, factDAO,
+                "encounterType"));
+        builtIn.put(DRUG_UUID, new EntityParameterResolver(DRUG_UUID.name(), Drug.class, true, factDAO,
+                "concept", "dosageForm"));
+        builtIn.put(ENCOUNTER_TYPE_UUID, new EntityParameterResolver(ENCOUNTER_TYPE_UUID.name(), EncounterType.class,
+                true, factDAO));
+        builtIn.put(LITERAL, DroolsParameterResolver.of(LITERAL.name(), Function.identity()));
+        return builtIn;
+    }
+
+    private static class Resolvers {
+
+        private final Map<DroolsParameterType, DroolsParameterResolver> builtIn;
+
+        private final Map<String, DroolsParameterResolver> byName;
+
+        Resolvers(Map<DroolsParameterType, DroolsParameterResolver> builtIn,
+                  Collection<DroolsParameterResolver> registered) {
+            Map<String, DroolsParameterResolver> byName = new HashMap<>();
+            builtIn.forEach((type, resolver) -> byName.put(type.name(), resolver));
+            for (DroolsParameterResolver resolver : registered) {
+                DroolsParameterResolver replaced = byName.put(resolver.getParameterType(), resolver);
+                if (replaced != null) {
+                    log.info("Parameter type {} is resolved by {}", resolver.getParameterType(),
+                            resolver.getClass().getName());
+                }
+                for (DroolsParameterType type : DroolsParameterType.values()) {
+                    if (type.name().equals(resolver.getParameterType())) {
+                        builtIn.put(type, resolver);
+                    }
+                }
+            }
+            this.builtIn = builtIn;
+            this.byName = Collections.unmodifiableMap(byName);
+        }
+    }
+}
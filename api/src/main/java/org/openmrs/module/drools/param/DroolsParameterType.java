@@ -1,5 +1,8 @@
 package org.openmrs.module.drools.param;
 
+/**
+ * The built-in parameter types. Modules can add their own types by registering a {@link DroolsParameterResolver}.
+ */
 public enum DroolsParameterType {
-    PATIENT_UUID,ENCOUNTER_UUID,OBS_UUID,VISIT_UUID,FORM_UUID,DRUG_UUID,LITERAL
+    PATIENT_UUID,ENCOUNTER_UUID,OBS_UUID,VISIT_UUID,FORM_UUID,DRUG_UUID,ENCOUNTER_TYPE_UUID,LITERAL
 }
@@ -0,0 +1,56 @@
+package org.openmrs.module.drools.param;
+
+import org.openmrs.OpenmrsObject;
+import org.openmrs.module.drools.api.db.DroolsFactDAO;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves uuids into entities of a type with one query, fetching the given associations along.
+ */
+public class EntityParameterResolver implements DroolsParameterResolver {
+
+    private final String parameterType;
+
+    private final Class<? extends OpenmrsObject> entityType;
+
+    private final boolean cacheable;
+
+    private final String[] fetchJoins;
+
+    private final DroolsFactDAO factDAO;
+
+    public EntityParameterResolver(String parameterType, Class<? extends OpenmrsObject> entityType, boolean cacheable,
+                                   DroolsFactDAO factDAO, String... fetchJoins) {
+        this.parameterType = parameterType;
+        this.entityType = entityType;
+        this.cacheable = cacheable;
+        this.factDAO = factDAO;
+        this.fetchJoins = fetchJoins;
+    }
+
+    @Override
+    public String getParameterType() {
+        return parameterType;
+    }
+
+    @Override
+    public Map<String, Object> resolve(Collection<String> values) {
+        Map<String, Object> entities = new HashMap<>();
+        for (OpenmrsObject entity : factDAO.getByUuids(entityType, values, fetchJoins)) {
+            entities.put(entity.getUuid(), entity);
+        }
+        return entities;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public Class<? extends OpenmrsObject> getEntityType() {
+        return entityType;
+    }
+}
@@ -0,0 +1,123 @@
+package org.openmrs.module.drools.result;
+
+import org.openmrs.BaseOpenmrsObject;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Date;
+
+/**
+ * A result of evaluating a session for a patient, kept so it can be read without firing the rules again.
+ */
+@Entity
+@Table(name = "drools_result")
+public class DroolsResult extends BaseOpenmrsObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "patient_id", nullable = false)
+    private Integer patientId;
+
+    /**
+     * The class name of the result.
+     */
+    @Column(name = "result_type", nullable = false)
+    private String resultType;
+
+    /**
+     * The result as JSON, with OpenMRS objects written as their uuid.
+     */
+    @Column(name = "payload", nullable = false, columnDefinition = "text")
+    private String payload;
+
+    /**
+     * The version of the rules the result was computed with, see
+     * {@link org.openmrs.module.drools.api.DroolsEngineService#getRulesetVersion()}.
+     */
+    @Column(name = "ruleset_version")
+    private String rulesetVersion;
+
+    @Column(name = "computed_at", nullable = false)
+    private Date computedAt;
+
+    public DroolsResult() {
+    }
+
+    public DroolsResult(String sessionId, Integer patientId, String resultType, String payload, String rulesetVersion,
+            Date computedAt) {
+        this.sessionId = sessionId;
+        this.patientId = patientId;
+        this.resultType = resultType;
+        this.payload = payload;
+        this.rulesetVersion = rulesetVersion;
+        this.computedAt = computedAt;
+    }
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getResultType() {
+        return resultType;
+    }
+
+    public void setResultType(String resultType) {
+        this.resultType = resultType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getRulesetVersion() {
+        return rulesetVersion;
+    }
+
+    public void setRulesetVersion(String rulesetVersion) {
+        this.rulesetVersion = rulesetVersion;
+    }
+
+    public Date getComputedAt() {
+        return computedAt;
+    }
+
+    public void setComputedAt(Date computedAt) {
+        this.computedAt = computedAt;
+    }
+}
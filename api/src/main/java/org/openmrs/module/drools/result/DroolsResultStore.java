@@ -0,0 +1,25 @@
+package org.openmrs.module.drools.result;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the latest results of evaluating a session for a patient, so they can be read without firing the rules.
+ */
+public interface DroolsResultStore {
+
+    /**
+     * Replaces the stored results of a session for a patient.
+     *
+     * @param sessionId  the id of the evaluated session
+     * @param patientId  the id of the patient the session was evaluated for
+     * @param results    the results of the evaluation, possibly empty
+     * @param computedAt when the results were computed
+     */
+    void putResults(String sessionId, Integer patientId, List<Object> results, Date computedAt);
+
+    /**
+     * @return the stored results of a session for a patient, empty or null if there are none
+     */
+    List<Object> getResults(String sessionId, Integer patientId);
+}
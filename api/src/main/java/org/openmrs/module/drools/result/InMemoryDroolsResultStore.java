@@ -0,0 +1,26 @@
+package org.openmrs.module.drools.result;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A result store that keeps results in memory. Results are lost when the module stops.
+ */
+public class InMemoryDroolsResultStore implements DroolsResultStore {
+
+    private final Map<String, Map<Integer, List<Object>>> results = new ConcurrentHashMap<>();
+
+    @Override
+    public void putResults(String sessionId, Integer patientId, List<Object> sessionResults, Date computedAt) {
+        results.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(patientId, new ArrayList<>(sessionResults));
+    }
+
+    @Override
+    public List<Object> getResults(String sessionId, Integer patientId) {
+        Map<Integer, List<Object>> sessionResults = results.get(sessionId);
+        return sessionResults == null ? null : sessionResults.get(patientId);
+    }
+}
@@ -0,0 +1,52 @@
+package org.openmrs.module.drools.result;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.DroolsResultService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A result store backed by the drools_result table. Results read back are maps of their properties, see
+ * {@link ResultPayloadSerializer}.
+ */
+public class PersistentDroolsResultStore implements DroolsResultStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistentDroolsResultStore.class);
+
+    @Override
+    public void putResults(String sessionId, Integer patientId, List<Object> results, Date computedAt) {
+        String rulesetVersion = Context.getService(DroolsEngineService.class).getRulesetVersion();
+        List<DroolsResult> rows = new ArrayList<>(results.size());
+        for (Object result : results) {
+            try {
+                rows.add(new DroolsResult(sessionId, patientId, result.getClass().getName(),
+                        ResultPayloadSerializer.toJson(result), rulesetVersion, computedAt));
+            } catch (IOException e) {
+                log.error("Can't serialize result {} of session {}, it won't be stored", result, sessionId, e);
+            }
+        }
+        Context.getService(DroolsResultService.class).replaceResults(sessionId, patientId, rows);
+    }
+
+    @Override
+    public List<Object> getResults(String sessionId, Integer patientId) {
+        List<DroolsResult> rows = Context.getService(DroolsResultService.class)
+                .getResults(sessionId, Collections.singletonList(patientId), null);
+        List<Object> results = new ArrayList<>(rows.size());
+        for (DroolsResult row : rows) {
+            try {
+                results.add(ResultPayloadSerializer.fromJson(row.getPayload()));
+            } catch (IOException e) {
+                log.error("Can't read stored result {} of session {}", row.getId(), sessionId, e);
+            }
+        }
+        return results;
+    }
+}
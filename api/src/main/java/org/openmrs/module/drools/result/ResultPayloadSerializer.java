@@ -0,0 +1,49 @@
+package org.openmrs.module.drools.result;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openmrs.OpenmrsObject;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes results as JSON for the result table. OpenMRS objects are written as their uuid, so payloads don't pull in
+ * object graphs and stay valid as the referenced objects change.
+ */
+public class ResultPayloadSerializer {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new SimpleModule().addSerializer(OpenmrsObject.class, new JsonSerializer<OpenmrsObject>() {
+
+                @Override
+                public void serialize(OpenmrsObject value, JsonGenerator generator, SerializerProvider provider)
+                        throws IOException {
+                    generator.writeString(value.getUuid());
+                }
+            }))
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+
+    private ResultPayloadSerializer() {
+    }
+
+    public static String toJson(Object result) throws IOException {
+        return objectMapper.writeValueAsString(result);
+    }
+
+    /**
+     * Reads a payload back as a map of properties. Results aren't turned back into their class since the objects they
+     * referenced are only kept as uuids.
+     */
+    public static Object fromJson(String payload) throws IOException {
+        if (payload.startsWith("{")) {
+            return objectMapper.readValue(payload, new TypeReference<Map<String, Object>>() {});
+        }
+        return objectMapper.readValue(payload, Object.class);
+    }
+}
@@ -0,0 +1,196 @@
+package org.openmrs.module.drools.session;
+
+import org.kie.api.runtime.KieSession;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Serializes all access to a long-lived session on a single engine thread.
+ * <p>
+ * A {@link KieSession} must not be inserted into and fired from several threads at once. Producers such as system
+ * event listeners and REST callers submit tasks, which are queued without blocking and run one at a time, in order,
+ * in a daemon context.
+ */
+public class DroolsSessionActor {
+
+    private static final Logger log = LoggerFactory.getLogger(DroolsSessionActor.class);
+
+    private static final Task<Void> STOP = new Task<>(null);
+
+    private final String sessionId;
+
+    private final KieSession session;
+
+    private final DaemonToken daemonToken;
+
+    private final BlockingQueue<Task<?>> tasks = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+
+    private volatile boolean stopping;
+
+    private Thread engineThread;
+
+    public DroolsSessionActor(String sessionId, KieSession session, DaemonToken daemonToken) {
+        this.sessionId = sessionId;
+        this.session = session;
+        this.daemonToken = daemonToken;
+    }
+
+    /**
+     * Starts the engine thread. An actor can't be restarted once stopped.
+     */
+    public synchronized void start() {
+        if (!running && !stopping) {
+            running = true;
+            engineThread = Daemon.runInDaemonThread(this::runTasks, daemonToken);
+        }
+    }
+
+    /**
+     * Queues a task to run against the session on the engine thread.
+     *
+     * @return a future completed with the task's result, or exceptionally with its failure or with a
+     *         {@link DroolsSessionException} if the actor isn't running or is stopping
+     */
+    public synchronized <T> CompletableFuture<T> submit(Function<KieSession, T> task) {
+        Task<T> queued = new Task<>(task);
+        if (!running || stopping) {
+            queued.fail(new DroolsSessionException("Session " + sessionId + " is not running"));
+        } else {
+            tasks.add(queued);
+        }
+        return queued.future;
+    }
+
+    /**
+     * Queues a fact to be inserted into the session without firing the rules.
+     */
+    public CompletableFuture<Void> insert(Object fact) {
+        return submit(kieSession -> {
+            kieSession.insert(fact);
+            return null;
+        });
+    }
+
+    /**
+     * Queues firing the rules of the session.
+     *
+     * @return a future completed with the number of rules fired
+     */
+    public CompletableFuture<Integer> fireAllRules() {
+        return submit(KieSession::fireAllRules);
+    }
+
+    /**
+     * Stops accepting tasks, then stops the engine thread once the tasks already queued have run and disposes of the
+     * session.
+     */
+    public synchronized void stop() {
+        if (!running || stopping) {
+            return;
+        }
+        stopping = true;
+        tasks.add(STOP);
+    }
+
+    private void runTasks() {
+        log.debug("Engine thread of session {} started", sessionId);
+        try {
+            while (true) {
+                Task<?> task = tasks.take();
+                if (task == STOP) {
+                    break;
+                }
+                try {
+                    task.run(session);
+                } finally {
+                    // facts are only referenced by the session, don't let the Hibernate session grow with them
+                    Context.clearSession();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Engine thread of session {} interrupted", sessionId);
+        } finally {
+            synchronized (this) {
+                stopping = true;
+                running = false;
+            }
+            try {
+                session.dispose();
+                log.debug("Session {} disposed", sessionId);
+            } catch (Exception e) {
+                log.error("Error disposing of session {}", sessionId, e);
+            }
+            // no task can be queued anymore, fail the ones that were left behind so their callers don't wait forever
+            List<Task<?>> leftBehind = new ArrayList<>();
+            tasks.drainTo(leftBehind);
+            for (Task<?> task : leftBehind) {
+                if (task != STOP) {
+                    task.fail(new DroolsSessionException("Session " + sessionId + " stopped before the task ran"));
+                }
+            }
+        }
+        log.debug("Engine thread of session {} stopped", sessionId);
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public int getPendingTasks() {
+        return tasks.size();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return whether the actor stopped accepting tasks
+     */
+    public boolean isStopping() {
+        return stopping;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public KieSession getSession() {
+        return session;
+    }
+
+    private static class Task<T> {
+
+        private final Function<KieSession, T> function;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(Function<KieSession, T> function) {
+            this.function = function;
+        }
+
+        void run(KieSession session) {
+            try {
+                future.complete(function.apply(session));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        void fail(Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package org.openmrs.module.drools.session;
 
+import org.kie.api.conf.EventProcessingOption;
 import org.kie.api.event.rule.RuleRuntimeEventListener;
+import org.kie.api.runtime.conf.ClockTypeOption;
 import org.kie.api.runtime.rule.AgendaFilter;
 import org.openmrs.module.drools.event.DroolsSystemEventListener;
+import org.openmrs.module.drools.fact.FactInsertionMode;
 import org.openmrs.module.drools.param.DroolsParameterDefinition;
 
 import java.util.*;
@@ -43,6 +46,46 @@ public class DroolsSessionConfig {
 
 	private List<DroolsSystemEventListener> systemEventListeners;
 
+	/**
+	 * Sample parameter sets, in the same form as the REST parameters, used to evaluate this session while the engine
+	 * warms up on module start. Sessions without any aren't evaluated during the warm-up. These should only reference
+	 * data that is safe to evaluate rules against.
+	 */
+	private List<Map<String, String>> warmUpParameters = new ArrayList<>();
+
+	/**
+	 * The event processing mode of the KieBase this session is created from. Long-running sessions that receive
+	 * events should use {@link EventProcessingOption#STREAM} so that declared events expire and temporal operators
+	 * and sliding windows can be used.
+	 */
+	private EventProcessingOption eventProcessingMode = EventProcessingOption.CLOUD;
+
+	/**
+	 * The session clock, only meaningful in stream mode. The pseudo clock only moves when advanced explicitly,
+	 * which is useful for tests and replays.
+	 */
+	private ClockTypeOption clockType = ClockTypeOption.get("realtime");
+
+	/**
+	 * Fact types to declare as events, keyed by fully qualified class name, mapped to how long they are kept in
+	 * stream mode sessions, e.g. "30d" or "1h30m". A blank duration declares the type as an event without
+	 * expiration. Declarations apply to the whole KieBase.
+	 */
+	private Map<String, String> eventExpirations = new HashMap<>();
+
+	/**
+	 * Simple names of the types of patient data, among Obs, Encounter, Condition and PatientProgram, whose changes
+	 * trigger a background re-evaluation of this session for the patient. The session is evaluated with the patient
+	 * as its only fact and its results are kept in the result store.
+	 */
+	private Set<String> reevaluationTriggers = new HashSet<>();
+
+	/**
+	 * Whether patients, encounters, obs and visits are inserted as Hibernate entities or as the lightweight facts of
+	 * {@link org.openmrs.module.drools.fact.FactProjector}. Rules have to be written against the inserted types.
+	 */
+	private FactInsertionMode factInsertionMode = FactInsertionMode.ENTITY;
+
 	public DroolsSessionConfig() {
 		this.sessionRuntimeEventListeners = new ArrayList<>();
 		this.globals = new HashMap<>();
@@ -150,4 +193,56 @@ public class DroolsSessionConfig {
 	public void setReturnObjectsTypeClassName(String returnObjectsTypeClassName) {
 		this.returnObjectsTypeClassName = returnObjectsTypeClassName;
 	}
+
+	public List<Map<String, String>> getWarmUpParameters() {
+		return warmUpParameters;
+	}
+
+	public void setWarmUpParameters(List<Map<String, String>> warmUpParameters) {
+		this.warmUpParameters = warmUpParameters;
+	}
+
+	public EventProcessingOption getEventProcessingMode() {
+		return eventProcessingMode;
+	}
+
+	public void setEventProcessingMode(EventProcessingOption eventProcessingMode) {
+		this.eventProcessingMode = eventProcessingMode;
+	}
+
+	public ClockTypeOption getClockType() {
+		return clockType;
+	}
+
+	public void setClockType(ClockTypeOption clockType) {
+		this.clockType = clockType;
+	}
+
+	public Map<String, String> getEventExpirations() {
+		return eventExpirations;
+	}
+
+	public void setEventExpirations(Map<String, String> eventExpirations) {
+		this.eventExpirations = eventExpirations;
+	}
+
+	public Set<String> getReevaluationTriggers() {
+		return reevaluationTriggers;
+	}
+
+	public void setReevaluationTriggers(Set<String> reevaluationTriggers) {
+		this.reevaluationTriggers = reevaluationTriggers;
+	}
+
+	public FactInsertionMode getFactInsertionMode() {
+		return factInsertionMode;
+	}
+
+	public void setFactInsertionMode(FactInsertionMode factInsertionMode) {
+		this.factInsertionMode = factInsertionMode;
+	}
+
+	public boolean isStreamMode() {
+		return EventProcessingOption.STREAM.equals(eventProcessingMode);
+	}
 }
@@ -0,0 +1,122 @@
+package org.openmrs.module.drools.session;
+
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Keeps track of the facts of a given type as they are inserted into, updated in and deleted from a session, so that
+ * results can be read in time proportional to the number of results rather than the size of the working memory.
+ * <p>
+ * Only facts inserted after the collector is attached are seen, so it should be attached right after the session is
+ * created.
+ *
+ * @param <T> the type of facts to collect
+ */
+public class ResultCollector<T> implements RuleRuntimeEventListener {
+
+    private final Class<T> type;
+
+    private final Map<FactHandle, T> results = new LinkedHashMap<>();
+
+    public ResultCollector(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Creates a collector for the given type and registers it with the session.
+     */
+    public static <T> ResultCollector<T> attach(KieSession session, Class<T> type) {
+        ResultCollector<T> collector = new ResultCollector<>(type);
+        session.addEventListener(collector);
+        return collector;
+    }
+
+    /**
+     * Finds a collector registered with the session that collects the given type, or one of its supertypes.
+     *
+     * @return the collector, or null if the session has none for the type
+     */
+    public static ResultCollector<?> find(KieSession session, Class<?> type) {
+        for (RuleRuntimeEventListener listener : session.getRuleRuntimeEventListeners()) {
+            if (listener instanceof ResultCollector && ((ResultCollector<?>) listener).getType().isAssignableFrom(type)) {
+                return (ResultCollector<?>) listener;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void objectInserted(ObjectInsertedEvent event) {
+        Object object = event.getObject();
+        if (type.isInstance(object)) {
+            results.put(event.getFactHandle(), type.cast(object));
+        }
+    }
+
+    @Override
+    public synchronized void objectUpdated(ObjectUpdatedEvent event) {
+        Object object = event.getObject();
+        if (type.isInstance(object)) {
+            results.put(event.getFactHandle(), type.cast(object));
+        } else {
+            results.remove(event.getFactHandle());
+        }
+    }
+
+    @Override
+    public synchronized void objectDeleted(ObjectDeletedEvent event) {
+        results.remove(event.getFactHandle());
+    }
+
+    /**
+     * @return the collected facts, in insertion order
+     */
+    public synchronized List<T> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Returns the collected facts and forgets them, so facts collected afterwards can be told apart and results
+     * survive the retraction of the facts they were logically inserted for.
+     *
+     * @return the collected facts, in insertion order
+     */
+    public synchronized List<T> drain() {
+        List<T> drained = new ArrayList<>(results.values());
+        results.clear();
+        return drained;
+    }
+
+    /**
+     * Returns the collected facts that are instances of {@code subtype} and satisfy the predicate.
+     *
+     * @param subtype   the type to return, the collected type or one of its subtypes
+     * @param predicate the predicate the returned facts must satisfy, or null to return all of them
+     */
+    public synchronized <S> List<S> getResults(Class<S> subtype, Predicate<S> predicate) {
+        List<S> filtered = new ArrayList<>();
+        for (T result : results.values()) {
+            if (subtype.isInstance(result)) {
+                S candidate = subtype.cast(result);
+                if (predicate == null || predicate.test(candidate)) {
+                    filtered.add(candidate);
+                }
+            }
+        }
+        return filtered;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+}
@@ -0,0 +1,90 @@
+package org.openmrs.module.drools.session;
+
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Global;
+import org.kie.api.runtime.KieSession;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The globals to set on new sessions of one session config, flattened ahead of time so creating a session doesn't
+ * have to merge the bindings of every registered session.
+ * <p>
+ * Instances are only valid for the KieBase they were computed against and must be recomputed when the container is
+ * rebuilt or when session configs are registered.
+ */
+public class SessionGlobals {
+
+    public static final String EVALUATOR_MANAGER_GLOBAL = "evaluatorManager";
+
+    private final String[] names;
+
+    private final Object[] values;
+
+    private SessionGlobals(String[] names, Object[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Flattens the globals for a session. The globals of other sessions are applied first, then the session's own,
+     * then the evaluator manager, so later bindings win just like they did when they were set one map at a time.
+     * Globals the KieBase doesn't declare are dropped.
+     *
+     * @param sessionId        the id of the session to compute globals for
+     * @param globalBindings   the globals of every registered session, keyed by session id
+     * @param evaluatorManager the external evaluator manager
+     * @param kieBase          the KieBase sessions are created from
+     */
+    public static SessionGlobals flatten(String sessionId, Map<String, Map<String, Object>> globalBindings,
+            ExternalEvaluatorManager evaluatorManager, KieBase kieBase) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        globalBindings.forEach((otherSessionId, globals) -> {
+            if (!otherSessionId.equals(sessionId) && globals != null) {
+                merged.putAll(globals);
+            }
+        });
+        Map<String, Object> ownGlobals = globalBindings.get(sessionId);
+        if (ownGlobals != null) {
+            merged.putAll(ownGlobals);
+        }
+        merged.put(EVALUATOR_MANAGER_GLOBAL, evaluatorManager);
+
+        Set<String> declared = getDeclaredGlobals(kieBase);
+        merged.keySet().retainAll(declared);
+
+        String[] names = new String[merged.size()];
+        Object[] values = new Object[merged.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : merged.entrySet()) {
+            names[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        return new SessionGlobals(names, values);
+    }
+
+    private static Set<String> getDeclaredGlobals(KieBase kieBase) {
+        Set<String> declared = new HashSet<>();
+        for (KiePackage kiePackage : kieBase.getKiePackages()) {
+            for (Global global : kiePackage.getGlobalVariables()) {
+                declared.add(global.getName());
+            }
+        }
+        return declared;
+    }
+
+    public void applyTo(KieSession session) {
+        for (int i = 0; i < names.length; i++) {
+            session.setGlobal(names[i], values[i]);
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
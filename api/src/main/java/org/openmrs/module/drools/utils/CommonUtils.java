@@ -2,18 +2,23 @@ package org.openmrs.module.drools.utils;
 
 import org.drools.decisiontable.InputType;
 import org.drools.decisiontable.SpreadsheetCompiler;
+import org.kie.api.KieBase;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
 import org.openmrs.Concept;
 import org.openmrs.ConceptMap;
 import org.openmrs.ConceptMapType;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.drools.session.ExternalEvaluatorManager;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.module.drools.session.SessionGlobals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -45,7 +50,35 @@ public class CommonUtils {
         } else {
             log.debug("RuleSessionConfig is null; no globals or listeners set");
         }
-        session.setGlobal("evaluatorManager", evaluatorManager);
+        session.setGlobal(SessionGlobals.EVALUATOR_MANAGER_GLOBAL, evaluatorManager);
+        return session;
+    }
+
+    /**
+     * Creates a session and sets globals that were flattened ahead of time with
+     * {@link SessionGlobals#flatten(String, Map, ExternalEvaluatorManager, org.kie.api.KieBase)}.
+     */
+    public static KieSession createKieSession(KieContainer container, DroolsSessionConfig config, SessionGlobals globals) {
+        log.debug("Creating new KieSession");
+        KieSession session = container.newKieSession();
+        globals.applyTo(session);
+        if (config != null && config.getSessionRuntimeEventListeners() != null) {
+            config.getSessionRuntimeEventListeners().forEach(session::addEventListener);
+        }
+        return session;
+    }
+
+    /**
+     * Creates a session from a KieBase other than the container's default one, such as a stream mode KieBase.
+     */
+    public static KieSession createKieSession(KieBase kieBase, KieSessionConfiguration sessionConfiguration,
+            DroolsSessionConfig config, SessionGlobals globals) {
+        log.debug("Creating new KieSession");
+        KieSession session = kieBase.newKieSession(sessionConfiguration, null);
+        globals.applyTo(session);
+        if (config != null && config.getSessionRuntimeEventListeners() != null) {
+            config.getSessionRuntimeEventListeners().forEach(session::addEventListener);
+        }
         return session;
     }
 
@@ -93,6 +126,32 @@ public class CommonUtils {
 
     }
 
+    /**
+     * Computes the hex encoded SHA-256 digest of a stream. The stream is read to the end but not closed.
+     *
+     * @param in the stream to digest
+     * @return the lowercase hex digest
+     * @throws IOException If the stream can't be read
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
     /**
      * Gets a concept by its SAME-AS mapping to an external source.
      * Unlike ConceptService.getConceptByMapping(), this method only considers
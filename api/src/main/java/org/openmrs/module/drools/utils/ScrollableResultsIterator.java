@@ -0,0 +1,59 @@
+package org.openmrs.module.drools.utils;
+
+import org.hibernate.ScrollableResults;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Adapts a Hibernate {@link ScrollableResults} cursor to an {@link Iterator} over the first column of each row, so
+ * query results can be fed to {@link org.openmrs.module.drools.api.DroolsEngineService} without loading them all.
+ * The cursor is closed once it is exhausted or when {@link #close()} is called.
+ */
+public class ScrollableResultsIterator implements Iterator<Object>, Closeable {
+
+    private final ScrollableResults results;
+
+    private Object next;
+
+    private boolean fetched;
+
+    private boolean closed;
+
+    public ScrollableResultsIterator(ScrollableResults results) {
+        this.results = results;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!fetched && !closed) {
+            if (results.next()) {
+                next = results.get(0);
+                fetched = true;
+            } else {
+                close();
+            }
+        }
+        return fetched;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        Object current = next;
+        next = null;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            results.close();
+        }
+    }
+}
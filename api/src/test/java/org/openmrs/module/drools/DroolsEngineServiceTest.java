@@ -20,16 +20,26 @@ import org.openmrs.api.ObsService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.RuleProvider;
+import org.openmrs.module.drools.session.DroolsExecutionResult;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.module.drools.session.DroolsSessionException;
+import org.openmrs.module.drools.session.ExternalEvaluator;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
 
 @SuppressWarnings("deprecation")
 public class DroolsEngineServiceTest extends BaseModuleContextSensitiveTest {
@@ -79,6 +89,45 @@ public class DroolsEngineServiceTest extends BaseModuleContextSensitiveTest {
 
 	}
 
+	@Test
+	public void evaluateInWindows_shouldCollectTheResultsOfEveryWindow() {
+		Patient ethan = patientService.getPatient(200);
+		Patient noah = patientService.getPatient(202);
+		obsService.saveObs(createObs(noah, 100, 85.0), null);
+		obsService.saveObs(createObs(noah, 101, 49.0), null);
+
+		DroolsExecutionResult result = droolsEngineService.evaluateInWindows("test1",
+				Arrays.asList(ethan, noah).iterator(), PatientFlag.class.getName(), 1);
+
+		assertThat(result.getResults(), containsInAnyOrder(new PatientFlag(ethan, "Hypertension", "High", null),
+				new PatientFlag(noah, "Hypotension", "Low", null)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void evaluateInWindows_shouldRejectWindowsSmallerThanOneFact() {
+		droolsEngineService.evaluateInWindows("test1", Collections.emptyIterator(), PatientFlag.class.getName(), 0);
+	}
+
+	@Test
+	public void registerRuleProvider_shouldRegisterNothingOfAProviderWhoseResultTypeDoesNotResolve() {
+		droolsEngineService.getKieContainer();
+		DroolsSessionConfig config = new DroolsSessionConfig();
+		config.setSessionId("unresolvable");
+		config.setReturnObjectsTypeClassName("org.openmrs.module.drools.NoSuchResult");
+
+		try {
+			droolsEngineService.registerRuleProvider(new TestRuleProvider(config));
+			fail("A result type that doesn't resolve should be rejected");
+		} catch (DroolsSessionException e) {
+			assertThat(droolsEngineService.getSessionConfig("unresolvable"), nullValue());
+		}
+
+		// once fixed, the provider registers as if it had never been rejected
+		config.setReturnObjectsTypeClassName(PatientFlag.class.getName());
+		droolsEngineService.registerRuleProvider(new TestRuleProvider(config));
+		assertThat(droolsEngineService.getSessionConfig("unresolvable"), is(config));
+	}
+
 	private Obs createObs(Patient patient, Integer conceptId, Double value) {
 		Obs obs = new Obs();
 		obs.setPerson(patient);
@@ -89,4 +138,33 @@ public class DroolsEngineServiceTest extends BaseModuleContextSensitiveTest {
 		return obs;
 	}
 
+	private static class TestRuleProvider implements RuleProvider {
+
+		private final List<DroolsSessionConfig> sessionConfigs;
+
+		TestRuleProvider(DroolsSessionConfig... sessionConfigs) {
+			this.sessionConfigs = Arrays.asList(sessionConfigs);
+		}
+
+		@Override
+		public Boolean isEnabled() {
+			return true;
+		}
+
+		@Override
+		public List<RuleResource> getRuleResources() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public List<DroolsSessionConfig> getSessionConfigs() {
+			return sessionConfigs;
+		}
+
+		@Override
+		public Map<String, ExternalEvaluator> getExternalEvaluators() {
+			return null;
+		}
+	}
+
 }
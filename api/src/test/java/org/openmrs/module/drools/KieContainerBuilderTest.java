@@ -0,0 +1,60 @@
+package org.openmrs.module.drools;
+
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.KieBaseConfiguration;
+import org.kie.api.KieServices;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.time.SessionPseudoClock;
+import org.openmrs.Obs;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class KieContainerBuilderTest {
+
+    private static final String OBS_EVENTS = "org/openmrs/module/drools/testdata/obs_events.drl";
+
+    @Test
+    public void addEventDeclaration_shouldExpireEventsOfStreamModeSessions() {
+        KieServices kieServices = KieServices.Factory.get();
+        KieContainerBuilder builder = new KieContainerBuilder(kieServices, kieServices.newKieFileSystem());
+        builder.addResource(new RuleResource("Obs events", OBS_EVENTS, ResourceType.DRL));
+        builder.addEventDeclaration(Obs.class.getName(), "1h");
+
+        KieBaseConfiguration kieBaseConfiguration = kieServices.newKieBaseConfiguration();
+        kieBaseConfiguration.setOption(EventProcessingOption.STREAM);
+        KieBase kieBase = builder.build().newKieBase(kieBaseConfiguration);
+        KieSessionConfiguration sessionConfiguration = kieServices.newKieSessionConfiguration();
+        sessionConfiguration.setOption(ClockTypeOption.PSEUDO);
+        KieSession session = kieBase.newKieSession(sessionConfiguration, null);
+        try {
+            session.insert(new Obs());
+            assertEquals(1, session.fireAllRules());
+            assertEquals(1, session.getFactCount());
+
+            SessionPseudoClock clock = session.getSessionClock();
+            clock.advanceTime(59, TimeUnit.MINUTES);
+            session.fireAllRules();
+            assertEquals(1, session.getFactCount());
+
+            clock.advanceTime(2, TimeUnit.MINUTES);
+            session.fireAllRules();
+            assertEquals(0, session.getFactCount());
+        } finally {
+            session.dispose();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addEventDeclaration_shouldRejectInvalidDurations() {
+        KieServices kieServices = KieServices.Factory.get();
+        new KieContainerBuilder(kieServices, kieServices.newKieFileSystem()).addEventDeclaration(Obs.class.getName(),
+                "1 hour");
+    }
+}
@@ -0,0 +1,35 @@
+package org.openmrs.module.drools;
+
+import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
+import org.openmrs.module.Module;
+import org.openmrs.module.ModuleFactory;
+
+/**
+ * Hands tests a daemon token the way the module's activator is handed one on startup.
+ */
+public class TestDaemonTokens {
+
+    private TestDaemonTokens() {
+    }
+
+    public static DaemonToken get() {
+        TokenAwareActivator activator = new TokenAwareActivator();
+        Module module = new Module("Drools");
+        module.setModuleId("drools");
+        module.setModuleActivator(activator);
+        ModuleFactory.passDaemonToken(module);
+        return activator.token;
+    }
+
+    private static class TokenAwareActivator extends BaseModuleActivator implements DaemonTokenAware {
+
+        private DaemonToken token;
+
+        @Override
+        public void setDaemonToken(DaemonToken token) {
+            this.token = token;
+        }
+    }
+}
@@ -2,23 +2,35 @@ package org.openmrs.module.drools.calculation;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.EncounterType;
 import org.openmrs.Patient;
 import org.openmrs.api.ConceptService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.fact.PatientFact;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
 
 import static org.junit.Assert.*;
 import static org.openmrs.module.drools.utils.DroolsDateUtils.weeksAgo;
 
 public class DroolsCalculationServiceTest extends BaseModuleContextSensitiveTest {
+    private static final String ENCOUNTER_TYPE_UUID = "61ae96f4-6afe-4351-b6f8-cd4fc383cce1";
+
+    private static final String PROGRAM_UUID = "da4a0391-ba62-4fad-ad66-1e3722d16380";
+
     private static final String TEST_OBS_XML = "org/openmrs/module/drools/testdata/DroolsCalculationServiceTest-dataset.xml";
 
     @Autowired
     private DroolsCalculationService calculationService;
 
+    @Autowired
+    private MetadataCache metadataCache;
+
     private Patient patient;
     private String conceptRef;
     private Date jan1, jan2, dec31, sept22;
@@ -89,6 +101,100 @@ public class DroolsCalculationServiceTest extends BaseModuleContextSensitiveTest
         assertTrue(result.matches(Operator.EQUALS, 7.0));
     }
 
+    @Test
+    public void getObsTimeSeries_shouldLoadNumericObsInChronologicalOrder() {
+        ObsTimeSeries series = calculationService.getObsTimeSeries(patient, conceptRef, null, null);
+        assertEquals(4, series.size());
+        assertEquals(4.0, series.getValue(0), 0);
+        assertEquals(7.0, series.getLatestValue(), 0);
+        assertTrue(series.isRising(3));
+        assertFalse(series.isRising(4));
+
+        assertEquals(2, series.count(jan1, null));
+        assertEquals(6.0, series.average(jan1, null), 0);
+        assertEquals(3.0, series.min(null, jan2), 0);
+        assertEquals(7.0, series.max(dec31, null), 0);
+        assertTrue(series.slope(dec31, null) > 0);
+        assertTrue(Double.isNaN(series.average(jan2, dec31)));
+    }
+
+    @Test
+    public void getEncounterType_shouldResolveAndCacheEncounterTypesByUuidOrName() {
+        metadataCache.preload();
+        EncounterType byUuid = metadataCache.getEncounterType("61ae96f4-6afe-4351-b6f8-cd4fc383cce1");
+        assertEquals(Integer.valueOf(1), byUuid.getEncounterTypeId());
+        assertSame(byUuid, metadataCache.getEncounterType("Scheduled"));
+        assertNull(metadataCache.getEncounterType("unknown"));
+
+        metadataCache.clear();
+        assertEquals(byUuid, metadataCache.getEncounterType("Scheduled"));
+    }
+
+    @Test
+    public void hasEncounter_shouldIgnoreVoidedEncountersAndEncountersOutsideTheDates() {
+        assertTrue(calculationService.hasEncounterRecord(patient, ENCOUNTER_TYPE_UUID));
+        assertTrue(calculationService.hasEncounter(patient, ENCOUNTER_TYPE_UUID, dec31, jan1));
+        assertFalse(calculationService.hasEncounter(patient, ENCOUNTER_TYPE_UUID, null, dec31));
+
+        BitSet withEncounter = calculationService.getPatientsWithEncounter(Arrays.asList(1, 9999),
+                ENCOUNTER_TYPE_UUID, null, null);
+        assertTrue(withEncounter.get(1));
+        assertEquals(1, withEncounter.cardinality());
+    }
+
+    @Test
+    public void isInProgram_shouldCheckForAnActiveEnrollment() {
+        assertTrue(calculationService.isInProgram(patient, PROGRAM_UUID));
+
+        BitSet enrolled = calculationService.getPatientsInProgram(Arrays.asList(1, 9999), PROGRAM_UUID);
+        assertTrue(enrolled.get(1));
+        assertEquals(1, enrolled.cardinality());
+    }
+
+    @Test
+    public void isInProgramState_shouldIgnoreStatesOfVoidedEnrollments() {
+        assertTrue(calculationService.isInProgramState(patient, "1002"));
+        // the state itself isn't voided, its enrollment is
+        assertFalse(calculationService.isInProgramState(patient, "1003"));
+
+        assertEquals(1, calculationService.getPatientsInProgramState(Arrays.asList(1, 9999), "1002").cardinality());
+        assertTrue(calculationService.getPatientsInProgramState(Arrays.asList(1, 9999), "1003").isEmpty());
+    }
+
+    @Test
+    public void hasActiveConditionCoded_shouldMemoizeTheAnswerWithinAnEvaluation() {
+        try (EvaluationScope scope = EvaluationScope.open()) {
+            BitSet withCondition = calculationService.getPatientsWithActiveConditionCoded(Arrays.asList(1, 9999),
+                    conceptRef);
+            assertTrue(withCondition.get(1));
+            assertEquals(1, withCondition.cardinality());
+
+            Context.getConditionService().voidCondition(Context.getConditionService().getCondition(2001), "test");
+            assertTrue(calculationService.hasActiveConditionCoded(patient, conceptRef));
+        }
+        assertFalse(calculationService.hasActiveConditionCoded(patient, conceptRef));
+    }
+
+    @Test
+    public void helpers_shouldAcceptThePatientIdOfProjectedFacts() {
+        Integer patientId = new PatientFact(patient).getPatientId();
+
+        assertTrue(calculationService.checkMostRecentObs(patientId, conceptRef, Operator.EQUALS, 7.0));
+        assertTrue(calculationService.checkObs(patientId, conceptRef, Operator.EQUALS, jan1)
+                .matches(Operator.EQUALS, 5.0));
+        assertEquals(4, calculationService.getObsTimeSeries(patientId, conceptRef, null, null).size());
+        assertTrue(calculationService.hasEncounterRecord(patientId, ENCOUNTER_TYPE_UUID));
+        assertTrue(calculationService.isInProgram(patientId, PROGRAM_UUID));
+        assertTrue(calculationService.hasActiveConditionCoded(patientId, conceptRef));
+    }
+
+    @Test
+    public void getObsTimeSeries_shouldRestrictTheSeriesToTheGivenDates() {
+        ObsTimeSeries series = calculationService.getObsTimeSeries(patient, conceptRef, dec31, jan1);
+        assertEquals(2, series.size());
+        assertEquals(5.0, series.getLatestValue(), 0);
+    }
+
     public void checkObs_shouldQueryObsCaptured2WeeksAgo() {
         calculationService.checkObs(patient, "CIEL:123", null, weeksAgo(2)).matches(Operator.EQUALS, 5);
     }
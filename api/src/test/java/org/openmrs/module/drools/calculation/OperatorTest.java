@@ -13,6 +13,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -264,6 +265,124 @@ public class OperatorTest {
         Assert.assertTrue(Operator.GTE.apply(laterDate, date1, date));
     }
 
+    // ==================== BETWEEN OPERATOR TESTS ====================
+
+    @Test
+    public void between_shouldSupportNumeric() {
+        Assert.assertTrue(Operator.BETWEEN.apply(5.0, List.of(5, 10), numeric));
+        Assert.assertTrue(Operator.BETWEEN.apply(7.5, List.of(5, 10), numeric));
+        Assert.assertTrue(Operator.BETWEEN.apply(10, new Object[] { 5.0, 10.0 }, numeric));
+        Assert.assertFalse(Operator.BETWEEN.apply(10.1, List.of(5, 10), numeric));
+        Assert.assertFalse(Operator.BETWEEN.apply(null, List.of(5, 10), numeric));
+    }
+
+    @Test
+    public void between_shouldSupportDate() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(2023, Calendar.JUNE, 15, 0, 0, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        Date inRange = cal.getTime();
+
+        cal.set(2024, Calendar.JANUARY, 1);
+        Date afterRange = cal.getTime();
+
+        Assert.assertTrue(Operator.BETWEEN.apply(inRange, "2023-01-01,2023-12-31", date));
+        Assert.assertFalse(Operator.BETWEEN.apply(afterRange, "2023-01-01,2023-12-31", date));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void between_shouldRequireTwoBounds() {
+        Operator.BETWEEN.compile(List.of(5), numeric);
+    }
+
+    // ==================== IN OPERATOR TESTS ====================
+
+    @Test
+    public void in_shouldSupportNumeric() {
+        CompiledOperator in = Operator.IN.compile(List.of(1, 2.5, 4), numeric);
+        Assert.assertTrue(in.test(1.0));
+        Assert.assertTrue(in.test(2.5));
+        Assert.assertTrue(in.test(4));
+        Assert.assertFalse(in.test(3.0));
+        Assert.assertFalse(in.test(null));
+        Assert.assertTrue(Operator.IN.apply(2.0, "1,2,3", numeric));
+    }
+
+    @Test
+    public void in_shouldSupportCoded() {
+        Concept c1 = createConcept("0308b8a7-a4a2-47e0-9cfc-a56a65e2b49c", n_a);
+        Concept c2 = createConcept("d98bb8d0-66f2-4aa7-870b-444527562f64", n_a);
+        Concept c3 = createConcept("5b2c8e0a-3f7e-4c8e-9a8a-1f0c4f5a6e21", n_a);
+        c3.setConceptId(3);
+        Concept sameAsC3 = createConcept("5b2c8e0a-3f7e-4c8e-9a8a-1f0c4f5a6e21", n_a);
+        sameAsC3.setConceptId(3);
+
+        CompiledOperator in = Operator.IN.compile(List.of(c1, c3), coded);
+        Assert.assertTrue(in.test(c1));
+        Assert.assertTrue(in.test(sameAsC3));
+        Assert.assertFalse(in.test(c2));
+    }
+
+    // ==================== COMPILED OPERATOR TESTS ====================
+
+    @Test
+    public void compile_shouldTestManyValuesAgainstTheSameOperand() {
+        CompiledOperator lessThan = Operator.LT.compile(10, numeric);
+        Assert.assertTrue(lessThan.test(5.0));
+        Assert.assertTrue(lessThan.test(9));
+        Assert.assertFalse(lessThan.test(10.0));
+        Assert.assertFalse(lessThan.test(12.5));
+        Assert.assertTrue(lessThan.test(null));
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1970, Calendar.JANUARY, 1, 9, 15, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        CompiledOperator atQuarterPastNine = Operator.EQUALS.compile("09:15", time);
+        Assert.assertTrue(atQuarterPastNine.test(cal.getTime()));
+        cal.set(2023, Calendar.MARCH, 3);
+        Assert.assertTrue(atQuarterPastNine.test(cal.getTime()));
+        cal.set(Calendar.MINUTE, 16);
+        Assert.assertFalse(atQuarterPastNine.test(cal.getTime()));
+    }
+
+    @Test
+    public void cached_shouldOnlyReuseOperatorsCompiledForLiterals() {
+        CompiledOperator.clearCache();
+        Assert.assertSame(CompiledOperator.cached(Operator.LT, 10, numeric),
+                CompiledOperator.cached(Operator.LT, 10, numeric));
+        Assert.assertSame(CompiledOperator.cached(Operator.IN, new Object[] { 1, 2 }, numeric),
+                CompiledOperator.cached(Operator.IN, new Object[] { 1, 2 }, numeric));
+
+        Date now = new Date();
+        Assert.assertNotSame(CompiledOperator.cached(Operator.LT, now, dateTime),
+                CompiledOperator.cached(Operator.LT, now, dateTime));
+
+        CompiledOperator beforeClearing = CompiledOperator.cached(Operator.LT, 10, numeric);
+        CompiledOperator.clearCache();
+        Assert.assertNotSame(beforeClearing, CompiledOperator.cached(Operator.LT, 10, numeric));
+    }
+
+    @Test
+    public void cached_shouldNotReuseOperatorsHoldingConceptsWithoutAnId() {
+        PowerMockito.mockStatic(CalculationUtils.class);
+        Concept saved = createConcept("0308b8a7-a4a2-47e0-9cfc-a56a65e2b49c", n_a);
+        saved.setConceptId(1);
+        Concept unsaved = createConcept("d98bb8d0-66f2-4aa7-870b-444527562f64", n_a);
+        when(CalculationUtils.refineRhsOperand(any(), any())).thenCallRealMethod();
+        when(CalculationUtils.splitValues(any())).thenCallRealMethod();
+        when(CalculationUtils.getConcept("CIEL:1065")).thenReturn(saved);
+        when(CalculationUtils.getConcept("CIEL:1066")).thenReturn(unsaved);
+        CompiledOperator.clearCache();
+
+        Assert.assertSame(CompiledOperator.cached(Operator.IN, "CIEL:1065", coded),
+                CompiledOperator.cached(Operator.IN, "CIEL:1065", coded));
+        Assert.assertNotSame(CompiledOperator.cached(Operator.IN, "CIEL:1065,CIEL:1066", coded),
+                CompiledOperator.cached(Operator.IN, "CIEL:1065,CIEL:1066", coded));
+        Assert.assertNotSame(CompiledOperator.cached(Operator.EQUALS, "CIEL:1066", coded),
+                CompiledOperator.cached(Operator.EQUALS, "CIEL:1066", coded));
+        CompiledOperator.clearCache();
+    }
+
     private ConceptDatatypeWrapper createDatatype(String Uuid) {
         ConceptDatatype type = new ConceptDatatype();
         type.setUuid(Uuid);
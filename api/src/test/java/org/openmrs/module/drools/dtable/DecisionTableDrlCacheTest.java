@@ -0,0 +1,108 @@
+package org.openmrs.module.drools.dtable;
+
+import org.drools.decisiontable.InputType;
+import org.drools.decisiontable.SpreadsheetCompiler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kie.api.io.ResourceType;
+import org.openmrs.module.drools.RuleResource;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DecisionTableDrlCacheTest {
+
+    private static final String BP_RULES = "decision_tables/bp_rules.drl.xlsx";
+
+    private static final String SEPSIS_RULES = "decision_tables/sepsis_rules.drl.xlsx";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File spreadsheet;
+
+    private String expectedDrl;
+
+    @Before
+    public void setUp() throws Exception {
+        spreadsheet = copy(BP_RULES);
+        expectedDrl = compileWithPoi(BP_RULES);
+    }
+
+    @Test
+    public void compile_shouldProduceTheSameDrlAsTheSpreadsheetCompiler() throws Exception {
+        assertEquals(expectedDrl, new StreamingDecisionTableCompiler().compile(spreadsheet));
+        assertEquals(compileWithPoi(SEPSIS_RULES), new StreamingDecisionTableCompiler().compile(copy(SEPSIS_RULES)));
+    }
+
+    @Test
+    public void resolve_shouldConvertOnMissAndReuseTheCachedDrlOnHit() throws Exception {
+        Path cacheDir = folder.newFolder("cache").toPath();
+        // a threshold of 0 streams every xlsx table
+        DecisionTableDrlCache cache = new DecisionTableDrlCache(cacheDir, 0);
+        RuleResource table = new RuleResource("BP rules", spreadsheet.getPath(), ResourceType.DTABLE);
+
+        RuleResource converted = cache.resolve(table);
+        assertEquals(ResourceType.DRL, converted.getResourceType());
+        Path drlPath = Path.of(converted.getPath());
+        assertEquals(cacheDir, drlPath.getParent());
+        assertEquals(expectedDrl, new String(Files.readAllBytes(drlPath), StandardCharsets.UTF_8));
+
+        // a hit serves the cached file as is
+        Files.write(drlPath, "cached".getBytes(StandardCharsets.UTF_8));
+        assertEquals(converted.getPath(), cache.resolve(table).getPath());
+        assertEquals("cached", new String(Files.readAllBytes(drlPath), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void resolve_shouldKeyTheCacheByTheDroolsVersion() {
+        DecisionTableDrlCache cache = new DecisionTableDrlCache(folder.getRoot().toPath(), Long.MAX_VALUE);
+        RuleResource converted = cache.resolve(new RuleResource("BP rules", BP_RULES, ResourceType.DTABLE));
+        assertTrue(converted.getPath().endsWith("-" + DecisionTableDrlCache.getDroolsVersion() + ".drl"));
+    }
+
+    @Test
+    public void prune_shouldDeleteTheDrlOfTablesThatAreGone() throws Exception {
+        Path cacheDir = folder.newFolder("cache").toPath();
+        DecisionTableDrlCache cache = new DecisionTableDrlCache(cacheDir, Long.MAX_VALUE);
+        RuleResource bpRules = cache.resolve(new RuleResource("BP rules", spreadsheet.getPath(), ResourceType.DTABLE));
+        RuleResource sepsisRules = cache.resolve(new RuleResource("Sepsis rules", SEPSIS_RULES, ResourceType.DTABLE));
+        Path unrelated = Files.createFile(cacheDir.resolve("notes.txt"));
+
+        cache.prune(Collections.singletonList(bpRules));
+
+        assertTrue(Files.exists(Path.of(bpRules.getPath())));
+        assertFalse(Files.exists(Path.of(sepsisRules.getPath())));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    @Test
+    public void resolve_shouldReturnOtherResourcesAsIs() {
+        DecisionTableDrlCache cache = new DecisionTableDrlCache(folder.getRoot().toPath(), 0);
+        RuleResource drl = new RuleResource("rules", "rules.drl", ResourceType.DRL);
+        assertSame(drl, cache.resolve(drl));
+    }
+
+    private File copy(String resource) throws Exception {
+        File file = folder.newFile(Path.of(resource).getFileName().toString());
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    private String compileWithPoi(String resource) throws Exception {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            return new SpreadsheetCompiler().compile(in, InputType.XLS);
+        }
+    }
+}
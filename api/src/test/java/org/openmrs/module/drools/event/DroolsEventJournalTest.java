@@ -0,0 +1,128 @@
+package org.openmrs.module.drools.event;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.event.Event;
+import org.openmrs.module.drools.TestDaemonTokens;
+import org.openmrs.module.drools.api.DroolsEventJournalService;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertTrue;
+
+public class DroolsEventJournalTest extends BaseModuleContextSensitiveTest {
+
+    private static final String SESSION_ID = "test1";
+
+    private DroolsEventJournalService journalService;
+
+    @Before
+    public void setup() {
+        journalService = Context.getService(DroolsEventJournalService.class);
+    }
+
+    @Test
+    public void getUnacknowledged_shouldOnlyReturnTheEntriesOfTheListenerInTheOrderTheyWereReceived() {
+        DroolsEventJournalEntry first = append(RecordingListener.class, Patient.class, "patient-1");
+        append(RecordingListener.class, Encounter.class, "encounter-1");
+        DroolsEventJournalEntry second = append(RecordingListener.class, Patient.class, "patient-2");
+
+        List<DroolsEventJournalEntry> entries = journalService.getUnacknowledged(SESSION_ID,
+                RecordingListener.class.getName(), Patient.class.getName());
+
+        assertThat(entries, contains(first, second));
+    }
+
+    @Test
+    public void acknowledge_shouldDeleteTheEntries() {
+        DroolsEventJournalEntry processed = append(RecordingListener.class, Patient.class, "patient-1");
+        DroolsEventJournalEntry pending = append(RecordingListener.class, Patient.class, "patient-2");
+
+        journalService.acknowledge(Collections.singletonList(processed.getId()));
+
+        assertThat(journalService.getUnacknowledged(SESSION_ID, RecordingListener.class.getName(),
+                Patient.class.getName()), contains(pending));
+        journalService.acknowledge(Collections.singletonList(pending.getId()));
+        assertThat(journalService.getUnacknowledged(SESSION_ID, RecordingListener.class.getName(),
+                Patient.class.getName()), empty());
+    }
+
+    @Test
+    public void replay_shouldProcessTheJournaledMessagesInTheOrderTheyWereReceived() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        listener.setSessionId(SESSION_ID);
+        listener.setDaemonToken(TestDaemonTokens.get());
+        listener.setCoalescingWindowMillis(0);
+        try {
+            // replayed entries aren't journaled again, they only need to be readable here
+            listener.replay(Arrays.asList(entry(1, "patient-1"), entry(2, "patient-2"), entry(3, "patient-1")));
+
+            assertTrue(listener.processed.await(5, TimeUnit.SECONDS));
+            // the latest message for an entity wins but keeps the position of the first one
+            assertThat(listener.uuids, contains("patient-1", "patient-2"));
+        } finally {
+            listener.stop();
+        }
+    }
+
+    private DroolsEventJournalEntry append(Class<?> listener, Class<?> subscribedClass, String uuid) {
+        return journalService.append(new DroolsEventJournalEntry(SESSION_ID, listener.getName(),
+                subscribedClass.getName(), "{\"uuid\":\"" + uuid + "\"}", new Date()));
+    }
+
+    private static DroolsEventJournalEntry entry(int id, String uuid) {
+        DroolsEventJournalEntry entry = new DroolsEventJournalEntry(SESSION_ID, RecordingListener.class.getName(),
+                Patient.class.getName(), "{\"uuid\":\"" + uuid + "\"}", new Date());
+        entry.setId(id);
+        return entry;
+    }
+
+    private static class RecordingListener extends DroolsSystemEventListener {
+
+        private final List<String> uuids = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch processed = new CountDownLatch(1);
+
+        @Override
+        public List<Event.Action> getSubscribedActions() {
+            return Collections.singletonList(Event.Action.UPDATED);
+        }
+
+        @Override
+        public Class<?> getSubscribedClass() {
+            return Patient.class;
+        }
+
+        @Override
+        public void processMessage(KieSession session, Message message) {
+            try {
+                uuids.add(((MapMessage) message).getString("uuid"));
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected void processMessages(KieSession session, List<Message> messages) {
+            messages.forEach(message -> processMessage(session, message));
+            processed.countDown();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.openmrs.module.drools.event;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+import org.openmrs.Patient;
+import org.openmrs.event.Event;
+import org.openmrs.module.drools.TestDaemonTokens;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DroolsSystemEventListenerTest extends BaseModuleContextSensitiveTest {
+
+    private BlockingListener listener;
+
+    @Before
+    public void setup() {
+        listener = new BlockingListener();
+        listener.setDaemonToken(TestDaemonTokens.get());
+        listener.setCoalescingWindowMillis(0);
+    }
+
+    @After
+    public void tearDown() {
+        listener.release.countDown();
+        listener.stop();
+    }
+
+    @Test
+    public void onMessage_shouldDropMessagesReceivedWhileTheQueueIsFull() throws Exception {
+        listener.setQueueCapacity(2);
+        blockDrainer();
+
+        listener.onMessage(message("patient-2"));
+        listener.onMessage(message("patient-3"));
+        listener.onMessage(message("patient-4"));
+
+        assertEquals(2, listener.getQueueDepth());
+        assertEquals(1, listener.getDroppedCount());
+        assertEquals(4, listener.getReceivedCount());
+        listener.release.countDown();
+        assertThat(listener.nextBatch(), contains("patient-2", "patient-3"));
+    }
+
+    @Test
+    public void onMessage_shouldOnlyProcessTheLatestMessageOfAnEntityPerBatch() throws Exception {
+        blockDrainer();
+
+        listener.onMessage(message("patient-2"));
+        listener.onMessage(message("patient-3"));
+        listener.onMessage(message("patient-2"));
+        listener.release.countDown();
+
+        // the latest message for an entity wins but keeps the position of the first one
+        assertThat(listener.nextBatch(), contains("patient-2", "patient-3"));
+        assertEquals(1, listener.getCoalescedCount());
+        assertEquals(3, listener.getProcessedCount());
+        assertEquals(2, listener.getBatchCount());
+    }
+
+    @Test
+    public void resume_shouldNotStartASecondDrainerWhenTheStoppedOneSwallowedItsInterrupt() throws Exception {
+        listener.swallowInterrupts = true;
+        Thread stoppedDrainer = blockDrainer();
+
+        listener.stop();
+        listener.onMessage(message("patient-2"));
+
+        assertThat(listener.nextBatch(), contains("patient-2"));
+        assertThat(listener.lastDrainer, not(sameInstance(stoppedDrainer)));
+        stoppedDrainer.join(5000);
+        assertFalse(stoppedDrainer.isAlive());
+    }
+
+    /**
+     * Has the drainer take a first message and block on it until {@link BlockingListener#release} is counted down.
+     *
+     * @return the thread of the blocked drainer
+     */
+    private Thread blockDrainer() throws Exception {
+        listener.onMessage(message("patient-1"));
+        assertTrue(listener.blocked.await(5, TimeUnit.SECONDS));
+        assertThat(listener.nextBatch(), contains("patient-1"));
+        return listener.lastDrainer;
+    }
+
+    private static Message message(String uuid) throws IOException {
+        return JournaledMessages.fromJson("{\"uuid\":\"" + uuid + "\"}");
+    }
+
+    private static class BlockingListener extends DroolsSystemEventListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final BlockingQueue<List<String>> batches = new LinkedBlockingQueue<>();
+
+        private volatile boolean swallowInterrupts;
+
+        private volatile Thread lastDrainer;
+
+        @Override
+        public List<Event.Action> getSubscribedActions() {
+            return Collections.singletonList(Event.Action.UPDATED);
+        }
+
+        @Override
+        public Class<?> getSubscribedClass() {
+            return Patient.class;
+        }
+
+        @Override
+        public void processMessage(KieSession session, Message message) {
+        }
+
+        @Override
+        protected void processMessages(KieSession session, List<Message> messages) {
+            lastDrainer = Thread.currentThread();
+            List<String> uuids = new ArrayList<>();
+            for (Message message : messages) {
+                try {
+                    uuids.add(((MapMessage) message).getString("uuid"));
+                } catch (JMSException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            batches.add(uuids);
+            if (blocked.getCount() > 0) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    if (!swallowInterrupts) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        List<String> nextBatch() throws InterruptedException {
+            List<String> batch = batches.poll(5, TimeUnit.SECONDS);
+            assertTrue("No batch was processed", batch != null);
+            return batch;
+        }
+    }
+}
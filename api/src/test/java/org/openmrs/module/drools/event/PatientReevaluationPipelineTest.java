@@ -0,0 +1,233 @@
+package org.openmrs.module.drools.event;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.drools.TestDaemonTokens;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.result.DroolsResultStore;
+import org.openmrs.module.drools.session.DroolsExecutionResult;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PatientReevaluationPipelineTest extends BaseModuleContextSensitiveTest {
+
+    private static final String SESSION_ID = "reevaluated";
+
+    private static final Integer PATIENT_ID = 7;
+
+    /**
+     * An encounter of patient 7 in the standard test dataset, which is committed so the drainer can read it.
+     */
+    private static final String ENCOUNTER_UUID = "6519d653-49ac-4d18-a9cb-54e2f8fc8b4f";
+
+    private DroolsEngineService droolsEngineService;
+
+    private DroolsResultStore resultStore;
+
+    private DaemonToken daemonToken;
+
+    private DroolsEventsManager eventsManager;
+
+    @Before
+    public void setup() {
+        daemonToken = TestDaemonTokens.get();
+        DroolsEventsManager.setDaemonToken(daemonToken);
+        eventsManager = new DroolsEventsManager();
+        resultStore = mock(DroolsResultStore.class);
+
+        DroolsSessionConfig config = new DroolsSessionConfig();
+        config.setSessionId(SESSION_ID);
+        config.setReturnObjectsTypeClassName(String.class.getName());
+        config.setReevaluationTriggers(new HashSet<>(Arrays.asList("Obs", "Encounter")));
+        droolsEngineService = mock(DroolsEngineService.class);
+        when(droolsEngineService.getResultStore()).thenReturn(resultStore);
+        when(droolsEngineService.getSessionConfigs()).thenReturn(Collections.singletonList(config));
+        when(droolsEngineService.getSessionConfig(SESSION_ID)).thenReturn(config);
+        when(droolsEngineService.evaluate(eq(SESSION_ID), anyCollection(), anyString())).thenAnswer(invocation -> {
+            Patient patient = (Patient) invocation.<Collection<?>>getArgument(1).iterator().next();
+            return new DroolsExecutionResult(SESSION_ID, 1,
+                    Collections.singletonList("evaluated " + patient.getPatientId()));
+        });
+    }
+
+    @After
+    public void tearDown() {
+        eventsManager.shutdown();
+    }
+
+    @Test
+    public void stopReevaluationPipeline_shouldStopThePipelineStarted() {
+        PatientReevaluationPipeline pipeline = eventsManager.startReevaluationPipeline(untriggeredEngineService());
+        assertFalse(pipeline.isStopped());
+
+        assertThat(eventsManager.stopReevaluationPipeline(), sameInstance(pipeline));
+
+        assertTrue(pipeline.isStopped());
+        assertThat(eventsManager.getReevaluationPipeline(), sameInstance(pipeline));
+    }
+
+    @Test
+    public void shutdown_shouldStopTheReevaluationPipeline() {
+        PatientReevaluationPipeline pipeline = eventsManager.startReevaluationPipeline(untriggeredEngineService());
+
+        eventsManager.shutdown();
+
+        assertTrue(pipeline.isStopped());
+    }
+
+    @Test
+    public void takeOver_shouldReevaluateThePatientsTheStoppedPipelineDidntGetTo() {
+        PatientReevaluationPipeline stopped = new PatientReevaluationPipeline(droolsEngineService, resultStore,
+                daemonToken);
+        stopped.stop();
+        // a stopped pipeline keeps the patients scheduled on it waiting
+        stopped.schedule(PATIENT_ID, "Obs");
+        assertEquals(1, stopped.getPendingCount());
+
+        PatientReevaluationPipeline successor = new PatientReevaluationPipeline(droolsEngineService, resultStore,
+                daemonToken);
+        successor.takeOver(stopped);
+
+        assertEquals(0, stopped.getPendingCount());
+        verifyReevaluated(PATIENT_ID);
+    }
+
+    @Test
+    public void schedule_shouldReevaluateTheSessionsTriggeredByTheTypeOfData() {
+        PatientReevaluationPipeline pipeline = new PatientReevaluationPipeline(droolsEngineService, resultStore,
+                daemonToken);
+
+        assertFalse(pipeline.schedule(PATIENT_ID, "Condition"));
+        assertTrue(pipeline.schedule(PATIENT_ID, "Obs"));
+
+        verifyReevaluated(PATIENT_ID);
+    }
+
+    @Test
+    public void schedule_shouldReevaluateAPatientScheduledSeveralTimesWhileWaitingOnce() {
+        PatientReevaluationPipeline stopped = new PatientReevaluationPipeline(droolsEngineService, resultStore,
+                daemonToken);
+        stopped.stop();
+        stopped.schedule(PATIENT_ID, "Obs");
+        stopped.schedule(PATIENT_ID, "Encounter");
+        stopped.schedule(PATIENT_ID, "Obs");
+        assertEquals(1, stopped.getPendingCount());
+
+        new PatientReevaluationPipeline(droolsEngineService, resultStore, daemonToken).takeOver(stopped);
+
+        verifyReevaluated(PATIENT_ID);
+        verify(droolsEngineService, times(1)).evaluate(eq(SESSION_ID), anyCollection(), anyString());
+    }
+
+    @Test
+    public void takeOver_shouldAcknowledgeTheJournalEntriesOfTheStoppedPipelineOnceThePatientIsReevaluated()
+            throws Exception {
+        PatientReevaluationPipeline stopped = new PatientReevaluationPipeline(droolsEngineService, resultStore,
+                daemonToken);
+        stopped.stop();
+        stopped.schedule(PATIENT_ID, "Obs", Arrays.asList(1, 2));
+        stopped.schedule(PATIENT_ID, "Encounter", Collections.singletonList(3));
+
+        AcknowledgingPipeline successor = new AcknowledgingPipeline();
+        successor.takeOver(stopped);
+
+        assertThat(successor.nextAcknowledged(), contains(1, 2, 3));
+        // acknowledged on the drainer after the patient was re-evaluated
+        verify(resultStore).putResults(eq(SESSION_ID), eq(PATIENT_ID), anyList(), any(Date.class));
+    }
+
+    @Test
+    public void replay_shouldAcknowledgeTheReplayedChangesOnceThePatientIsReevaluated() throws Exception {
+        AcknowledgingPipeline pipeline = new AcknowledgingPipeline();
+        PatientDataChangeListener listener = new PatientDataChangeListener(Encounter.class, pipeline);
+        listener.setSessionId(SESSION_ID);
+        listener.setDaemonToken(daemonToken);
+        listener.setCoalescingWindowMillis(0);
+        try {
+            // entries journaled before a restart, both for the same encounter
+            listener.replay(Arrays.asList(journalEntry(1), journalEntry(2)));
+
+            assertThat(pipeline.nextAcknowledged(), contains(1, 2));
+            verify(resultStore).putResults(eq(SESSION_ID), eq(PATIENT_ID), anyList(), any(Date.class));
+        } finally {
+            listener.stop();
+        }
+    }
+
+    private static DroolsEventJournalEntry journalEntry(int id) {
+        DroolsEventJournalEntry entry = new DroolsEventJournalEntry(SESSION_ID,
+                PatientDataChangeListener.class.getName(), Encounter.class.getName(),
+                "{\"uuid\":\"" + ENCOUNTER_UUID + "\"}", new Date());
+        entry.setId(id);
+        return entry;
+    }
+
+    private void verifyReevaluated(Integer patientId) {
+        verify(resultStore, timeout(5000)).putResults(eq(SESSION_ID), eq(patientId),
+                eq(Collections.singletonList("evaluated " + patientId)), any(Date.class));
+    }
+
+    /**
+     * Records the journal entries it acknowledges rather than deleting them.
+     */
+    private class AcknowledgingPipeline extends PatientReevaluationPipeline {
+
+        private final BlockingQueue<List<Integer>> acknowledged = new LinkedBlockingQueue<>();
+
+        AcknowledgingPipeline() {
+            super(droolsEngineService, resultStore, daemonToken);
+        }
+
+        @Override
+        protected void acknowledge(List<Integer> journalEntryIds) {
+            acknowledged.add(journalEntryIds);
+        }
+
+        List<Integer> nextAcknowledged() throws InterruptedException {
+            List<Integer> journalEntryIds = acknowledged.poll(5, TimeUnit.SECONDS);
+            assertTrue("No journal entry was acknowledged", journalEntryIds != null);
+            return journalEntryIds;
+        }
+    }
+
+    /**
+     * No session is re-evaluated on change, so starting a pipeline doesn't subscribe listeners.
+     */
+    private DroolsEngineService untriggeredEngineService() {
+        DroolsEngineService engineService = mock(DroolsEngineService.class);
+        when(engineService.getResultStore()).thenReturn(resultStore);
+        when(engineService.getSessionConfigs()).thenReturn(Collections.emptyList());
+        return engineService;
+    }
+}
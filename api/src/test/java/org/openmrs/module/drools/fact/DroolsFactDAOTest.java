@@ -0,0 +1,44 @@
+package org.openmrs.module.drools.fact;
+
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.api.db.DroolsFactDAO;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+
+public class DroolsFactDAOTest extends BaseModuleContextSensitiveTest {
+
+    @Autowired
+    private DroolsFactDAO factDAO;
+
+    @Test
+    public void getByIds_shouldLoadTheEntitiesWithTheGivenIds() {
+        List<Patient> patients = factDAO.getByIds(Patient.class, Arrays.asList(2, 7, 7, Integer.MAX_VALUE), "names");
+
+        assertThat(patients.stream().map(Patient::getPatientId).collect(Collectors.toList()),
+                containsInAnyOrder(2, 7));
+    }
+
+    @Test
+    public void getPatientFacts_shouldProjectThePatientsWithTheGivenIds() {
+        List<PatientFact> facts = factDAO.getPatientFacts(Arrays.asList(7, 7, Integer.MAX_VALUE));
+
+        assertEquals(1, facts.size());
+        PatientFact fact = facts.get(0);
+        Patient patient = Context.getPatientService().getPatient(7);
+        assertEquals(Integer.valueOf(7), fact.getPatientId());
+        assertEquals(patient.getUuid(), fact.getUuid());
+        assertEquals(patient.getGender(), fact.getGender());
+        assertEquals(patient.getBirthdate().getTime(), fact.getBirthdate().getTime());
+        assertEquals(patient.getDead(), fact.isDead());
+    }
+}
@@ -0,0 +1,49 @@
+package org.openmrs.module.drools.fact;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+
+import java.util.Date;
+
+public class FactProjectorTest {
+
+    @Test
+    public void project_shouldProjectEntitiesOnlyForProjectingSessions() {
+        Patient patient = new Patient(7);
+        DroolsSessionConfig config = new DroolsSessionConfig();
+
+        Assert.assertSame(patient, FactProjector.project(config, patient));
+
+        config.setFactInsertionMode(FactInsertionMode.PROJECTION);
+        Object fact = FactProjector.project(config, patient);
+        Assert.assertTrue(fact instanceof PatientFact);
+        Assert.assertEquals(Integer.valueOf(7), ((PatientFact) fact).getPatientId());
+        Assert.assertEquals("literal", FactProjector.project(config, "literal"));
+    }
+
+    @Test
+    public void project_shouldProjectUnsavedPatients() {
+        PatientFact fact = new PatientFact(new Patient());
+
+        Assert.assertNull(fact.getPatientId());
+    }
+
+    @Test
+    public void project_shouldReferenceObsAssociationsById() {
+        Obs obs = new Obs(new Patient(7), new Concept(5089), new Date(), null);
+        obs.setObsId(11);
+        obs.setValueNumeric(72.5);
+
+        ObsFact fact = (ObsFact) FactProjector.project(obs);
+        Assert.assertEquals(Integer.valueOf(11), fact.getObsId());
+        Assert.assertEquals(Integer.valueOf(7), fact.getPersonId());
+        Assert.assertEquals(5089, fact.getConceptId());
+        Assert.assertEquals(72.5, fact.getValueNumeric(), 0);
+        Assert.assertNull(fact.getValueCodedId());
+        Assert.assertNotSame(obs.getObsDatetime(), fact.getObsDatetime());
+    }
+}
@@ -0,0 +1,136 @@
+package org.openmrs.module.drools.param;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DroolsParameterResolverRegistryTest extends BaseModuleContextSensitiveTest {
+
+    @Autowired
+    private DroolsParameterResolverRegistry resolverRegistry;
+
+    private final List<String> registeredBeans = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        DefaultListableBeanFactory beanFactory = getBeanFactory();
+        registeredBeans.forEach(beanFactory::destroySingleton);
+        registeredBeans.clear();
+        resolverRegistry.refresh();
+    }
+
+    @Test
+    public void resolve_shouldOnlyResolveTheValuesOfCacheableTypesMissingFromTheCache() {
+        CountingResolver cached = new CountingResolver("TEST_CACHED", true);
+        CountingResolver uncached = new CountingResolver("TEST_UNCACHED", false);
+        registerResolver(cached);
+        registerResolver(uncached);
+        resolverRegistry.refresh();
+
+        resolverRegistry.resolve("TEST_CACHED", Arrays.asList("a", "b"));
+        Map<String, Object> resolved = resolverRegistry.resolve("TEST_CACHED", Arrays.asList("b", "c"));
+        resolverRegistry.resolve("TEST_UNCACHED", Arrays.asList("a", "b"));
+        resolverRegistry.resolve("TEST_UNCACHED", Arrays.asList("b", "c"));
+
+        assertEquals("resolved c", resolved.get("c"));
+        assertEquals("resolved b", resolved.get("b"));
+        assertThat(cached.requests, contains(set("a", "b"), set("c")));
+        assertThat(uncached.requests, contains(set("a", "b"), set("b", "c")));
+
+        // clearing one type keeps the facts of the others
+        resolverRegistry.clearCache("TEST_UNCACHED");
+        resolverRegistry.resolve("TEST_CACHED", Arrays.asList("a", "c"));
+        assertEquals(2, cached.requests.size());
+        resolverRegistry.clearCache("TEST_CACHED");
+        resolverRegistry.resolve("TEST_CACHED", Arrays.asList("a"));
+        assertEquals(set("a"), cached.requests.get(2));
+    }
+
+    @Test
+    public void getResolver_shouldPreferAResolverRegisteredByAModuleOverTheBuiltInOne() {
+        CountingResolver forms = new CountingResolver(DroolsParameterType.FORM_UUID.name(), false);
+        registerResolver(forms);
+        resolverRegistry.refresh();
+
+        assertThat(resolverRegistry.getResolver(DroolsParameterType.FORM_UUID), sameInstance(forms));
+        assertThat(resolverRegistry.getResolver(DroolsParameterType.FORM_UUID.name()), sameInstance(forms));
+        assertTrue(resolverRegistry.getResolver(DroolsParameterType.DRUG_UUID) instanceof EntityParameterResolver);
+    }
+
+    @Test
+    public void onApplicationEvent_shouldPickUpResolversRegisteredSinceTheRegistryWasBuilt() {
+        assertFalse(resolverRegistry.supports("TEST_LATE"));
+        registerResolver(new CountingResolver("TEST_LATE", false));
+        assertFalse(resolverRegistry.supports("TEST_LATE"));
+
+        resolverRegistry.onApplicationEvent(new ContextRefreshedEvent(applicationContext));
+
+        assertTrue(resolverRegistry.supports("TEST_LATE"));
+    }
+
+    private void registerResolver(DroolsParameterResolver resolver) {
+        String name = "testResolver" + resolver.getParameterType();
+        getBeanFactory().registerSingleton(name, resolver);
+        registeredBeans.add(name);
+    }
+
+    private DefaultListableBeanFactory getBeanFactory() {
+        return (DefaultListableBeanFactory) ((ConfigurableApplicationContext) applicationContext).getBeanFactory();
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static class CountingResolver implements DroolsParameterResolver {
+
+        private final String parameterType;
+
+        private final boolean cacheable;
+
+        private final List<Set<String>> requests = new ArrayList<>();
+
+        CountingResolver(String parameterType, boolean cacheable) {
+            this.parameterType = parameterType;
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public String getParameterType() {
+            return parameterType;
+        }
+
+        @Override
+        public Map<String, Object> resolve(Collection<String> values) {
+            requests.add(new HashSet<>(values));
+            Map<String, Object> resolved = new HashMap<>();
+            values.forEach(value -> resolved.put(value, "resolved " + value));
+            return resolved;
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return cacheable;
+        }
+    }
+}
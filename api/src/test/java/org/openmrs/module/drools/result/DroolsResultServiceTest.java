@@ -0,0 +1,89 @@
+package org.openmrs.module.drools.result;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.api.DroolsResultService;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+public class DroolsResultServiceTest extends BaseModuleContextSensitiveTest {
+
+    private static final String SESSION_ID = "test1";
+
+    private static final String FLAG = "org.openmrs.module.drools.PatientFlag";
+
+    private static final String ALERT = "org.openmrs.module.drools.PatientAlert";
+
+    private DroolsResultService resultService;
+
+    @Before
+    public void setup() {
+        resultService = Context.getService(DroolsResultService.class);
+        resultService.replaceResults(SESSION_ID, 2, Arrays.asList(result(2, FLAG, "{\"flag\":\"Hypertension\"}"),
+                result(2, ALERT, "{\"alert\":\"Overdue\"}")));
+        resultService.replaceResults(SESSION_ID, 7, Collections.singletonList(result(7, FLAG, "{\"flag\":\"Low\"}")));
+        resultService.replaceResults("test2", 7,
+                Collections.singletonList(new DroolsResult("test2", 7, FLAG, "{}", "1", new Date())));
+    }
+
+    @Test
+    public void getResults_shouldReturnTheResultsOfTheSessionForThePatients() {
+        List<DroolsResult> results = resultService.getResults(SESSION_ID, Arrays.asList(2, 7), null);
+
+        assertThat(payloads(results), contains("{\"flag\":\"Hypertension\"}", "{\"alert\":\"Overdue\"}",
+                "{\"flag\":\"Low\"}"));
+    }
+
+    @Test
+    public void getResults_shouldFilterByResultType() {
+        List<DroolsResult> results = resultService.getResults(SESSION_ID, Arrays.asList(2, 7), ALERT);
+
+        assertThat(payloads(results), contains("{\"alert\":\"Overdue\"}"));
+    }
+
+    @Test
+    public void getResults_shouldReturnNothingWithoutPatients() {
+        assertThat(resultService.getResults(SESSION_ID, Collections.emptyList(), null), empty());
+    }
+
+    @Test
+    public void replaceResults_shouldReplaceThePreviousResultsOfThePatient() {
+        resultService.replaceResults(SESSION_ID, 2, Collections.singletonList(result(2, FLAG, "{\"flag\":\"Low\"}")));
+
+        assertThat(payloads(resultService.getResults(SESSION_ID, Collections.singletonList(2), null)),
+                contains("{\"flag\":\"Low\"}"));
+        assertThat(payloads(resultService.getResults("test2", Collections.singletonList(7), null)), contains("{}"));
+    }
+
+    @Test
+    public void getPatientIdsWithResults_shouldReturnThePatientsWithResultsOfTheSession() {
+        assertThat(resultService.getPatientIdsWithResults(SESSION_ID, null), containsInAnyOrder(2, 7));
+        assertThat(resultService.getPatientIdsWithResults(SESSION_ID, ALERT), contains(2));
+    }
+
+    @Test(expected = APIAuthenticationException.class)
+    public void getPatientIdsWithResults_shouldRequireThePrivilegeToGetPatients() {
+        Context.logout();
+        resultService.getPatientIdsWithResults(SESSION_ID, null);
+    }
+
+    private static DroolsResult result(Integer patientId, String resultType, String payload) {
+        return new DroolsResult(SESSION_ID, patientId, resultType, payload, "1", new Date());
+    }
+
+    private static List<String> payloads(List<DroolsResult> results) {
+        return results.stream().map(DroolsResult::getPayload).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,91 @@
+package org.openmrs.module.drools.session;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+import org.openmrs.module.drools.TestDaemonTokens;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class DroolsSessionActorTest extends BaseModuleContextSensitiveTest {
+
+    private KieSession session;
+
+    private DroolsSessionActor actor;
+
+    @Before
+    public void setup() {
+        session = mock(KieSession.class);
+        actor = new DroolsSessionActor("test1", session, TestDaemonTokens.get());
+        actor.start();
+    }
+
+    @After
+    public void tearDown() {
+        actor.stop();
+    }
+
+    @Test
+    public void submit_shouldRunTasksInTheOrderTheyWereSubmitted() throws Exception {
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int task = i;
+            actor.submit(kieSession -> ran.add(task));
+        }
+        actor.submit(kieSession -> null).get(5, TimeUnit.SECONDS);
+
+        assertThat(ran, contains(0, 1, 2, 3, 4));
+    }
+
+    @Test
+    public void stop_shouldRunTheTasksQueuedBeforeItAndRejectTheOnesSubmittedAfter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocking = actor.submit(kieSession -> awaitQuietly(release));
+        CompletableFuture<String> queuedBefore = actor.submit(kieSession -> "ran");
+
+        actor.stop();
+        CompletableFuture<String> submittedAfter = actor.submit(kieSession -> "ran");
+
+        assertTrue(actor.isStopping());
+        assertTrue(submittedAfter.isCompletedExceptionally());
+        try {
+            submittedAfter.get();
+            fail("A task submitted after stop() should be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(DroolsSessionException.class));
+        }
+
+        release.countDown();
+        assertTrue(blocking.get(5, TimeUnit.SECONDS));
+        assertThat(queuedBefore.get(5, TimeUnit.SECONDS), is("ran"));
+        verify(session, timeout(5000)).dispose();
+        assertFalse(actor.isRunning());
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
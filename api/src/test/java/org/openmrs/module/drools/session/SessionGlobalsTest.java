@@ -0,0 +1,64 @@
+package org.openmrs.module.drools.session;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Global;
+import org.kie.api.runtime.KieSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionGlobalsTest {
+
+    @Test
+    public void flatten_shouldOnlyKeepDeclaredGlobalsAndLetTheSessionsOwnOnesWin() {
+        Map<String, Map<String, Object>> globalBindings = new LinkedHashMap<>();
+        globalBindings.put("mine", globals("service", "own service"));
+        globalBindings.put("other", globals("service", "other service", "helper", "other helper", "unused", "value"));
+        ExternalEvaluatorManager evaluatorManager = mock(ExternalEvaluatorManager.class);
+
+        SessionGlobals sessionGlobals = SessionGlobals.flatten("mine", globalBindings, evaluatorManager,
+                kieBase("service", "helper", SessionGlobals.EVALUATOR_MANAGER_GLOBAL));
+        KieSession session = mock(KieSession.class);
+        sessionGlobals.applyTo(session);
+
+        Assert.assertEquals(3, sessionGlobals.size());
+        verify(session).setGlobal("service", "own service");
+        verify(session).setGlobal("helper", "other helper");
+        verify(session).setGlobal(SessionGlobals.EVALUATOR_MANAGER_GLOBAL, evaluatorManager);
+        verify(session, never()).setGlobal("unused", "value");
+    }
+
+    private static Map<String, Object> globals(String... namesAndValues) {
+        Map<String, Object> globals = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            globals.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return globals;
+    }
+
+    private static KieBase kieBase(String... declaredGlobals) {
+        List<Global> globals = new ArrayList<>();
+        for (String name : declaredGlobals) {
+            Global global = mock(Global.class);
+            when(global.getName()).thenReturn(name);
+            globals.add(global);
+        }
+        KiePackage kiePackage = mock(KiePackage.class);
+        when(kiePackage.getGlobalVariables()).thenReturn(globals);
+        KieBase kieBase = mock(KieBase.class);
+        when(kieBase.getKiePackages()).thenReturn(Collections.singletonList(kiePackage));
+        return kieBase;
+    }
+}
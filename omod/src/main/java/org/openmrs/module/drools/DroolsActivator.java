@@ -1,8 +1,11 @@
 package org.openmrs.module.drools;
 
+import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
 import org.openmrs.module.DaemonToken;
 import org.openmrs.module.DaemonTokenAware;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.calculation.MetadataCache;
 import org.openmrs.module.drools.event.DroolsEventsManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +27,17 @@ public class DroolsActivator extends BaseModuleActivator implements DaemonTokenA
      * @see #shutdown()
      */
     public void shutdown() {
+        // stop the re-evaluation pipeline and event deliveries before disposing of the sessions they feed
+        try {
+            Context.getService(DroolsEngineService.class).getEventsManager().shutdown();
+        } catch (Exception e) {
+            log.error("Error stopping the Drools re-evaluation pipeline and session event listeners", e);
+        }
+        try {
+            Context.getRegisteredComponents(MetadataCache.class).forEach(MetadataCache::unsubscribe);
+        } catch (Exception e) {
+            log.error("Error unsubscribing the Drools metadata cache", e);
+        }
         // dispose of sessions
         runner.shutdown();
         log.info("OpenMRS Drools Engine stopped");
@@ -1,23 +1,57 @@
 package org.openmrs.module.drools;
 
+import org.apache.commons.lang3.math.NumberUtils;
 import org.kie.api.runtime.KieSession;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
 import org.openmrs.module.DaemonToken;
+import org.openmrs.module.drools.DroolsStartupReport.Phase;
+import org.openmrs.module.drools.api.RuleProvider;
 import org.openmrs.module.drools.loader.RuleProviderLoader;
 import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.DroolsEventJournalService;
+import org.openmrs.module.drools.calculation.MetadataCache;
+import org.openmrs.module.drools.event.DroolsEventJournalEntry;
+import org.openmrs.module.drools.event.DroolsSystemEventListener;
+import org.openmrs.module.drools.event.DroolsEventsManager;
+import org.openmrs.module.drools.session.DroolsExecutionResult;
+import org.openmrs.module.drools.session.DroolsSessionActor;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.module.drools.web.DroolsParameterFactResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
 public class DroolsEngineRunner implements Runnable {
 
+    public enum Status {
+        STOPPED, STARTING, WARMING_UP, READY,
+        /**
+         * Started, but a loader, provider, the container, the metadata cache, a session or the journal replay failed.
+         * See the startup report.
+         */
+        DEGRADED,
+        /**
+         * The auto-start process was interrupted or failed unexpectedly.
+         */
+        FAILED
+    }
+
+    private static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 1;
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private static DaemonToken daemonToken;
 
-    private final List<KieSession> openSessions = new ArrayList<>();
+    private static volatile DroolsStartupReport startupReport;
+
+    private static volatile Status status = Status.STOPPED;
 
     public DroolsEngineRunner() {
     }
@@ -25,42 +59,234 @@ public class DroolsEngineRunner implements Runnable {
     @Override
     public void run() {
         log.info("Starting Drools Engine auto-start process");
+        DroolsStartupReport report = new DroolsStartupReport();
+        startupReport = report;
+        status = Status.STARTING;
         DroolsEngineService droolsEngineService = Context.getService(DroolsEngineService.class);
+        int poolSize = getPoolSize();
 
-        log.debug("Loading rule providers");
-        Context.getRegisteredComponents(RuleProviderLoader.class).forEach(ruleProviderLoader -> {
+        try {
+            log.debug("Loading rule providers");
+            List<Runnable> loaderTasks = Context.getRegisteredComponents(RuleProviderLoader.class).stream()
+                    .map(ruleProviderLoader -> (Runnable) () -> loadProviders(droolsEngineService, ruleProviderLoader, report))
+                    .collect(Collectors.toList());
+            runInParallel(loaderTasks, poolSize);
+
+            // build the container once up front, otherwise every auto-start session would race to build it
+            long startTime = System.currentTimeMillis();
             try {
-                log.debug("Processing rule provider loader: {}", ruleProviderLoader.getClass().getSimpleName());
-                ruleProviderLoader.loadRuleProviders().forEach(ruleProvider -> {
-                    log.debug("Registering rule provider: {}", ruleProvider.getClass().getSimpleName());
-                    droolsEngineService.registerRuleProvider(ruleProvider);
-                });
+                droolsEngineService.getKieContainer();
+                report.record(Phase.CONTAINER, "KieContainer", System.currentTimeMillis() - startTime, null);
             } catch (Exception e) {
-                log.error("Error loading rule providers from loader: {}", ruleProviderLoader.getClass().getSimpleName(), e);
+                report.record(Phase.CONTAINER, "KieContainer", System.currentTimeMillis() - startTime, e);
+                log.error("Error building KieContainer", e);
             }
-        });
 
-        var autoStartSessions = droolsEngineService.getSessionsForAutoStart();
-        log.info("Found {} session(s) configured for auto-start", autoStartSessions.size());
+            preloadMetadata(report);
 
-        autoStartSessions.forEach(sessionConfig -> {
-            try {
-                String sessionId = sessionConfig.getSessionId();
-                log.info("Auto-starting session: {}", sessionId);
-                long startTime = System.currentTimeMillis();
+            var autoStartSessions = droolsEngineService.getSessionsForAutoStart();
+            log.info("Found {} session(s) configured for auto-start", autoStartSessions.size());
+
+            List<Runnable> sessionTasks = autoStartSessions.stream()
+                    .map(sessionConfig -> (Runnable) () -> startSession(droolsEngineService, sessionConfig, report))
+                    .collect(Collectors.toList());
+            runInParallel(sessionTasks, poolSize);
+
+            droolsEngineService.getEventsManager().startReevaluationPipeline(droolsEngineService);
+            replayEventJournal(droolsEngineService, report);
+
+            int iterations = getWarmUpIterations();
+            if (iterations > 0) {
+                status = Status.WARMING_UP;
+                log.info("Warming up Drools Engine with {} iteration(s) per session", iterations);
+                // evaluating a session runs its rules, which may have side effects, so only sessions that provide
+                // samples are evaluated. The others still benefit from the container built above
+                List<Runnable> warmUpTasks = droolsEngineService.getSessionConfigs().stream()
+                        .filter(sessionConfig -> sessionConfig.getWarmUpParameters() != null
+                                && !sessionConfig.getWarmUpParameters().isEmpty())
+                        .map(sessionConfig -> (Runnable) () -> warmUpSession(droolsEngineService, sessionConfig, iterations, report))
+                        .collect(Collectors.toList());
+                runInParallel(warmUpTasks, poolSize);
+            }
+            // a failed warm-up only costs latency, it shouldn't keep the module out of rotation
+            status = report.hasFailures(Phase.WARMUP) ? Status.DEGRADED : Status.READY;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = Status.FAILED;
+            log.warn("Drools Engine auto-start process interrupted");
+        } catch (RuntimeException e) {
+            status = Status.FAILED;
+            log.error("Drools Engine auto-start process failed", e);
+        } finally {
+            report.complete();
+        }
+
+        log.info("Drools Engine auto-start process completed in {}ms. {} session(s) active",
+                report.getTotalDurationMillis(), droolsEngineService.getEventsManager().getSessionActors().size());
+    }
+
+    /**
+     * Fills the metadata cache of the calculation helpers and keeps it up to date, so that evaluating rules per
+     * patient doesn't look up encounter types or programs.
+     */
+    private void preloadMetadata(DroolsStartupReport report) {
+        long startTime = System.currentTimeMillis();
+        try {
+            MetadataCache metadataCache = Context.getRegisteredComponents(MetadataCache.class).get(0);
+            metadataCache.subscribe();
+            metadataCache.preload();
+            report.record(Phase.METADATA, "MetadataCache", System.currentTimeMillis() - startTime, null);
+        } catch (Exception e) {
+            report.record(Phase.METADATA, "MetadataCache", System.currentTimeMillis() - startTime, e);
+            log.error("Error preloading metadata", e);
+        }
+    }
+
+    private void loadProviders(DroolsEngineService droolsEngineService, RuleProviderLoader ruleProviderLoader,
+            DroolsStartupReport report) {
+        String loaderName = ruleProviderLoader.getClass().getSimpleName();
+        long startTime = System.currentTimeMillis();
+        try {
+            log.debug("Processing rule provider loader: {}", loaderName);
+            List<RuleProvider> ruleProviders = ruleProviderLoader.loadRuleProviders();
+            report.record(Phase.LOADER, loaderName, System.currentTimeMillis() - startTime, null);
+
+            ruleProviders.forEach(ruleProvider -> {
+                String providerName = ruleProvider.getClass().getSimpleName();
+                long providerStartTime = System.currentTimeMillis();
+                try {
+                    log.debug("Registering rule provider: {}", providerName);
+                    droolsEngineService.registerRuleProvider(ruleProvider);
+                    report.record(Phase.PROVIDER, providerName, System.currentTimeMillis() - providerStartTime, null);
+                } catch (Exception e) {
+                    report.record(Phase.PROVIDER, providerName, System.currentTimeMillis() - providerStartTime, e);
+                    log.error("Error registering rule provider: {}", providerName, e);
+                }
+            });
+        } catch (Exception e) {
+            report.record(Phase.LOADER, loaderName, System.currentTimeMillis() - startTime, e);
+            log.error("Error loading rule providers from loader: {}", loaderName, e);
+        }
+    }
 
-                KieSession session = droolsEngineService.requestSession(sessionId);
-                int rulesFired = session.fireAllRules();
-                openSessions.add(session);
+    private void startSession(DroolsEngineService droolsEngineService, DroolsSessionConfig sessionConfig,
+            DroolsStartupReport report) {
+        String sessionId = sessionConfig.getSessionId();
+        long startTime = System.currentTimeMillis();
+        try {
+            log.info("Auto-starting session: {}", sessionId);
 
-                long duration = System.currentTimeMillis() - startTime;
-                log.info("Auto-start session {} completed: {} rules fired in {}ms", sessionId, rulesFired, duration);
+            KieSession session = droolsEngineService.requestSession(sessionId);
+            // from here on the session is only touched through its actor's engine thread
+            DroolsSessionActor actor = droolsEngineService.getEventsManager().startSessionActor(sessionConfig, session);
+            int rulesFired = actor.fireAllRules().get();
+
+            long duration = System.currentTimeMillis() - startTime;
+            report.record(Phase.SESSION, sessionId, duration, null);
+            log.info("Auto-start session {} completed: {} rules fired in {}ms", sessionId, rulesFired, duration);
+        } catch (Exception e) {
+            report.record(Phase.SESSION, sessionId, System.currentTimeMillis() - startTime, e);
+            log.error("Error auto-starting session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * Queues the journaled events that weren't acknowledged before the module last stopped on the listeners of the
+     * sessions that were just started.
+     */
+    private void replayEventJournal(DroolsEngineService droolsEngineService, DroolsStartupReport report) {
+        long startTime = System.currentTimeMillis();
+        try {
+            DroolsEventJournalService journalService = Context.getService(DroolsEventJournalService.class);
+            int replayed = 0;
+            for (Map.Entry<String, List<DroolsSystemEventListener>> subscription : droolsEngineService
+                    .getEventsManager().getActiveSubscriptions().entrySet()) {
+                for (DroolsSystemEventListener listener : subscription.getValue()) {
+                    List<DroolsEventJournalEntry> entries = journalService.getUnacknowledged(subscription.getKey(),
+                            listener.getClass().getName(), listener.getSubscribedClass().getName());
+                    if (!entries.isEmpty()) {
+                        listener.replay(entries);
+                        replayed += entries.size();
+                    }
+                }
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            report.record(Phase.REPLAY, "EventJournal", duration, null);
+            log.info("Replayed {} unacknowledged event(s) in {}ms", replayed, duration);
+        } catch (Exception e) {
+            report.record(Phase.REPLAY, "EventJournal", System.currentTimeMillis() - startTime, e);
+            log.error("Error replaying the event journal", e);
+        }
+    }
+
+    /**
+     * Evaluates the session against each of its warm-up parameter sets, so that the Rete network is initialised and
+     * the rule constraints are JIT compiled before the first real request.
+     */
+    private void warmUpSession(DroolsEngineService droolsEngineService, DroolsSessionConfig sessionConfig,
+            int iterations, DroolsStartupReport report) {
+        String sessionId = sessionConfig.getSessionId();
+        long startTime = System.currentTimeMillis();
+        try {
+            DroolsParameterFactResolver parameterFactResolver = Context
+                    .getRegisteredComponents(DroolsParameterFactResolver.class).get(0);
+            List<Map<String, String>> samples = sessionConfig.getWarmUpParameters();
+            String resultClassName = sessionConfig.getReturnObjectsTypeClassName() != null
+                    ? sessionConfig.getReturnObjectsTypeClassName()
+                    : Object.class.getName();
+
+            for (int i = 0; i < iterations; i++) {
+                for (List<Object> facts : parameterFactResolver.resolveFacts(sessionConfig, samples)) {
+                    DroolsExecutionResult result = droolsEngineService.evaluate(sessionId, facts, resultClassName);
+                    log.trace("Warm-up of session {} fired {} rules", sessionId, result.getFiredRulesCount());
+                }
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            report.record(Phase.WARMUP, sessionId, duration, null);
+            log.info("Warmed up session {} in {}ms", sessionId, duration);
+        } catch (Exception e) {
+            report.record(Phase.WARMUP, sessionId, System.currentTimeMillis() - startTime, e);
+            log.warn("Error warming up session: {}", sessionId, e);
+        }
+    }
+
+    /**
+     * Runs the tasks in daemon threads, at most {@code poolSize} at a time, and waits for all of them to finish.
+     * Tasks are expected to handle their own failures.
+     */
+    private void runInParallel(List<Runnable> tasks, int poolSize) throws InterruptedException {
+        Semaphore permits = new Semaphore(poolSize);
+        CountDownLatch done = new CountDownLatch(tasks.size());
+        for (Runnable task : tasks) {
+            permits.acquire();
+            try {
+                Daemon.runInDaemonThread(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                        done.countDown();
+                    }
+                }, daemonToken);
             } catch (Exception e) {
-                log.error("Error auto-starting session: {}", sessionConfig.getSessionId(), e);
+                log.error("Failed to start Daemon thread for startup task", e);
+                permits.release();
+                done.countDown();
             }
-        });
+        }
+        done.await();
+    }
+
+    private int getPoolSize() {
+        String value = Context.getAdministrationService().getGlobalProperty(DroolsModuleConstants.GP_STARTUP_POOL_SIZE);
+        return Math.max(1, NumberUtils.toInt(value, DEFAULT_POOL_SIZE));
+    }
 
-        log.info("Drools Engine auto-start process completed. {} session(s) active", openSessions.size());
+    private int getWarmUpIterations() {
+        String value = Context.getAdministrationService().getGlobalProperty(DroolsModuleConstants.GP_WARMUP_ITERATIONS);
+        return Math.max(0, NumberUtils.toInt(value, DEFAULT_WARMUP_ITERATIONS));
     }
 
     public void startDroolsEngine() {
@@ -68,14 +294,27 @@ public class DroolsEngineRunner implements Runnable {
     }
 
     public void shutdown() {
-        log.info("Shutting down Drools Engine, disposing {} open session(s)", openSessions.size());
-        this.openSessions.forEach(session -> {
-            log.debug("Disposing session");
-            session.dispose();
-        });
+        DroolsEventsManager eventsManager = Context.getService(DroolsEngineService.class).getEventsManager();
+        log.info("Shutting down Drools Engine, disposing {} open session(s)", eventsManager.getSessionActors().size());
+        eventsManager.stopSessionActors();
+        status = Status.STOPPED;
         log.info("Drools Engine shutdown complete");
     }
 
+    /**
+     * @return the current status of the engine, {@link Status#READY} once auto-start and warm-up have completed
+     */
+    public static Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the report of the latest auto-start process, or null if the engine hasn't been started
+     */
+    public static DroolsStartupReport getStartupReport() {
+        return startupReport;
+    }
+
     public static void setDaemonToken(DaemonToken token) {
         daemonToken = token;
     }
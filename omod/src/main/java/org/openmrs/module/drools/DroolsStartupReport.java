@@ -0,0 +1,101 @@
+package org.openmrs.module.drools;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timings collected while the {@link DroolsEngineRunner} bootstraps the engine.
+ */
+public class DroolsStartupReport {
+
+    public enum Phase {
+        LOADER, PROVIDER, CONTAINER, METADATA, SESSION, REPLAY, WARMUP
+    }
+
+    private final Date startedAt = new Date();
+
+    private volatile Date completedAt;
+
+    private final List<Timing> timings = new CopyOnWriteArrayList<>();
+
+    public void record(Phase phase, String name, long durationMillis, Throwable error) {
+        timings.add(new Timing(phase, name, durationMillis, error == null ? null : error.getMessage(), error == null));
+    }
+
+    /**
+     * @param ignoredPhases phases whose failures don't count, e.g. the warm-up
+     * @return whether any step of the other phases failed
+     */
+    public boolean hasFailures(Phase... ignoredPhases) {
+        List<Phase> ignored = Arrays.asList(ignoredPhases);
+        return timings.stream().anyMatch(timing -> !timing.isSuccess() && !ignored.contains(timing.getPhase()));
+    }
+
+    public void complete() {
+        this.completedAt = new Date();
+    }
+
+    public Boolean isCompleted() {
+        return completedAt != null;
+    }
+
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public Date getCompletedAt() {
+        return completedAt;
+    }
+
+    public Long getTotalDurationMillis() {
+        Date end = completedAt != null ? completedAt : new Date();
+        return end.getTime() - startedAt.getTime();
+    }
+
+    public List<Timing> getTimings() {
+        return timings;
+    }
+
+    public static class Timing {
+
+        private final Phase phase;
+
+        private final String name;
+
+        private final long durationMillis;
+
+        private final String error;
+
+        private final boolean success;
+
+        public Timing(Phase phase, String name, long durationMillis, String error, boolean success) {
+            this.phase = phase;
+            this.name = name;
+            this.durationMillis = durationMillis;
+            this.error = error;
+            this.success = success;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.openmrs.module.drools.descriptor;
 
 import java.util.List;
+import java.util.Map;
 
 public class SessionConfigDescriptor {
     private String sessionId;
@@ -8,6 +9,12 @@ public class SessionConfigDescriptor {
     private String agendaGroup;
     private List<ParamDescriptor> params;
     private String returnObjectsTypeClassName;
+    private List<Map<String, String>> warmUpParams;
+    private String eventProcessingMode;
+    private String clockType;
+    private Map<String, String> eventExpirations;
+    private List<String> reevaluateOn;
+    private String factInsertion;
 
     public SessionConfigDescriptor() {
 
@@ -44,4 +51,52 @@ public class SessionConfigDescriptor {
     public void setReturnObjectsTypeClassName(String returnObjectsTypeClassName) {
         this.returnObjectsTypeClassName = returnObjectsTypeClassName;
     }
-}
\ No newline at end of file
+
+    public List<Map<String, String>> getWarmUpParams() {
+        return warmUpParams;
+    }
+
+    public void setWarmUpParams(List<Map<String, String>> warmUpParams) {
+        this.warmUpParams = warmUpParams;
+    }
+
+    public String getEventProcessingMode() {
+        return eventProcessingMode;
+    }
+
+    public void setEventProcessingMode(String eventProcessingMode) {
+        this.eventProcessingMode = eventProcessingMode;
+    }
+
+    public String getClockType() {
+        return clockType;
+    }
+
+    public void setClockType(String clockType) {
+        this.clockType = clockType;
+    }
+
+    public Map<String, String> getEventExpirations() {
+        return eventExpirations;
+    }
+
+    public void setEventExpirations(Map<String, String> eventExpirations) {
+        this.eventExpirations = eventExpirations;
+    }
+
+    public List<String> getReevaluateOn() {
+        return reevaluateOn;
+    }
+
+    public void setReevaluateOn(List<String> reevaluateOn) {
+        this.reevaluateOn = reevaluateOn;
+    }
+
+    public String getFactInsertion() {
+        return factInsertion;
+    }
+
+    public void setFactInsertion(String factInsertion) {
+        this.factInsertion = factInsertion;
+    }
+}
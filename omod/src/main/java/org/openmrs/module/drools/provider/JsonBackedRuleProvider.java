@@ -1,17 +1,23 @@
 package org.openmrs.module.drools.provider;
 
+import org.apache.commons.lang3.StringUtils;
+import org.kie.api.conf.EventProcessingOption;
 import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.conf.ClockTypeOption;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.drools.RuleResource;
 import org.openmrs.module.drools.api.RuleProvider;
 import org.openmrs.module.drools.calculation.DroolsCalculationService;
 import org.openmrs.module.drools.descriptor.ProviderDescriptor;
+import org.openmrs.module.drools.fact.FactInsertionMode;
 import org.openmrs.module.drools.param.DroolsParameterDefinition;
-import org.openmrs.module.drools.param.DroolsParameterType;
+import org.openmrs.module.drools.param.DroolsParameterResolverRegistry;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
 import org.openmrs.module.drools.session.ExternalEvaluator;
 
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,6 +48,8 @@ public class JsonBackedRuleProvider implements RuleProvider {
     public List<DroolsSessionConfig> getSessionConfigs() {
         DroolsCalculationService calculationService = Context.getRegisteredComponents(DroolsCalculationService.class)
                 .get(0);
+        DroolsParameterResolverRegistry resolverRegistry = Context.getRegisteredComponents(
+                DroolsParameterResolverRegistry.class).get(0);
         return config.getSessionConfigs().stream()
                 .map(sc -> {
                     DroolsSessionConfig cfg = new DroolsSessionConfig();
@@ -51,13 +59,36 @@ public class JsonBackedRuleProvider implements RuleProvider {
                     cfg.getGlobals().put("service", calculationService);
 
                     if (sc.getParams() != null) {
-                        Set<DroolsParameterDefinition> parameterDefinitions = sc.getParams().stream().map(p -> {
-                            DroolsParameterType type = DroolsParameterType.valueOf(p.getType());
-                            return new DroolsParameterDefinition(
-                                    p.getName(), type, p.isRequired());
-                        }).collect(Collectors.toSet());
+                        Set<DroolsParameterDefinition> parameterDefinitions = sc.getParams().stream()
+                                .map(p -> {
+                                    if (!resolverRegistry.supports(p.getType())) {
+                                        throw new IllegalArgumentException("Parameter '" + p.getName() + "' of session "
+                                                + sc.getSessionId() + " has an unsupported type: " + p.getType());
+                                    }
+                                    return new DroolsParameterDefinition(p.getName(), p.getType(), p.isRequired());
+                                })
+                                .collect(Collectors.toSet());
                         cfg.setParameterDefinitions(parameterDefinitions);
                     }
+                    if (sc.getWarmUpParams() != null) {
+                        cfg.setWarmUpParameters(sc.getWarmUpParams());
+                    }
+                    if (StringUtils.isNotBlank(sc.getEventProcessingMode())) {
+                        cfg.setEventProcessingMode(EventProcessingOption.determineEventProcessingMode(
+                                sc.getEventProcessingMode().toLowerCase()));
+                    }
+                    if (StringUtils.isNotBlank(sc.getClockType())) {
+                        cfg.setClockType(ClockTypeOption.get(sc.getClockType().toLowerCase()));
+                    }
+                    if (sc.getEventExpirations() != null) {
+                        cfg.setEventExpirations(sc.getEventExpirations());
+                    }
+                    if (sc.getReevaluateOn() != null) {
+                        cfg.setReevaluationTriggers(new HashSet<>(sc.getReevaluateOn()));
+                    }
+                    if (StringUtils.isNotBlank(sc.getFactInsertion())) {
+                        cfg.setFactInsertionMode(parseFactInsertionMode(sc.getSessionId(), sc.getFactInsertion()));
+                    }
                     return cfg;
                 })
                 .collect(Collectors.toList());
@@ -68,6 +99,15 @@ public class JsonBackedRuleProvider implements RuleProvider {
         return null;
     }
 
+    private static FactInsertionMode parseFactInsertionMode(String sessionId, String factInsertion) {
+        try {
+            return FactInsertionMode.valueOf(factInsertion.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported fact insertion mode '" + factInsertion + "' for session "
+                    + sessionId + ", expected one of " + Arrays.toString(FactInsertionMode.values()), e);
+        }
+    }
+
     private ResourceType inferResourceType(String path) {
         if (path.endsWith(".drl")) return ResourceType.DRL;
         if (path.endsWith(".xls") || path.endsWith(".xlsx")) return ResourceType.DTABLE;
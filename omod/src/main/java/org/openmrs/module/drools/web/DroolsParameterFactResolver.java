@@ -1,65 +1,82 @@
 package org.openmrs.module.drools.web;
 
 import org.apache.commons.lang3.StringUtils;
-import org.openmrs.OpenmrsObject;
-import org.openmrs.api.context.Context;
 import org.openmrs.module.drools.param.DroolsParameterDefinition;
-import org.openmrs.module.drools.param.DroolsParameterType;
+import org.openmrs.module.drools.param.DroolsParameterResolverRegistry;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-
-import static org.openmrs.module.drools.param.DroolsParameterType.*;
+import java.util.Set;
 
+/**
+ * Resolves the parameters of a session into facts.
+ * <p>
+ * Values are grouped by parameter type and each type is resolved at once through the
+ * {@link DroolsParameterResolverRegistry}, whether one or many parameter sets are resolved.
+ */
 @Component
 public class DroolsParameterFactResolver {
 
-    private Map<DroolsParameterType, Function<String, OpenmrsObject>> resolvers;
+    private static final Logger log = LoggerFactory.getLogger(DroolsParameterFactResolver.class);
 
-    public DroolsParameterFactResolver() {
+    @Autowired
+    private DroolsParameterResolverRegistry resolverRegistry;
 
+    public List<Object> resolveFacts(DroolsSessionConfig config, Map<String, String> params) {
+        return resolveFacts(config, Collections.singletonList(params)).get(0);
     }
 
-    public List<Object> resolveFacts(DroolsSessionConfig config, Map<String, String> params) {
-        if (resolvers == null) {
-            resolvers = initializeResolvers();
-        }
-        List<Object> facts = new ArrayList<>();
-        for (DroolsParameterDefinition def : config.getParameterDefinitions()) {
-            String value = params.get(def.getParameterName());
-            if (StringUtils.isBlank(value)) {
-                continue;
-            }
-            // TODO: do we need this?
-            if (def.getParameterType() == DroolsParameterType.LITERAL) {
-                facts.add(value);
+    /**
+     * Resolves several parameter sets at once, e.g. for a batch request or a cohort.
+     *
+     * @return the facts of each parameter set, in the order of the sets
+     */
+    public List<List<Object>> resolveFacts(DroolsSessionConfig config, List<Map<String, String>> paramSets) {
+        Map<String, Set<String>> valuesByType = new HashMap<>();
+        for (Map<String, String> params : paramSets) {
+            for (DroolsParameterDefinition def : config.getParameterDefinitions()) {
+                String value = params.get(def.getParameterName());
+                if (StringUtils.isBlank(value)) {
+                    continue;
+                }
+                if (!resolverRegistry.supports(def.getParameterTypeName())) {
+                    throw new IllegalArgumentException("Unsupported parameter: " + def.getParameterName());
+                }
+                valuesByType.computeIfAbsent(def.getParameterTypeName(), type -> new HashSet<>()).add(value);
             }
-            Function<String, OpenmrsObject> resolver = resolvers.get(def.getParameterType());
+        }
+
+        Map<String, Map<String, Object>> factsByType = new HashMap<>();
+        valuesByType.forEach((type, values) -> factsByType.put(type, resolverRegistry.resolve(type, values)));
 
-            if (resolver != null) {
-                facts.add(resolver.apply(value));
-            } else {
-                throw new IllegalArgumentException("Unsupported parameter: " + def.getParameterName());
+        List<List<Object>> factSets = new ArrayList<>(paramSets.size());
+        for (Map<String, String> params : paramSets) {
+            List<Object> facts = new ArrayList<>();
+            for (DroolsParameterDefinition def : config.getParameterDefinitions()) {
+                String value = params.get(def.getParameterName());
+                if (StringUtils.isBlank(value)) {
+                    continue;
+                }
+                Object fact = factsByType.get(def.getParameterTypeName()).get(value);
+                if (fact != null) {
+                    facts.add(fact);
+                } else {
+                    log.warn("Couldn't resolve {} parameter {}: {}", def.getParameterTypeName(),
+                            def.getParameterName(), value);
+                }
             }
+            factSets.add(facts);
         }
-        return facts;
-    }
-
-    private Map<DroolsParameterType, Function<String, OpenmrsObject>> initializeResolvers() {
-        // TODO: should we use a more dynamic approach that is reflection based?
-        resolvers = new HashMap<>();
-        resolvers.put(PATIENT_UUID, uuid -> Context.getPatientService().getPatientByUuid(uuid));
-        resolvers.put(ENCOUNTER_UUID, uuid -> Context.getEncounterService().getEncounterByUuid(uuid));
-        resolvers.put(OBS_UUID, uuid -> Context.getObsService().getObsByUuid(uuid));
-        resolvers.put(VISIT_UUID, uuid -> Context.getVisitService().getVisitByUuid(uuid));
-        resolvers.put(FORM_UUID, uuid -> Context.getFormService().getFieldByUuid(uuid));
-        resolvers.put(DRUG_UUID, uuid -> Context.getConceptService().getDrugByUuid(uuid));
-        return resolvers;
+        return factSets;
     }
 
 }
@@ -1,6 +1,10 @@
 package org.openmrs.module.drools.web;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.drools.DroolsModuleConstants;
 import org.openmrs.module.drools.api.DroolsEngineService;
 import org.openmrs.module.drools.session.DroolsExecutionResult;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
@@ -11,17 +15,21 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 @Component
 public class DroolsSessionExecutor {
 
     private static final Logger log = LoggerFactory.getLogger(DroolsSessionExecutor.class);
 
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
     @Autowired
     private DroolsEngineService droolsService;
 
@@ -58,18 +66,73 @@ public class DroolsSessionExecutor {
         return CompletableFuture.supplyAsync(() -> performExecution(sessionId, params), executorService);
     }
 
+    /**
+     * Executes the session once per parameter set, resolving the facts of all the sets at once. Batches run on the
+     * executor, so that at most as many batches as it has threads run at once, as the user submitting them.
+     *
+     * @return the result of each parameter set, in the order of the sets
+     * @throws IllegalArgumentException if the batch has more parameter sets than {@link #getMaxBatchSize()}, before
+     *                                  the batch is submitted
+     */
+    public CompletableFuture<List<DroolsExecutionResult>> executeSessionsAsync(String sessionId,
+            List<Map<String, String>> paramSets) {
+        checkBatchSize(paramSets);
+        UserContext userContext = Context.getUserContext();
+        return CompletableFuture.supplyAsync(() -> asUser(userContext, () -> executeSessions(sessionId, paramSets)),
+                executorService);
+    }
+
+    /**
+     * @return the maximum number of parameter sets of a batch, see {@link DroolsModuleConstants#GP_MAX_BATCH_SIZE}
+     */
+    public int getMaxBatchSize() {
+        return Math.max(1, NumberUtils.toInt(
+                Context.getAdministrationService().getGlobalProperty(DroolsModuleConstants.GP_MAX_BATCH_SIZE),
+                DEFAULT_MAX_BATCH_SIZE));
+    }
+
+    private void checkBatchSize(List<Map<String, String>> paramSets) {
+        int maxBatchSize = getMaxBatchSize();
+        if (paramSets.size() > maxBatchSize) {
+            throw new IllegalArgumentException("A batch can't have more than " + maxBatchSize
+                    + " parameter sets, got " + paramSets.size());
+        }
+    }
+
+    private static <T> T asUser(UserContext userContext, Supplier<T> task) {
+        Context.openSession();
+        try {
+            Context.setUserContext(userContext);
+            return task.get();
+        } finally {
+            Context.closeSession();
+        }
+    }
+
+    private List<DroolsExecutionResult> executeSessions(String sessionId, List<Map<String, String>> paramSets) {
+        log.info("Executing session: {} for {} parameter sets", sessionId, paramSets.size());
+        long startTime = System.currentTimeMillis();
+
+        DroolsSessionConfig config = droolsService.getSessionConfig(sessionId);
+        String clazzName = getReturnObjectsTypeClassName(config, sessionId);
+        List<List<Object>> factSets = parameterFactResolver.resolveFacts(config, paramSets);
+
+        List<DroolsExecutionResult> results = new ArrayList<>(factSets.size());
+        for (List<Object> facts : factSets) {
+            results.add(droolsService.evaluate(sessionId, facts, clazzName));
+        }
+
+        log.info("Session {} executed for {} parameter sets in {}ms", sessionId, paramSets.size(),
+                System.currentTimeMillis() - startTime);
+        return results;
+    }
+
     private DroolsExecutionResult performExecution(String sessionId, Map<String, String> params) {
         log.debug("Performing execution for session: {}", sessionId);
         long startTime = System.currentTimeMillis();
 
         DroolsSessionConfig config = droolsService.getSessionConfig(sessionId);
-        String clazzName = config.getReturnObjectsTypeClassName();
-        if (StringUtils.isBlank(clazzName)) {
-            throw new IllegalArgumentException(
-                    "Missing return object type class configuration for session '" + sessionId + "'. " +
-                            "The session configuration must specify a valid fully-qualified class name " +
-                            "in the 'returnObjectsTypeClassName' property.");
-        }
+        String clazzName = getReturnObjectsTypeClassName(config, sessionId);
 
         log.debug("Resolving facts from parameters for session: {}", sessionId);
         List<Object> facts = parameterFactResolver.resolveFacts(config, params);
@@ -83,4 +146,15 @@ public class DroolsSessionExecutor {
 
         return result;
     }
+
+    private String getReturnObjectsTypeClassName(DroolsSessionConfig config, String sessionId) {
+        String clazzName = config.getReturnObjectsTypeClassName();
+        if (StringUtils.isBlank(clazzName)) {
+            throw new IllegalArgumentException(
+                    "Missing return object type class configuration for session '" + sessionId + "'. " +
+                            "The session configuration must specify a valid fully-qualified class name " +
+                            "in the 'returnObjectsTypeClassName' property.");
+        }
+        return clazzName;
+    }
 }
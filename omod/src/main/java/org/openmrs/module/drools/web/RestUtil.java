@@ -1,6 +1,10 @@
 package org.openmrs.module.drools.web;
 
 import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.DroolsStartupReport;
+import org.openmrs.module.drools.event.DroolsSystemEventListener;
+import org.openmrs.module.drools.result.DroolsResult;
+import org.openmrs.module.drools.result.ResultPayloadSerializer;
 import org.openmrs.module.drools.session.DroolsExecutionResult;
 import org.openmrs.module.webservices.rest.SimpleObject;
 import org.openmrs.module.webservices.rest.web.ConversionUtil;
@@ -10,6 +14,7 @@ import org.openmrs.module.webservices.rest.web.representation.CustomRepresentati
 import org.openmrs.module.webservices.rest.web.representation.Representation;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.stream.Collectors;
 
 public class RestUtil {
@@ -25,6 +30,55 @@ public class RestUtil {
         return simpleObject;
     }
 
+    public static SimpleObject convertToSimpleObject(DroolsStartupReport report) {
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("startedAt", report.getStartedAt());
+        simpleObject.add("completedAt", report.getCompletedAt());
+        simpleObject.add("completed", report.isCompleted());
+        simpleObject.add("totalDurationMillis", report.getTotalDurationMillis());
+        simpleObject.add("timings", report.getTimings().stream().map(timing -> {
+            SimpleObject timingObject = new SimpleObject();
+            timingObject.add("phase", timing.getPhase().name());
+            timingObject.add("name", timing.getName());
+            timingObject.add("durationMillis", timing.getDurationMillis());
+            timingObject.add("success", timing.isSuccess());
+            timingObject.add("error", timing.getError());
+            return timingObject;
+        }).collect(Collectors.toList()));
+        return simpleObject;
+    }
+
+    public static SimpleObject convertToSimpleObject(String sessionId, DroolsSystemEventListener listener) {
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("sessionId", sessionId);
+        simpleObject.add("listener", listener.getClass().getName());
+        simpleObject.add("queueDepth", listener.getQueueDepth());
+        simpleObject.add("queueCapacity", listener.getQueueCapacity());
+        simpleObject.add("queueLagMillis", listener.getQueueLagMillis());
+        simpleObject.add("lastBatchLagMillis", listener.getLastBatchLagMillis());
+        simpleObject.add("received", listener.getReceivedCount());
+        simpleObject.add("dropped", listener.getDroppedCount());
+        simpleObject.add("coalesced", listener.getCoalescedCount());
+        simpleObject.add("processed", listener.getProcessedCount());
+        simpleObject.add("batches", listener.getBatchCount());
+        return simpleObject;
+    }
+
+    public static SimpleObject convertToSimpleObject(DroolsResult result) {
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("uuid", result.getUuid());
+        simpleObject.add("patientId", result.getPatientId());
+        simpleObject.add("resultType", result.getResultType());
+        try {
+            simpleObject.add("payload", ResultPayloadSerializer.fromJson(result.getPayload()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read the payload of result " + result.getUuid(), e);
+        }
+        simpleObject.add("rulesetVersion", result.getRulesetVersion());
+        simpleObject.add("computedAt", result.getComputedAt());
+        return simpleObject;
+    }
+
     private static Representation getRepresentation(HttpServletRequest request) {
         Representation representation = new CustomRepresentation(DEFAULT_REPRESENTATION);
         // get the "v" param for the representations
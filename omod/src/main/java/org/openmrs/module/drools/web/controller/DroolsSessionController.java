@@ -1,10 +1,20 @@
 package org.openmrs.module.drools.web.controller;
 
 import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.Cohort;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.drools.DroolsEngineRunner;
+import org.openmrs.module.drools.DroolsStartupReport;
 import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.DroolsResultService;
 import org.openmrs.module.drools.param.DroolsParameterDefinition;
+import org.openmrs.module.drools.session.DroolsExecutionResult;
 import org.openmrs.module.drools.session.DroolsSessionConfig;
 import org.openmrs.module.drools.web.DroolsSessionExecutor;
+import org.openmrs.module.drools.web.RestUtil;
+import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.module.webservices.rest.SimpleObject;
 import org.openmrs.module.webservices.rest.web.RestConstants;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
@@ -19,8 +29,12 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import static org.openmrs.module.drools.web.RestUtil.convertToSimpleObject;
@@ -37,6 +51,9 @@ public class DroolsSessionController extends BaseRestController {
     @Autowired
     private DroolsSessionExecutor sessionExecutor;
 
+    @Autowired
+    private DroolsResultService resultService;
+
 
 
     @Override
@@ -69,6 +86,147 @@ public class DroolsSessionController extends BaseRestController {
         return convertToSimpleObject(sessionExecutor.executeSession(sessionId, allParams), request);
     }
 
+    /**
+     * Executes a session once per parameter set of the request body, a JSON array of parameter maps. The facts of all
+     * the sets are resolved together, with one query per parameter type. Batches run on the session executor, and
+     * ones with more sets than {@link DroolsSessionExecutor#getMaxBatchSize()} are rejected with 413.
+     */
+    @RequestMapping(value = "/rule/{sessionId}/batch", method = RequestMethod.POST)
+    @ResponseBody
+    public SimpleObject executeRulesSessionBatch(
+            @PathVariable("sessionId") String sessionId,
+            @RequestBody List<Map<String, String>> paramSets,
+            HttpServletRequest request) throws ResponseException {
+
+        DroolsSessionConfig sessionConfig = droolsService.getSessionConfig(sessionId);
+        if (sessionConfig == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    String.format("Drools Session with ID '%s' does not exist or is disabled", sessionId)
+            );
+        }
+        paramSets.forEach(params -> validateParams(sessionConfig, params));
+        CompletableFuture<List<DroolsExecutionResult>> batch;
+        try {
+            batch = sessionExecutor.executeSessionsAsync(sessionId, paramSets);
+        } catch (IllegalArgumentException e) {
+            // the only check made before the batch is submitted is its size
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage(), e);
+        }
+        List<DroolsExecutionResult> results;
+        try {
+            results = batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while executing the batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getCause().getMessage(), e.getCause());
+        }
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("sessionId", sessionId);
+        simpleObject.add("results", results.stream()
+                .map(result -> convertToSimpleObject(result, request)).collect(Collectors.toList()));
+        return simpleObject;
+    }
+
+    /**
+     * Returns the stored results of a session for the members of a cohort or for a list of patients. Without either,
+     * returns the ids of the patients that have results.
+     */
+    @RequestMapping(value = "/result/{sessionId}", method = RequestMethod.GET)
+    @ResponseBody
+    public SimpleObject getStoredResults(
+            @PathVariable("sessionId") String sessionId,
+            @RequestParam(value = "cohort", required = false) String cohortUuid,
+            @RequestParam(value = "patient", required = false) List<String> patientUuids,
+            @RequestParam(value = "resultType", required = false) String resultType) {
+        Context.requirePrivilege(PrivilegeConstants.GET_PATIENTS);
+        if (droolsService.getSessionConfig(sessionId) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    String.format("Drools Session with ID '%s' does not exist or is disabled", sessionId));
+        }
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("sessionId", sessionId);
+        if (StringUtils.isBlank(cohortUuid) && (patientUuids == null || patientUuids.isEmpty())) {
+            simpleObject.add("patientIds", resultService.getPatientIdsWithResults(sessionId, resultType));
+            return simpleObject;
+        }
+
+        Set<Integer> patientIds = new LinkedHashSet<>();
+        if (StringUtils.isNotBlank(cohortUuid)) {
+            Cohort cohort = Context.getCohortService().getCohortByUuid(cohortUuid);
+            if (cohort == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cohort not found: " + cohortUuid);
+            }
+            patientIds.addAll(cohort.getMemberIds());
+        }
+        if (patientUuids != null) {
+            for (String patientUuid : patientUuids) {
+                Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
+                if (patient != null) {
+                    patientIds.add(patient.getPatientId());
+                }
+            }
+        }
+        simpleObject.add("results", resultService.getResults(sessionId, patientIds, resultType).stream()
+                .map(RestUtil::convertToSimpleObject).collect(Collectors.toList()));
+        return simpleObject;
+    }
+
+    /**
+     * Reports whether the engine has finished starting and warming up. Responds with 503 until it has, and when a
+     * startup step other than the warm-up failed, so load balancers can use it as a readiness probe.
+     */
+    @RequestMapping(value = "/status", method = RequestMethod.GET)
+    @ResponseBody
+    public SimpleObject getStatus(HttpServletResponse response) {
+        DroolsEngineRunner.Status status = DroolsEngineRunner.getStatus();
+        boolean ready = status == DroolsEngineRunner.Status.READY;
+        if (!ready) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("status", status.name());
+        simpleObject.add("ready", ready);
+        return simpleObject;
+    }
+
+    @RequestMapping(value = "/startup", method = RequestMethod.GET)
+    @ResponseBody
+    public SimpleObject getStartupReport() {
+        Context.requirePrivilege(PrivilegeConstants.VIEW_ADMIN_FUNCTIONS);
+        DroolsStartupReport report = DroolsEngineRunner.getStartupReport();
+        if (report == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The Drools Engine hasn't been started");
+        }
+        SimpleObject simpleObject = convertToSimpleObject(report);
+        simpleObject.add("status", DroolsEngineRunner.getStatus().name());
+        return simpleObject;
+    }
+
+    /**
+     * Reports the event subscriptions per session and the queue metrics of the system event listeners of all sessions.
+     */
+    @RequestMapping(value = "/events", method = RequestMethod.GET)
+    @ResponseBody
+    public SimpleObject getEventQueues() {
+        Context.requirePrivilege(PrivilegeConstants.VIEW_ADMIN_FUNCTIONS);
+        List<SimpleObject> listeners = new ArrayList<>();
+        for (DroolsSessionConfig config : droolsService.getSessionConfigs()) {
+            if (config.getSystemEventListeners() != null) {
+                config.getSystemEventListeners().forEach(listener ->
+                        listeners.add(convertToSimpleObject(config.getSessionId(), listener)));
+            }
+        }
+        SimpleObject simpleObject = new SimpleObject();
+        simpleObject.add("subscriptions", droolsService.getEventsManager().getSubscriptionCounts());
+        simpleObject.add("listeners", listeners);
+        return simpleObject;
+    }
+
     private void validateParams(DroolsSessionConfig sessionConfig, Map<String, String> params) {
         List<String> missingParams = new ArrayList<>();
         List<String> requiredParams = sessionConfig.getParameterDefinitions().stream().filter(DroolsParameterDefinition::getRequired).map(DroolsParameterDefinition::getParameterName).collect(Collectors.toList());
@@ -0,0 +1,164 @@
+package org.openmrs.module.drools;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.drools.DroolsStartupReport.Phase;
+import org.openmrs.module.drools.DroolsStartupReport.Timing;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.RuleProvider;
+import org.openmrs.module.drools.event.DroolsEventsManager;
+import org.openmrs.module.drools.loader.RuleProviderLoader;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.module.drools.session.ExternalEvaluator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DroolsEngineRunnerTest extends BaseModuleContextSensitiveTest {
+
+    @Autowired
+    private DroolsEngineService droolsEngineService;
+
+    private final DroolsEngineRunner runner = new DroolsEngineRunner();
+
+    private final List<String> registeredBeans = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        DaemonToken token = TestDaemonTokens.get();
+        DroolsEngineRunner.setDaemonToken(token);
+        DroolsEventsManager.setDaemonToken(token);
+    }
+
+    @After
+    public void tearDown() {
+        droolsEngineService.getEventsManager().shutdown();
+        runner.shutdown();
+        DefaultListableBeanFactory beanFactory = getBeanFactory();
+        registeredBeans.forEach(beanFactory::destroySingleton);
+        registeredBeans.clear();
+    }
+
+    @Test
+    public void run_shouldRecordAFailingLoaderAndStillStartTheSessionsOfTheOtherLoaders() {
+        registerBean("failingRuleProviderLoader", new FailingLoader());
+        registerBean("testRuleProviderLoader", new TestLoader(new TestRuleProvider(sessionConfig("runner-test"))));
+
+        runner.run();
+
+        DroolsStartupReport report = DroolsEngineRunner.getStartupReport();
+        assertTrue(report.isCompleted());
+        Timing failedLoader = getTiming(report, Phase.LOADER, FailingLoader.class.getSimpleName());
+        assertFalse(failedLoader.isSuccess());
+        assertThat(failedLoader.getError(), is("Broken loader"));
+        assertTrue(getTiming(report, Phase.LOADER, TestLoader.class.getSimpleName()).isSuccess());
+        assertTrue(getTiming(report, Phase.PROVIDER, TestRuleProvider.class.getSimpleName()).isSuccess());
+        assertTrue(getTiming(report, Phase.SESSION, "runner-test").isSuccess());
+        assertThat(droolsEngineService.getEventsManager().getSessionActor("runner-test"), notNullValue());
+        assertThat(DroolsEngineRunner.getStatus(), is(DroolsEngineRunner.Status.DEGRADED));
+    }
+
+    @Test
+    public void run_shouldOnlyWarmUpSessionsThatHaveWarmUpParameters() {
+        DroolsSessionConfig withSamples = sessionConfig("runner-warm");
+        withSamples.setAutoStart(false);
+        withSamples.setWarmUpParameters(Collections.singletonList(Collections.singletonMap("patient", "unknown")));
+        DroolsSessionConfig withoutSamples = sessionConfig("runner-cold");
+        withoutSamples.setAutoStart(false);
+        registerBean("testRuleProviderLoader", new TestLoader(new TestRuleProvider(withSamples, withoutSamples)));
+
+        runner.run();
+
+        DroolsStartupReport report = DroolsEngineRunner.getStartupReport();
+        assertTrue(getTiming(report, Phase.WARMUP, "runner-warm").isSuccess());
+        assertFalse(report.getTimings().stream()
+                .anyMatch(timing -> timing.getPhase() == Phase.WARMUP && timing.getName().equals("runner-cold")));
+    }
+
+    private Timing getTiming(DroolsStartupReport report, Phase phase, String name) {
+        return report.getTimings().stream().filter(timing -> timing.getPhase() == phase && timing.getName().equals(name))
+                .findFirst().orElseThrow(() -> new AssertionError("No " + phase + " timing recorded for " + name));
+    }
+
+    static DroolsSessionConfig sessionConfig(String sessionId) {
+        DroolsSessionConfig config = new DroolsSessionConfig();
+        config.setSessionId(sessionId);
+        config.setAutoStart(true);
+        return config;
+    }
+
+    private void registerBean(String name, Object bean) {
+        getBeanFactory().registerSingleton(name, bean);
+        registeredBeans.add(name);
+    }
+
+    private DefaultListableBeanFactory getBeanFactory() {
+        return (DefaultListableBeanFactory) ((ConfigurableApplicationContext) applicationContext).getBeanFactory();
+    }
+
+    private static class FailingLoader implements RuleProviderLoader {
+
+        @Override
+        public List<RuleProvider> loadRuleProviders() {
+            throw new IllegalStateException("Broken loader");
+        }
+    }
+
+    private static class TestLoader implements RuleProviderLoader {
+
+        private final RuleProvider ruleProvider;
+
+        TestLoader(RuleProvider ruleProvider) {
+            this.ruleProvider = ruleProvider;
+        }
+
+        @Override
+        public List<RuleProvider> loadRuleProviders() {
+            return Collections.singletonList(ruleProvider);
+        }
+    }
+
+    static class TestRuleProvider implements RuleProvider {
+
+        private final List<DroolsSessionConfig> sessionConfigs;
+
+        TestRuleProvider(DroolsSessionConfig... sessionConfigs) {
+            this.sessionConfigs = Arrays.asList(sessionConfigs);
+        }
+
+        @Override
+        public Boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public List<RuleResource> getRuleResources() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<DroolsSessionConfig> getSessionConfigs() {
+            return sessionConfigs;
+        }
+
+        @Override
+        public Map<String, ExternalEvaluator> getExternalEvaluators() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.openmrs.module.drools.web;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.drools.param.DroolsParameterDefinition;
+import org.openmrs.module.drools.param.DroolsParameterResolverRegistry;
+import org.openmrs.module.drools.param.DroolsParameterType;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DroolsParameterFactResolverTest {
+
+    @Mock
+    private DroolsParameterResolverRegistry resolverRegistry;
+
+    @InjectMocks
+    private DroolsParameterFactResolver parameterFactResolver;
+
+    @Test
+    public void resolveFacts_shouldResolveTheValuesOfEachTypeOnceForAllParameterSets() {
+        DroolsSessionConfig config = new DroolsSessionConfig();
+        config.setParameterDefinitions(new HashSet<>(Arrays.asList(
+                new DroolsParameterDefinition("patient", DroolsParameterType.PATIENT_UUID, true),
+                new DroolsParameterDefinition("form", DroolsParameterType.FORM_UUID, false))));
+        when(resolverRegistry.supports(anyString())).thenReturn(true);
+        when(resolverRegistry.resolve(DroolsParameterType.PATIENT_UUID.name(),
+                new HashSet<>(Arrays.asList("patient-1", "patient-2", "unknown"))))
+                .thenReturn(facts("patient-1", "first patient", "patient-2", "second patient"));
+        when(resolverRegistry.resolve(DroolsParameterType.FORM_UUID.name(), new HashSet<>(Arrays.asList("form-1"))))
+                .thenReturn(facts("form-1", "form"));
+
+        List<List<Object>> factSets = parameterFactResolver.resolveFacts(config, Arrays.asList(
+                params("patient", "patient-1", "form", "form-1"),
+                params("patient", "patient-2", "form", "form-1"),
+                params("patient", "unknown")));
+
+        assertEquals(3, factSets.size());
+        assertThat(factSets.get(0), containsInAnyOrder("first patient", "form"));
+        assertThat(factSets.get(1), containsInAnyOrder("second patient", "form"));
+        assertThat(factSets.get(2), empty());
+        verify(resolverRegistry, times(1)).resolve(DroolsParameterType.PATIENT_UUID.name(),
+                new HashSet<>(Arrays.asList("patient-1", "patient-2", "unknown")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resolveFacts_shouldRejectParametersOfUnsupportedTypes() {
+        DroolsSessionConfig config = new DroolsSessionConfig();
+        config.setParameterDefinitions(new HashSet<>(Arrays.asList(
+                new DroolsParameterDefinition("location", "LOCATION_UUID", true))));
+        when(resolverRegistry.supports("LOCATION_UUID")).thenReturn(false);
+
+        parameterFactResolver.resolveFacts(config, params("location", "location-1"));
+    }
+
+    private static Map<String, String> params(String... namesAndValues) {
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            params.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return params;
+    }
+
+    private static Map<String, Object> facts(String... valuesAndFacts) {
+        Map<String, Object> facts = new HashMap<>();
+        for (int i = 0; i < valuesAndFacts.length; i += 2) {
+            facts.put(valuesAndFacts[i], valuesAndFacts[i + 1]);
+        }
+        return facts;
+    }
+}
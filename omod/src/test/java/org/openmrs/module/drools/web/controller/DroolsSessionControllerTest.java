@@ -0,0 +1,100 @@
+package org.openmrs.module.drools.web.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.DroolsResultService;
+import org.openmrs.module.drools.param.DroolsParameterDefinition;
+import org.openmrs.module.drools.param.DroolsParameterType;
+import org.openmrs.module.drools.session.DroolsExecutionResult;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.module.drools.web.DroolsSessionExecutor;
+import org.openmrs.module.webservices.rest.SimpleObject;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DroolsSessionControllerTest {
+
+    private static final String SESSION_ID = "batched";
+
+    @Mock
+    private DroolsEngineService droolsService;
+
+    @Mock
+    private DroolsResultService resultService;
+
+    @Spy
+    private DroolsSessionExecutor sessionExecutor;
+
+    @InjectMocks
+    private DroolsSessionController controller;
+
+    private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+    @Before
+    public void setup() {
+        DroolsSessionConfig config = new DroolsSessionConfig();
+        config.setSessionId(SESSION_ID);
+        config.setParameterDefinitions(Collections.singleton(
+                new DroolsParameterDefinition("patient", DroolsParameterType.PATIENT_UUID, true)));
+        when(droolsService.getSessionConfig(SESSION_ID)).thenReturn(config);
+    }
+
+    @Test
+    public void executeRulesSessionBatch_shouldRespondWithTheResultOfEachParameterSet() {
+        List<Map<String, String>> paramSets = Arrays.asList(Collections.singletonMap("patient", "patient-1"),
+                Collections.singletonMap("patient", "patient-2"));
+        doReturn(CompletableFuture.completedFuture(Arrays.asList(result(), result()))).when(sessionExecutor)
+                .executeSessionsAsync(SESSION_ID, paramSets);
+
+        SimpleObject response = controller.executeRulesSessionBatch(SESSION_ID, paramSets, request);
+
+        assertEquals(SESSION_ID, response.get("sessionId"));
+        assertThat((List<?>) response.get("results"), hasSize(2));
+    }
+
+    @Test
+    public void executeRulesSessionBatch_shouldRejectBatchesLargerThanTheMaxBatchSizeWith413() {
+        doReturn(1).when(sessionExecutor).getMaxBatchSize();
+        List<Map<String, String>> paramSets = Arrays.asList(Collections.singletonMap("patient", "patient-1"),
+                Collections.singletonMap("patient", "patient-2"));
+
+        try {
+            controller.executeRulesSessionBatch(SESSION_ID, paramSets, request);
+            fail("The batch should have been rejected");
+        } catch (ResponseStatusException e) {
+            assertThat(e.getStatus(), is(HttpStatus.PAYLOAD_TOO_LARGE));
+        }
+        verify(droolsService, never()).evaluate(anyString(), anyCollection(), anyString());
+    }
+
+    private static DroolsExecutionResult result() {
+        return new DroolsExecutionResult(SESSION_ID, 1, Collections.emptyList());
+    }
+}
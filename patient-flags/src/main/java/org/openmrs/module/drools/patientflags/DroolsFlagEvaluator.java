@@ -9,7 +9,12 @@ import org.openmrs.CohortMembership;
 import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.drools.api.DroolsEngineService;
+import org.openmrs.module.drools.api.db.DroolsFactDAO;
+import org.openmrs.module.drools.calculation.EvaluationScope;
+import org.openmrs.module.drools.fact.FactProjector;
 import org.openmrs.module.drools.session.AgendaFilterByNameOrGroup;
+import org.openmrs.module.drools.session.DroolsSessionConfig;
+import org.openmrs.module.drools.session.ResultCollector;
 import org.openmrs.module.patientflags.Flag;
 import org.openmrs.module.patientflags.FlagValidationResult;
 import org.openmrs.module.patientflags.PatientFlag;
@@ -22,6 +27,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Component
 public class DroolsFlagEvaluator implements FlagEvaluator {
@@ -48,18 +54,29 @@ public class DroolsFlagEvaluator implements FlagEvaluator {
 
         DroolsFlagConfigDescriptor config = extractDroolsFlagConfig(flag);
         KieSession session = droolsEngineService.requestSession(config.getSession());
+        if (ResultCollector.find(session, PatientFlag.class) == null) {
+            ResultCollector.attach(session, PatientFlag.class);
+        }
 
-        cohort.getActiveMemberships().stream().map(CohortMembership::getPatientId).forEach(id -> {
-            Patient patient = Context.getPatientService().getPatient(id);
-            session.insert(patient);
-        });
+        DroolsSessionConfig sessionConfig = droolsEngineService.getSessionConfig(config.getSession());
+        List<Integer> patientIds = cohort.getActiveMemberships().stream().map(CohortMembership::getPatientId)
+                .collect(Collectors.toList());
+        DroolsFactDAO factDAO = Context.getRegisteredComponent("droolsFactDAO", DroolsFactDAO.class);
+        // conditions are evaluated as the facts are inserted, so their calls are memoized from the first insert on
+        try (EvaluationScope scope = EvaluationScope.open()) {
+            if (FactProjector.isProjecting(sessionConfig)) {
+                // the facts are projected by the query, so the patients are never loaded
+                factDAO.getPatientFacts(patientIds).forEach(session::insert);
+            } else {
+                factDAO.getByIds(Patient.class, patientIds).forEach(session::insert);
+            }
 
-        if (StringUtils.isNotBlank(config.getAgendaGroup())) {
-            session.getAgenda().getAgendaGroup(config.getAgendaGroup()).setFocus();
+            if (StringUtils.isNotBlank(config.getAgendaGroup())) {
+                session.getAgenda().getAgendaGroup(config.getAgendaGroup()).setFocus();
+            }
+            session.fireAllRules(new AgendaFilterByNameOrGroup(config.getRules(), config.getAgendaGroup()));
         }
 
-        session.fireAllRules(new AgendaFilterByNameOrGroup(config.getRules(), config.getAgendaGroup()));
-
         for (PatientFlag flagged : droolsEngineService.getSessionObjects(session, PatientFlag.class)) {
             resultCohort.addMember(flagged.getPatient().getPatientId());
             // Store message in context map if one was provided